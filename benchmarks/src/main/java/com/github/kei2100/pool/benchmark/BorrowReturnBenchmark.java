@@ -0,0 +1,144 @@
+package com.github.kei2100.pool.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.kei2100.pool.IdleEntriesQueueType;
+import com.github.kei2100.pool.Pool;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolFactory;
+import com.github.kei2100.pool.PooledObjectFactory;
+import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.ValidationConfig;
+
+/**
+ * Borrows an entry, holds it for a while and returns it.
+ * <p>
+ * {@link #throughput(Blackhole)} reports ops/s, and {@link #latency(Blackhole)} reports
+ * the distribution of the time per borrow/return pair.
+ * The number of threads is given by -t, see {@link ScalabilityBenchmarkRunner} for 1..N threads.
+ * </p>
+ * <ul>
+ * <li>idleEntriesQueue: BASIC, ASYNC_ADJUST, or one of the other {@link IdleEntriesQueueType}s</li>
+ * <li>testOnBorrow: validate each borrowed entry, see {@link ValidationConfig#setTestOnBorrow(boolean)}</li>
+ * <li>saturated: the pool has half as many entries as the threads, so that the threads wait for each other.
+ * Otherwise the pool has an entry for each thread.</li>
+ * <li>holdTokens: the work done while an entry is borrowed, see {@link Blackhole#consumeCPU(long)}</li>
+ * </ul>
+ * */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BorrowReturnBenchmark {
+
+	@Param({ "BASIC", "ASYNC_ADJUST" })
+	public String idleEntriesQueue;
+
+	@Param({ "false", "true" })
+	public boolean testOnBorrow;
+
+	@Param({ "false", "true" })
+	public boolean saturated;
+
+	@Param({ "100" })
+	public long holdTokens;
+
+	private Pool<Object> pool;
+
+	@Setup(Level.Trial)
+	public void setUp(BenchmarkParams params) throws Exception {
+		int threads = params.getThreads();
+		int entries = saturated ? Math.max(1, threads / 2) : threads;
+
+		PoolConfig poolConfig = new PoolConfig();
+		poolConfig.setMaxActiveEntries(entries);
+		poolConfig.setMaxIdleEntries(entries);
+		poolConfig.setInitialEntries(entries);
+		// wait forever, a saturated pool makes the threads wait, not fail
+		poolConfig.setMaxWaitMillisOnBorrow(0);
+		configureIdleEntriesQueue(poolConfig);
+
+		ValidationConfig validationConfig = new ValidationConfig();
+		validationConfig.setTestOnBorrow(testOnBorrow);
+
+		pool = new PoolFactory<Object>(
+				poolConfig, validationConfig, new ObjectFactory(), new NopValidator()).createInstance();
+	}
+
+	private void configureIdleEntriesQueue(PoolConfig poolConfig) {
+		if ("BASIC".equals(idleEntriesQueue)) {
+			poolConfig.setIdleEntriesQueueType(IdleEntriesQueueType.DEFAULT);
+		} else if ("ASYNC_ADJUST".equals(idleEntriesQueue)) {
+			// the default queue is adjusted asynchronously if the background invalidation is configured
+			poolConfig.setIdleEntriesQueueType(IdleEntriesQueueType.DEFAULT);
+			poolConfig.setInvalidateThreads(1);
+			poolConfig.setInvalidateIntervalMillis(60 * 1000);
+		} else {
+			poolConfig.setIdleEntriesQueueType(IdleEntriesQueueType.valueOf(idleEntriesQueue));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		pool.close(10, TimeUnit.SECONDS);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void throughput(Blackhole blackhole) throws Exception {
+		borrowAndReturn(blackhole);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void latency(Blackhole blackhole) throws Exception {
+		borrowAndReturn(blackhole);
+	}
+
+	private void borrowAndReturn(Blackhole blackhole) throws Exception {
+		PoolEntry<Object> entry = pool.borrowEntry();
+		try {
+			blackhole.consume(entry.getObject());
+			Blackhole.consumeCPU(holdTokens);
+		} finally {
+			pool.returnEntry(entry);
+		}
+	}
+
+	private static class ObjectFactory implements PooledObjectFactory<Object> {
+		@Override
+		public Object createInstance() throws Exception {
+			return new Object();
+		}
+	}
+
+	private static class NopValidator implements PooledObjectValidator<Object> {
+		@Override
+		public boolean validate(Object pooledObject) {
+			return true;
+		}
+
+		@Override
+		public void invalidate(Object pooledObject) throws Exception {
+		}
+	}
+}
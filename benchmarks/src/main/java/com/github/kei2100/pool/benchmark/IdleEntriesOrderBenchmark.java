@@ -0,0 +1,173 @@
+package com.github.kei2100.pool.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.kei2100.pool.IdleEntriesOrder;
+import com.github.kei2100.pool.IdleEntriesQueueType;
+import com.github.kei2100.pool.Pool;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolFactory;
+import com.github.kei2100.pool.PooledObjectFactory;
+import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.ValidationConfig;
+
+/**
+ * Compares {@link IdleEntriesOrder#FIFO} and {@link IdleEntriesOrder#LIFO} under bursty load.
+ * <p>
+ * Before each iteration, a burst of threads borrows at once and the pool grows.
+ * The iteration is the quiet phase that follows, where a few threads borrow one by one.
+ * Besides ops/s, the counters of {@link QuietBorrower} are reported for the quiet phase
+ * <ul>
+ * <li>hits: how often a thread gets back the entry it returned last, compare with borrows for the hit rate</li>
+ * <li>workingSet: how many distinct entries were borrowed,
+ * the other idle entries were never borrowed and so could be shrunk</li>
+ * </ul>
+ * </p>
+ * <ul>
+ * <li>idleEntriesQueue: DEFAULT or STRIPED, the queues that support {@link IdleEntriesOrder}</li>
+ * <li>idleEntriesOrder: FIFO or LIFO</li>
+ * </ul>
+ * */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(IdleEntriesOrderBenchmark.QUIET_THREADS)
+public class IdleEntriesOrderBenchmark {
+	static final int QUIET_THREADS = 2;
+	private static final int POOL_SIZE = 32;
+	private static final int BURST_THREADS = 32;
+	private static final long BURST_MILLIS = 200;
+
+	@Param({ "DEFAULT", "STRIPED" })
+	public IdleEntriesQueueType idleEntriesQueue;
+
+	@Param({ "FIFO", "LIFO" })
+	public IdleEntriesOrder idleEntriesOrder;
+
+	private Pool<Object> pool;
+	// the entries borrowed in the quiet phase
+	private final Map<PoolEntry<Object>, Boolean> touched = new ConcurrentHashMap<PoolEntry<Object>, Boolean>();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		PoolConfig poolConfig = new PoolConfig();
+		poolConfig.setMaxActiveEntries(POOL_SIZE);
+		poolConfig.setMaxIdleEntries(POOL_SIZE);
+		poolConfig.setIdleEntriesQueueType(idleEntriesQueue);
+		poolConfig.setIdleEntriesOrder(idleEntriesOrder);
+
+		pool = new PoolFactory<Object>(
+				poolConfig, new ValidationConfig(), new ObjectFactory(), new NopValidator()).createInstance();
+	}
+
+	@Setup(Level.Iteration)
+	public void burst() throws Exception {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BURST_MILLIS);
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < BURST_THREADS; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (System.nanoTime() < deadline) {
+							borrowAndReturn(pool);
+						}
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		touched.clear();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		pool.close(10, TimeUnit.SECONDS);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void quiet(QuietBorrower borrower) throws Exception {
+		PoolEntry<Object> entry = borrowAndReturn(pool);
+		borrower.borrows++;
+		if (entry == borrower.last) borrower.hits++;
+		if (touched.put(entry, Boolean.TRUE) == null) borrower.workingSet++;
+		borrower.last = entry;
+	}
+
+	private static PoolEntry<Object> borrowAndReturn(Pool<Object> pool) throws Exception {
+		PoolEntry<Object> entry = pool.borrowEntry(1, TimeUnit.SECONDS);
+		TimeUnit.MICROSECONDS.sleep(100);
+		pool.returnEntry(entry);
+		TimeUnit.MICROSECONDS.sleep(100);
+		return entry;
+	}
+
+	/**
+	 * The counters of a quiet thread, summed over the threads for each iteration.
+	 * */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class QuietBorrower {
+		public long borrows;
+		public long hits;
+		public long workingSet;
+		private PoolEntry<Object> last;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			borrows = 0;
+			hits = 0;
+			workingSet = 0;
+			last = null;
+		}
+	}
+
+	private static class ObjectFactory implements PooledObjectFactory<Object> {
+		@Override
+		public Object createInstance() throws Exception {
+			return new Object();
+		}
+	}
+
+	private static class NopValidator implements PooledObjectValidator<Object> {
+		@Override
+		public boolean validate(Object pooledObject) {
+			return true;
+		}
+
+		@Override
+		public void invalidate(Object pooledObject) throws Exception {
+		}
+	}
+}
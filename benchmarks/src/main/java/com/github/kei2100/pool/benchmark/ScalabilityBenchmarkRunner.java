@@ -0,0 +1,74 @@
+package com.github.kei2100.pool.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link BorrowReturnBenchmark} at 1, 2, 4, ... threads up to maxThreads,
+ * and prints the throughput of each configuration by the number of threads.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar com.github.kei2100.pool.benchmark.ScalabilityBenchmarkRunner [maxThreads] [benchmark regexp]
+ * </p>
+ * <p>
+ * maxThreads defaults to the number of available processors,
+ * and the benchmark regexp defaults to the throughput of {@link BorrowReturnBenchmark}.
+ * </p>
+ * */
+public class ScalabilityBenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		int maxThreads = (args.length > 0)
+				? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		String include = (args.length > 1)
+				? args[1] : BorrowReturnBenchmark.class.getName() + ".throughput";
+
+		List<String> lines = new ArrayList<String>();
+		for (int threads = 1; threads <= maxThreads; threads = nextThreads(threads, maxThreads)) {
+			Options options = new OptionsBuilder()
+					.include(include)
+					.threads(threads)
+					.build();
+			Collection<RunResult> results = new Runner(options).run();
+
+			for (RunResult result : results) {
+				lines.add(String.format("%3d threads  %-70s %,15.0f %s",
+						threads,
+						shortName(result.getParams().getBenchmark()) + " " + describeParams(result),
+						result.getPrimaryResult().getScore(),
+						result.getPrimaryResult().getScoreUnit()));
+			}
+		}
+
+		System.out.println();
+		for (String line : lines) {
+			System.out.println(line);
+		}
+	}
+
+	private static int nextThreads(int threads, int maxThreads) {
+		// the last step is maxThreads, also when it is not a power of two
+		if (threads < maxThreads && threads * 2 > maxThreads) return maxThreads;
+		return threads * 2;
+	}
+
+	// Class.method without the package
+	private static String shortName(String benchmark) {
+		int methodAt = benchmark.lastIndexOf('.');
+		return benchmark.substring(benchmark.lastIndexOf('.', methodAt - 1) + 1);
+	}
+
+	private static String describeParams(RunResult result) {
+		StringBuilder sb = new StringBuilder();
+		for (String key : result.getParams().getParamsKeys()) {
+			if (sb.length() > 0) sb.append(", ");
+			sb.append(key).append('=').append(result.getParams().getParam(key));
+		}
+		return "(" + sb + ")";
+	}
+}
@@ -0,0 +1,97 @@
+package com.github.kei2100.pool.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.kei2100.pool.IdleEntriesQueueType;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryFactory;
+import com.github.kei2100.pool.PooledObjectFactory;
+import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.basic.BasicPoolEntryFactory;
+import com.github.kei2100.pool.slot.SlotTable;
+import com.github.kei2100.pool.slot.SlotTablePoolEntryFactory;
+import com.github.kei2100.pool.util.SystemPoolClock;
+
+/**
+ * Compares the heap used by the entries of {@link IdleEntriesQueueType#SLOT_TABLE} and the default layout.
+ * <p>
+ * Each invocation creates a full set of entries with a shared pooled object,
+ * so that only the entries and their state are allocated, and all of them are retained by the pool.
+ * Run with the GC profiler, and read gc.alloc.rate.norm as the bytes per entry:
+ * </p>
+ * <pre>
+ *     java -jar target/benchmarks.jar SlotTableMemoryBenchmark -prof gc
+ * </pre>
+ * <p>
+ * The slot table is created by each invocation, so its arrays are included in the bytes per entry.
+ * Both include the 4 or 8 bytes per entry of the array holding the entries.
+ * </p>
+ * */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SlotTableMemoryBenchmark {
+	private static final int ENTRIES = 1000000;
+
+	private static final Object SHARED_OBJECT = new Object();
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(ENTRIES)
+	public Object basic() throws Exception {
+		BasicPoolEntryFactory<Object> factory = new BasicPoolEntryFactory<Object>(
+				new ObjectFactory(), new NopValidator(), SystemPoolClock.INSTANCE);
+		return createEntries(factory);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(ENTRIES)
+	public Object slotTable() throws Exception {
+		SlotTable<Object> table = new SlotTable<Object>(ENTRIES);
+		SlotTablePoolEntryFactory<Object> factory = new SlotTablePoolEntryFactory<Object>(
+				table, new ObjectFactory(), new NopValidator(), SystemPoolClock.INSTANCE);
+		return createEntries(factory);
+	}
+
+	// returned, so that the entries are reachable until measured
+	private static Object[] createEntries(PoolEntryFactory<Object> factory) throws Exception {
+		PoolEntry<?>[] entries = new PoolEntry<?>[ENTRIES];
+		for (int i = 0; i < ENTRIES; i++) {
+			entries[i] = factory.createPoolEntry();
+		}
+		return entries;
+	}
+
+	private static class ObjectFactory implements PooledObjectFactory<Object> {
+		@Override
+		public Object createInstance() throws Exception {
+			return SHARED_OBJECT;
+		}
+	}
+
+	private static class NopValidator implements PooledObjectValidator<Object> {
+		@Override
+		public boolean validate(Object pooledObject) {
+			return true;
+		}
+
+		@Override
+		public void invalidate(Object pooledObject) throws Exception {
+		}
+	}
+}
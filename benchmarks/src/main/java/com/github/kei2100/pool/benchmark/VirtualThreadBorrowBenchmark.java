@@ -0,0 +1,141 @@
+package com.github.kei2100.pool.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.kei2100.pool.Pool;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolFactory;
+import com.github.kei2100.pool.PooledObjectFactory;
+import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.ValidationConfig;
+
+/**
+ * Borrows from 10k virtual threads, with and without {@link PoolConfig#getOffloadThreads()}.
+ * <p>
+ * Each invocation starts the borrowers, each of which borrows and returns 10 times,
+ * and waits for all of them. The score is the average time per borrow/return pair.
+ * The validator blocks in a synchronized block, which pins the carrier thread of a virtual thread.
+ * Virtual threads need Java 21 or later. On older Java, platform threads are used instead.
+ * </p>
+ * <ul>
+ * <li>offloadThreads: 0 to validate in the borrowers, or the number of the platform threads that validate instead</li>
+ * </ul>
+ * */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class VirtualThreadBorrowBenchmark {
+	private static final int BORROWERS = 10000;
+	private static final int BORROWS_PER_BORROWER = 10;
+	private static final int POOL_SIZE = 64;
+	private static final long VALIDATE_MILLIS = 1;
+
+	@Param({ "0", "64" })
+	public int offloadThreads;
+
+	private Pool<Object> pool;
+	private ExecutorService borrowers;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		PoolConfig poolConfig = new PoolConfig();
+		poolConfig.setMaxActiveEntries(POOL_SIZE);
+		poolConfig.setMaxIdleEntries(POOL_SIZE);
+		poolConfig.setInitialEntries(POOL_SIZE);
+		poolConfig.setMaxWaitMillisOnBorrow(0);
+		poolConfig.setOffloadThreads(offloadThreads);
+
+		ValidationConfig validationConfig = new ValidationConfig();
+		validationConfig.setTestOnBorrow(true);
+
+		pool = new PoolFactory<Object>(
+				poolConfig, validationConfig, new ObjectFactory(), new SynchronizedValidator()).createInstance();
+		borrowers = newBorrowerExecutor();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		borrowers.shutdown();
+		pool.close(10, TimeUnit.SECONDS);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@OperationsPerInvocation(BORROWERS * BORROWS_PER_BORROWER)
+	public void borrow() throws Exception {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(BORROWERS);
+		for (int i = 0; i < BORROWERS; i++) {
+			futures.add(borrowers.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int j = 0; j < BORROWS_PER_BORROWER; j++) {
+						PoolEntry<Object> entry = pool.borrowEntry();
+						pool.returnEntry(entry);
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+	}
+
+	private static ExecutorService newBorrowerExecutor() throws Exception {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (NoSuchMethodException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	private static class ObjectFactory implements PooledObjectFactory<Object> {
+		@Override
+		public Object createInstance() throws Exception {
+			return new Object();
+		}
+	}
+
+	/*
+	 * Like a driver that does blocking I/O while holding the monitor of the connection.
+	 * */
+	private static class SynchronizedValidator implements PooledObjectValidator<Object> {
+		@Override
+		public boolean validate(Object pooledObject) throws Exception {
+			synchronized (pooledObject) {
+				TimeUnit.MILLISECONDS.sleep(VALIDATE_MILLIS);
+			}
+			return true;
+		}
+
+		@Override
+		public void invalidate(Object pooledObject) throws Exception {
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.github.kei2100.pool;
+
+/**
+ * The priority of a borrower waiting for {@link PoolEntry}.
+ * <p>
+ * When the {@link Pool} is saturated, a released entry is given to the waiter of the highest priority.
+ * The priority of a waiter rises by one level each {@link PoolConfig#getPriorityAgingMillis()} it waits,
+ * so that the waiters of low priority are not starved.
+ * </p>
+ * */
+public enum BorrowPriority {
+	
+	/**
+	 * For latency-critical borrowers.
+	 * */
+	HIGH,
+	
+	/**
+	 * The default priority.
+	 * */
+	NORMAL,
+	
+	/**
+	 * For batch borrowers, which can absorb the queueing.
+	 * */
+	LOW
+}
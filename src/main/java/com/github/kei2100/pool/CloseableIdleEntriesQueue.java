@@ -0,0 +1,18 @@
+package com.github.kei2100.pool;
+
+/**
+ * {@link IdleEntriesQueue} which runs background tasks, 
+ * and has to be told when the pool is closed.
+ * 
+ * @param <T> the type of included object in {@link PoolEntry}
+ * @see Pool#close(long, java.util.concurrent.TimeUnit)
+ * */
+public interface CloseableIdleEntriesQueue<T> extends IdleEntriesQueue<T> {
+	
+	/**
+	 * Stop the background tasks of this queue.
+	 * The idle entries are kept until they are drained, 
+	 * and the entries offered after this are invalidated.
+	 * */
+	void close();
+}
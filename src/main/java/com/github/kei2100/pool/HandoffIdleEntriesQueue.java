@@ -0,0 +1,63 @@
+package com.github.kei2100.pool;
+
+/**
+ * {@link IdleEntriesQueue} that can hand a returned {@link PoolEntry} 
+ * directly to a borrower waiting for it.
+ * <p>
+ * A borrower which could not get an entry immediately registers a {@link Waiter}.
+ * A returned entry is transferred to the longest waiting borrower 
+ * together with the right to use it, so the woken borrower does not have to 
+ * compete with other threads for the entry. 
+ * </p>
+ * 
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public interface HandoffIdleEntriesQueue<T> extends IdleEntriesQueue<T> {
+	
+	/**
+	 * Register a new waiter at the tail of the waiters.
+	 * 
+	 * @return {@link Waiter}
+	 * */
+	Waiter<T> addWaiter();
+	
+	/**
+	 * Transfer the entry to the longest waiting borrower.
+	 * 
+	 * @param entry the entry to transfer
+	 * @return true, if the entry was transferred. false, if there is no waiting borrower.
+	 * @throws NullPointerException if entry is null.
+	 * */
+	boolean transfer(PoolEntry<T> entry) throws NullPointerException;
+	
+	/**
+	 * Wake up the longest waiting borrower, 
+	 * to tell that the capacity to borrow a new entry was released.
+	 * */
+	void signalWaiter();
+	
+	/**
+	 * A borrower waiting for {@link PoolEntry}.
+	 * 
+	 * @param <T> the type of included object in {@link PoolEntry}
+	 * */
+	interface Waiter<T> {
+		
+		/**
+		 * Wait until an entry is transferred, or this waiter is signalled.
+		 * 
+		 * @param timeoutNanos the maximum time to wait. {@link Long#MAX_VALUE} is forever wait.
+		 * @return the transferred entry. 
+		 * or null if this waiter was signalled or the waiting time elapsed.
+		 * @throws InterruptedException if the current thread is interrupted while waiting.
+		 * */
+		PoolEntry<T> await(long timeoutNanos) throws InterruptedException;
+		
+		/**
+		 * Stop waiting, and remove this waiter from the waiters.
+		 * 
+		 * @return the entry that was transferred before cancellation, or null.  
+		 * */
+		PoolEntry<T> cancel();
+	}
+}
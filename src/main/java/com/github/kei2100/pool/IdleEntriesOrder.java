@@ -0,0 +1,19 @@
+package com.github.kei2100.pool;
+
+/**
+ * The order in which idle {@link PoolEntry} are borrowed again.
+ * */
+public enum IdleEntriesOrder {
+	
+	/**
+	 * The entry returned earliest is borrowed first. 
+	 * All idle entries are used in turn.
+	 * */
+	FIFO,
+	
+	/**
+	 * The entry returned most recently is borrowed first.
+	 * Recently used entries stay hot, and the rest stay idle long enough to be shrunk.
+	 * */
+	LIFO
+}
@@ -1,5 +1,7 @@
 package com.github.kei2100.pool;
 
+import java.util.Collection;
+
 /**
  * Queue for Idle {@link PoolEntry} interface.
  * 
@@ -27,4 +29,59 @@ public interface IdleEntriesQueue<T> {
 	 * @throws NullPointerException if the specified element is null
 	 * */
 	boolean offer(PoolEntry<T> entry) throws NullPointerException;
+	
+	/**
+	 * Removes at most the given number of entries from this queue 
+	 * and adds them to the given collection, in the order of {@link #poll()}.
+	 * 
+	 * @param collection the collection to transfer entries into
+	 * @param maxEntries the maximum number of entries to transfer
+	 * @return the number of entries transferred
+	 * @throws NullPointerException if the specified collection is null
+	 * */
+	int drainTo(Collection<? super PoolEntry<T>> collection, int maxEntries) throws NullPointerException;
+	
+	/**
+	 * Removes at most the given number of idle entries which were returned at or before the given time,
+	 * the least recently returned first as far as this queue keeps the order,
+	 * and adds them to the given collection.
+	 * <p>
+	 * This is used by the maintenance of the pool, such as trim, eviction and close.
+	 * Unlike {@link #poll()}, the removed entries are not counted as borrowed,
+	 * and the entries which {@link #poll()} does not reach, such as the ones cached for other threads, 
+	 * are also removed.
+	 * </p>
+	 * 
+	 * @param collection the collection to transfer entries into
+	 * @param returnedBefore the time compared with {@link PoolEntryState#getLastReturnedAt()}, 
+	 * or {@link Long#MAX_VALUE} to remove the entries regardless of the time
+	 * @param maxEntries the maximum number of entries to transfer
+	 * @return the number of entries transferred
+	 * @throws NullPointerException if the specified collection is null
+	 * */
+	int evictTo(Collection<? super PoolEntry<T>> collection, long returnedBefore, int maxEntries) 
+			throws NullPointerException;
+	
+	/**
+	 * Inserts the entry removed by {@link #evictTo(Collection, long, int)} back into this queue, 
+	 * like {@link #offer(PoolEntry)}.
+	 * <p>
+	 * This is used by the maintenance of the pool, such as the background validation.
+	 * Unlike {@link #offer(PoolEntry)}, the entry is not counted as returned,
+	 * and is not cached for the current thread.
+	 * </p>
+	 * 
+	 * @param entry the element to add
+	 * @return if the element was added to this queue, else false
+	 * @throws NullPointerException if the specified element is null
+	 * */
+	boolean restore(PoolEntry<T> entry) throws NullPointerException;
+	
+	/**
+	 * Returns the number of the idle entries in this queue.
+	 * The count may be out of date while the entries are offered and polled concurrently.
+	 * 
+	 * @return the number of the idle entries
+	 * */
+	int getIdleEntriesCount();
 }
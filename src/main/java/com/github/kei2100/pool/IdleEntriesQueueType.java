@@ -0,0 +1,36 @@
+package com.github.kei2100.pool;
+
+/**
+ * The types of {@link IdleEntriesQueue} created by {@link PoolFactory}.
+ * */
+public enum IdleEntriesQueueType {
+	
+	/**
+	 * A bounded queue. 
+	 * If background invalidation or ensure is configured, a queue adjusted asynchronously.
+	 * This is the only type that supports {@link PoolConfig#getEnsureThreads()}.
+	 * */
+	DEFAULT,
+	
+	/**
+	 * A lock-free bag with per-thread hints,
+	 * which hands a returned entry directly to the longest waiting borrower.
+	 * This type can not be used with {@link PoolConfig#getMagazineSize()}.
+	 * @see HandoffIdleEntriesQueue
+	 * */
+	CONCURRENT_BAG,
+	
+	/**
+	 * Queues split into shards chosen by thread, 
+	 * which steal idle entries from each other.
+	 * */
+	STRIPED,
+	
+	/**
+	 * A LIFO stack of slot indexes, whose entries keep their state in primitive arrays.
+	 * The number of live entries is fixed to maxActiveEntries + maxIdleEntries at creation,
+	 * and {@link Pool#reconfigure(PoolConfig)} can not raise the sum above it.
+	 * @see com.github.kei2100.pool.slot.SlotTable
+	 * */
+	SLOT_TABLE
+}
@@ -0,0 +1,82 @@
+package com.github.kei2100.pool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An object pool interface, which pools the objects for each key.
+ * <p>
+ * The idle entries are kept for each key,
+ * but {@link PoolConfig#getMaxActiveEntries()} is the budget shared by all keys.
+ * If the budget is used up, the idle entry of the least recently used key is invalidated,
+ * and the budget is given to the key to be borrowed.
+ * {@link PoolConfig#getMaxIdleEntries()} is applied to each key.
+ * </p>
+ *
+ * @param <K> the type of key
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public interface KeyedPool<K, T> {
+
+	/**
+	 * Return this pool's configuration.
+	 *
+	 * @return {@link PoolConfig}
+	 * */
+	PoolConfig getPoolConfig();
+
+	/**
+	 * Get {@link PoolEntry} of the key from this pool.
+	 * <p>
+	 * If remain idle entry of the key in this pool, return the entry immediately.
+	 * Does not remain, perform the following operations.
+	 * <li>If entries count of all keys have not reached {@link PoolConfig#getMaxActiveEntries()},
+	 * create new an instance, and return it as pool entry.
+	 * <li>If remain idle entry of other keys, invalidate the entry of the least recently used key,
+	 * create new an instance, and return it as pool entry.
+	 * <li>Otherwise, wait for until the entry is returned to this pool by other threads.
+	 * Time to wait is {@link PoolConfig#getMaxWaitMillisOnBorrow()}.
+	 * </p>
+	 * @param key the key of entry
+	 * @return {@link PoolEntry}
+	 * @throws NullPointerException if key is null.
+	 * @throws InterruptedException if the current thread is interrupted while waiting for return entry.
+	 * @throws TimeoutException if the waiting time exceeded {@link PoolConfig#getMaxWaitMillisOnBorrow()}.
+	 * @throws PoolException if an exception occurs for other reasons.
+	 * */
+	PoolEntry<T> borrowEntry(K key)
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException;
+
+	/**
+	 * Get {@link PoolEntry} of the key from this pool.
+	 *
+	 * @param key the key of entry
+	 * @param timeout the maximum time to wait
+	 * @param unit the time unit of the timeout argument
+	 * @return {@link PoolEntry}
+	 * @see #borrowEntry(Object)
+	 * */
+	PoolEntry<T> borrowEntry(K key, long timeout, TimeUnit unit)
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException;
+
+	/**
+	 * Get {@link PoolEntry} of the key from this pool, only if can get the entry immediately.
+	 *
+	 * @param key the key of entry
+	 * @return {@link PoolEntry} if can get the entry immediately and null otherwise.
+	 * @throws NullPointerException if key is null.
+	 * @throws PoolException if exception of Something occurs
+	 * */
+	PoolEntry<T> tryBorrowEntry(K key) throws NullPointerException, PoolException;
+
+	/**
+	 * Return {@link PoolEntry} of the key to this pool.
+	 * <p>
+	 * Always, must return {@link PoolEntry} obtained from this pool with the same key.
+	 * </p>
+	 * @param key the key of entry
+	 * @param entry for return
+	 * @throws NullPointerException if key or entry is null.
+	 * */
+	void returnEntry(K key, PoolEntry<T> entry) throws NullPointerException;
+}
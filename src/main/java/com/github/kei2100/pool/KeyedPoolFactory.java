@@ -0,0 +1,50 @@
+package com.github.kei2100.pool;
+
+import com.github.kei2100.pool.keyed.BasicKeyedPool;
+
+
+/**
+ * A factory class for {@link KeyedPool}
+ *
+ * @param <K> the type of key
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class KeyedPoolFactory<K, T> {
+
+	private final PoolConfig poolConfig;
+	private final ValidationConfig validationConfig;
+	private final KeyedPooledObjectFactory<K, T> pooledObjectFactory;
+	private final PooledObjectValidator<T> pooledObjectValidator;
+
+	/**
+	 * Constructor
+	 *
+	 * @param poolConfig {@link PoolConfig}
+	 * @param validationConfig {@link ValidationConfig}
+	 * @param pooledObjectFactory {@link KeyedPooledObjectFactory}
+	 * @param pooledObjectValidator {@link PooledObjectValidator}
+	 * */
+	public KeyedPoolFactory(
+			PoolConfig poolConfig,
+			ValidationConfig validationConfig,
+			KeyedPooledObjectFactory<K, T> pooledObjectFactory,
+			PooledObjectValidator<T> pooledObjectValidator)
+	{
+		this.poolConfig = poolConfig;
+		this.validationConfig = validationConfig;
+		this.pooledObjectFactory = pooledObjectFactory;
+		this.pooledObjectValidator = pooledObjectValidator;
+	}
+
+	/**
+	 * Create instance of {@link KeyedPool}.
+	 * @return instance of {@link KeyedPool}
+	 * */
+	public KeyedPool<K, T> createInstance() {
+		poolConfig.validateConfig();
+		validationConfig.validateConfig();
+
+		return new BasicKeyedPool<K, T>(
+				poolConfig, validationConfig, pooledObjectFactory, pooledObjectValidator);
+	}
+}
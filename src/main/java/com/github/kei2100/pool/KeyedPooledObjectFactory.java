@@ -0,0 +1,23 @@
+package com.github.kei2100.pool;
+
+/**
+ * An interface defining factory method
+ * for object to be served by {@link KeyedPool}.
+ * <p>
+ * The instance of implementing this interface is accessed by multiple threads.
+ * </p>
+ *
+ * @param <K> the type of key
+ * @param <T> the type of object
+ * */
+public interface KeyedPooledObjectFactory<K, T> {
+
+	/**
+	 * Create an instance for the key.
+	 *
+	 * @param key the key of instance
+	 * @return instance
+	 * @throws Exception if some kind of exception occurred
+	 * */
+	T createInstance(K key) throws Exception;
+}
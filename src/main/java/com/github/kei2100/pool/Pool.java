@@ -1,8 +1,12 @@
 package com.github.kei2100.pool;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import com.github.kei2100.pool.util.PropertyValidationException;
+
 /**
  * An object pool interface. 
  * 
@@ -77,6 +81,99 @@ public interface Pool<T> {
 	PoolEntry<T> borrowEntry(boolean createNew, long timeout, TimeUnit unit) 
 			throws InterruptedException, TimeoutException, PoolException;
 	
+	/**
+	 * Get {@link PoolEntry} from this pool with the priority.
+	 * <p>
+	 * If busy entries count have reached {@link PoolConfig#getMaxActiveEntries()},
+	 * wait for until the entry is returned to this pool by other threads.
+	 * A returned entry is given to the waiter of the highest {@link BorrowPriority} first.
+	 * The other borrow methods wait with {@link BorrowPriority#NORMAL}.
+	 * Priority is not applied to the {@link HandoffIdleEntriesQueue}, whose waiters are served in order. 
+	 * </p>
+	 * @param priority {@link BorrowPriority}
+	 * @return {@link PoolEntry}
+	 * @throws NullPointerException if priority is null.
+	 * @see #borrowEntry()
+	 * */
+	PoolEntry<T> borrowEntry(BorrowPriority priority) 
+			throws InterruptedException, TimeoutException, PoolException;
+	
+	/**
+	 * Get {@link PoolEntry} from this pool with the priority.
+	 * 
+	 * @param priority {@link BorrowPriority}
+	 * @param createNew if true then create a new entry.
+	 * @param timeout the maximum time to wait 
+	 * @param unit the time unit of the timeout argument
+	 * @return {@link PoolEntry} and null if does not remain idle entry in this pool and createNew is false. 
+	 * @throws NullPointerException if priority is null.
+	 * @see #borrowEntry(BorrowPriority)
+	 * @see #borrowEntry(boolean, long, TimeUnit)
+	 * */
+	PoolEntry<T> borrowEntry(BorrowPriority priority, boolean createNew, long timeout, TimeUnit unit) 
+			throws InterruptedException, TimeoutException, PoolException;
+	
+	/**
+	 * Get the specified number of {@link PoolEntry} from this pool at once.
+	 * <p>
+	 * The entries are borrowed all together or not at all.
+	 * If the busy entries count does not allow borrowing all of them,
+	 * wait for until enough entries are returned to this pool by other threads,
+	 * without holding a part of them meanwhile.
+	 * Time to wait is specified by the parameters.
+	 * If the waiting time is exceeded or an entry can not be created, no entry is borrowed.
+	 * </p>
+	 * @param entries the number of entries to borrow
+	 * @param timeout the maximum time to wait 
+	 * @param unit the time unit of the timeout argument
+	 * @return the list of {@link PoolEntry}, whose size is entries
+	 * @throws IllegalArgumentException if entries is less than 1 or greater than {@link PoolConfig#getMaxActiveEntries()}.
+	 * @throws InterruptedException if the current thread is interrupted while waiting for return entries.
+	 * @throws TimeoutException if the waiting time exceeded.
+	 * @throws PoolException if an exception occurs for other reasons. 
+	 * */
+	List<PoolEntry<T>> borrowEntries(int entries, long timeout, TimeUnit unit) 
+			throws InterruptedException, TimeoutException, PoolException;
+	
+	/**
+	 * Get {@link PoolEntry} from this pool asynchronously.
+	 * <p>
+	 * This method does not block the current thread.
+	 * If remain idle entry in this pool, the returned future is completed immediately.
+	 * Does not remain, perform the following operations.
+	 * <li>If busy entries count have not reached {@link PoolConfig#getMaxActiveEntries()},  
+	 * a new instance is created by the background thread, and the future is completed with it.
+	 * <li>If busy entries count have reached {@link PoolConfig#getMaxActiveEntries()},
+	 * the future is completed when the entry is returned to this pool by other threads.
+	 * If the entry is not returned within {@link PoolConfig#getMaxWaitMillisOnBorrow()},
+	 * the future fails with {@link TimeoutException}.
+	 * </p>
+	 * @return {@link PoolEntryFuture}
+	 * */
+	PoolEntryFuture<T> borrowEntryAsync();
+	
+	/**
+	 * Get {@link PoolEntry} from this pool asynchronously.
+	 * 
+	 * @param timeout the maximum time to wait 
+	 * @param unit the time unit of the timeout argument
+	 * @return {@link PoolEntryFuture}
+	 * @see #borrowEntryAsync()
+	 * */
+	PoolEntryFuture<T> borrowEntryAsync(long timeout, TimeUnit unit);
+	
+	/**
+	 * Get {@link PoolEntry} from this pool asynchronously.
+	 * 
+	 * @param createNew if true then create a new entry.
+	 * @param timeout the maximum time to wait 
+	 * @param unit the time unit of the timeout argument
+	 * @return {@link PoolEntryFuture}. 
+	 * The future is completed with null if does not remain idle entry in this pool and createNew is false. 
+	 * @see #borrowEntryAsync()
+	 * */
+	PoolEntryFuture<T> borrowEntryAsync(boolean createNew, long timeout, TimeUnit unit);
+	
 	/**
 	 * Get {@link PoolEntry} from this pool, only if can get the entry immediately.
 	 * 
@@ -108,4 +205,116 @@ public interface Pool<T> {
 	 * @throws NullPointerException if entry is null.
 	 * */
 	void returnEntry(PoolEntry<T> entry) throws NullPointerException;
+	
+	/**
+	 * Return the entries of {@link PoolEntry} to this pool at once.
+	 * 
+	 * @param entries for return
+	 * @throws NullPointerException if entries or any of the entries is null.
+	 * @see #returnEntry(PoolEntry)
+	 * */
+	void returnEntries(Collection<PoolEntry<T>> entries) throws NullPointerException;
+	
+	/**
+	 * Borrow {@link PoolEntry}, call the callback with it, and return it to this pool.
+	 * <p>
+	 * The entry is always returned, even if the callback throws an exception. 
+	 * If the callback throws a checked exception, it is thrown as the cause of {@link PoolException}.
+	 * Unchecked exceptions are thrown as they are.
+	 * </p>
+	 * @param callback {@link PoolEntryCallback}
+	 * @return the result of the callback
+	 * @throws NullPointerException if callback is null.
+	 * @see #borrowEntry()
+	 * */
+	<R> R withEntry(PoolEntryCallback<T, R> callback) 
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException;
+	
+	/**
+	 * Borrow {@link PoolEntry}, call the callback with it, and return it to this pool.
+	 * 
+	 * @param timeout the maximum time to wait for borrowing 
+	 * @param unit the time unit of the timeout argument
+	 * @param callback {@link PoolEntryCallback}
+	 * @return the result of the callback
+	 * @see #withEntry(PoolEntryCallback)
+	 * @see #borrowEntry(long, TimeUnit)
+	 * */
+	<R> R withEntry(long timeout, TimeUnit unit, PoolEntryCallback<T, R> callback) 
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException;
+	
+	/**
+	 * Get the current load of this pool.
+	 * <p>
+	 * The estimated wait is the same as used by {@link PoolConfig#isAdmissionControl()},
+	 * so upstream load balancers can divert requests before this pool starts rejecting them.
+	 * </p>
+	 * @return {@link PoolPressure}
+	 * */
+	PoolPressure getPressure();
+	
+	/**
+	 * Get the progress of the creation of {@link PoolConfig#getInitialEntries()}.
+	 * 
+	 * @return {@link WarmUpStats}
+	 * @see PoolConfig#isWarmUpInBackground()
+	 * */
+	WarmUpStats getWarmUpStats();
+	
+	/**
+	 * Change the limits of this running pool, keeping the entries.
+	 * <p>
+	 * The following values are copied from the specified configuration to {@link #getPoolConfig()}, 
+	 * and the others are ignored.
+	 * <li>{@link PoolConfig#getMaxActiveEntries()}
+	 * <li>{@link PoolConfig#getMaxIdleEntries()}
+	 * <li>{@link PoolConfig#getMinIdleEntries()}
+	 * <li>{@link PoolConfig#getInvalidateIntervalMillis()}
+	 * <li>{@link PoolConfig#getEnsureIntervalMillis()}
+	 * <li>{@link PoolConfig#getAdaptiveIntervalMillis()}
+	 * </p>
+	 * <p>
+	 * If maxActiveEntries is decreased, the borrowed entries are kept, 
+	 * and the new borrowers wait until the borrowed entries fall below it.
+	 * If maxIdleEntries is decreased, the excess idle entries are invalidated, 
+	 * and the returned entries are invalidated while the idle entries exceed it.
+	 * The new intervals take effect from the next run of the background threads.
+	 * </p>
+	 * 
+	 * @param newConfig the configuration which has the new values
+	 * @throws NullPointerException if newConfig is null.
+	 * @throws PropertyValidationException if the new values are invalid.
+	 * */
+	void reconfigure(PoolConfig newConfig) throws NullPointerException, PropertyValidationException;
+	
+	/**
+	 * Close this pool, waiting for the borrowed entries to be returned.
+	 * <p>
+	 * The following operations are performed in order.
+	 * <li>New borrows are rejected with {@link IllegalStateException}, 
+	 * and the futures of {@link #borrowEntryAsync()} waiting for an entry fail with it.
+	 * <li>The background threads of this pool are stopped.
+	 * <li>Wait for the borrowed entries to be returned, up to the timeout. 
+	 * The entries returned after this point are invalidated instead of being pooled.
+	 * <li>The idle entries are invalidated in parallel by {@link PoolConfig#getCloseThreads()} threads.
+	 * </p>
+	 * <p>
+	 * The entries still borrowed at the timeout are invalidated when they are returned.
+	 * Calling this method on a closed pool has no effect and returns whether the entries have been returned.
+	 * </p>
+	 * 
+	 * @param timeout the maximum time to wait for the borrowed entries
+	 * @param unit the time unit of the timeout argument
+	 * @return true if all borrowed entries were returned within the timeout, false otherwise
+	 * @throws NullPointerException if unit is null.
+	 * @throws InterruptedException if the current thread is interrupted while waiting.
+	 * */
+	boolean close(long timeout, TimeUnit unit) throws NullPointerException, InterruptedException;
+	
+	/**
+	 * Return whether {@link #close(long, TimeUnit)} has been called.
+	 * 
+	 * @return true if this pool is closed
+	 * */
+	boolean isClosed();
 }
\ No newline at end of file
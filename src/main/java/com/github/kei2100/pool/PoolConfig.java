@@ -1,9 +1,14 @@
 package com.github.kei2100.pool;
 
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
+import com.github.kei2100.pool.util.CoarsePoolClock;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
+import com.github.kei2100.pool.util.PoolClock;
 import com.github.kei2100.pool.util.PropertyValidationException;
 import com.github.kei2100.pool.util.PropertyValidator;
+import com.github.kei2100.pool.util.SystemPoolClock;
 
 
 /**
@@ -12,13 +17,18 @@ import com.github.kei2100.pool.util.PropertyValidator;
 public class PoolConfig {
 	private static byte WAIT_UNLIMIT_ON_BORROW = 0;
 	
+	private static byte IDLE_TIME_UNLIMIT = 0;
+	
+	private static byte LEASE_TIME_UNLIMIT = 0;
+	
 	/**
 	 * The maximum number of {@link PoolEntry} 
 	 * that can be allocated by the {@link Pool} 
 	 * (checked out to clients, or idle awaiting checkout) at a given time.   
+	 * This can be changed by {@link Pool#reconfigure(PoolConfig)}.
 	 * */
 	@Min(1)
-	private int maxActiveEntries = 8;
+	private volatile int maxActiveEntries = 8;
 	
 	/**
 	 * The number of {@link PoolEntry} to be created 
@@ -30,9 +40,10 @@ public class PoolConfig {
 	/**
 	 * The maximum number of {@link PoolEntry} 
 	 * that can sit idle in the {@link Pool} at any time. 
+	 * This can be changed by {@link Pool#reconfigure(PoolConfig)}.
 	 * */
 	@Min(1)
-	private int maxIdleEntries = 8;
+	private volatile int maxIdleEntries = 8;
 	
 	/**
 	 * The amount of millis to wait for {@link PoolEntry} is returned 
@@ -47,6 +58,11 @@ public class PoolConfig {
 	 * these threads will do invalidation in the background.
 	 * If this value is zero, invalidation of {@link PoolEntry} is performed by the client threads
 	 * at the time you return the {@link PoolEntry} to the {@link Pool}.
+	 * The threads are the workers of the shared {@link MaintenanceScheduler}, 
+	 * and this value limits the invalidations of the pool run at the same time.
+	 * The background invalidation of the excess entries applies only to the {@link IdleEntriesQueueType#DEFAULT} queue,
+	 * and the other queues invalidate them in the client threads. 
+	 * The threads invalidate the entries idle for longer than {@link #maxIdleTimeMillis} with any queue.
 	 * */
 	@Min(0)
 	private int invalidateThreads = 0;
@@ -61,18 +77,35 @@ public class PoolConfig {
 	 * The invalidate threads execution interval
 	 * */
 	@Min(1)
-	private long invalidateIntervalMillis = 1000;
+	private volatile long invalidateIntervalMillis = 1000;
 
 	/**
 	 * The minimum number of {@link PoolEntry} ensured in the {@link Pool}.
 	 * Ensure is performed by {@link #ensureThreads}. 
 	 * This setting has no effect if the {@link #ensureThreads} is zero.
+	 * This can be changed by {@link Pool#reconfigure(PoolConfig)}.
+	 * */
+	@Min(0)
+	private volatile int minIdleEntries = 0;
+	
+	/**
+	 * Specify the time that {@link PoolEntry} can sit idle in the {@link Pool}.
+	 * <p>
+	 * If an idle {@link PoolEntry} has not been returned for longer than specified value,
+	 * the invalidate threads invalidate it, while the idle entries are more than {@link #minIdleEntries}.
+	 * This applies to any {@link IdleEntriesQueueType}, and the entries are checked every {@link #invalidateIntervalMillis}.
+	 * If this value is zero, idle time of {@link PoolEntry} is unlimited.
+	 * This setting has no effect if the {@link #invalidateThreads} is zero.
+	 * </p>
 	 * */
 	@Min(0)
-	private int minIdleEntries = 0;
+	private long maxIdleTimeMillis = IDLE_TIME_UNLIMIT;
 	
 	/**
 	 * The number of threads that ensure {@link PoolEntry} in the {@link Pool}.
+	 * The threads are the workers of the shared {@link MaintenanceScheduler}, 
+	 * and this value limits the creations of the pool run at the same time.
+	 * This can be positive only with the {@link IdleEntriesQueueType#DEFAULT} queue.
 	 * */
 	@Min(0)
 	private int ensureThreads = 0;
@@ -81,7 +114,200 @@ public class PoolConfig {
 	 * The ensure threads execution interval
 	 * */
 	@Min(1)
-	private long ensureIntervalMillis = 1000;
+	private volatile long ensureIntervalMillis = 1000;
+	
+	/**
+	 * Whether the ensure threads predict the demand.
+	 * If true, the ensure threads track the borrow rate and the hold time of {@link PoolEntry},
+	 * and create entries beyond {@link #minIdleEntries} ahead of a rising demand.
+	 * The target decays back to {@link #minIdleEntries} when the demand falls.
+	 * This is effective only if {@link #ensureThreads} is positive.
+	 * */
+	private boolean predictiveEnsure = false;
+	
+	/**
+	 * The number of threads that create {@link PoolEntry} for {@link Pool#borrowEntryAsync()}.
+	 * */
+	@Min(1)
+	private int asyncCreateThreads = 1;
+	
+	/**
+	 * The number of platform threads that run {@link PooledObjectFactory#createInstance()}
+	 * and {@link PooledObjectValidator#validate(Object)} instead of the borrowing threads.
+	 * <p>
+	 * This is intended for the {@link Pool} borrowed from virtual threads.
+	 * The borrowing threads wait for these threads without pinning their carrier threads,
+	 * even if the factory or the validator blocks in synchronized blocks or native calls.
+	 * If this value is zero, the borrowing threads run them.
+	 * </p>
+	 * */
+	@Min(0)
+	private int offloadThreads = 0;
+	
+	/**
+	 * The number of idle {@link PoolEntry} that each thread can cache locally
+	 * in front of the shared idle entries queue.
+	 * Entries cached by a thread are borrowed and returned by that thread 
+	 * without touching the shared queue.
+	 * If this value is zero, thread local caching is not performed.
+	 * This should be zero for the {@link Pool} borrowed from virtual threads,
+	 * which are too many and too short-lived to benefit from thread local caches.
+	 * This must be zero with the {@link IdleEntriesQueueType#CONCURRENT_BAG} queue,
+	 * whose returned entries are handed directly to the waiting borrowers instead.
+	 * */
+	@Min(0)
+	private int magazineSize = 0;
+	
+	/**
+	 * The type of queue that holds idle {@link PoolEntry}.
+	 * */
+	@NotNull
+	private IdleEntriesQueueType idleEntriesQueueType = IdleEntriesQueueType.DEFAULT;
+	
+	/**
+	 * The order in which idle {@link PoolEntry} are borrowed again.
+	 * This setting applies to the {@link IdleEntriesQueueType#DEFAULT} 
+	 * and {@link IdleEntriesQueueType#STRIPED} queues.
+	 * */
+	@NotNull
+	private IdleEntriesOrder idleEntriesOrder = IdleEntriesOrder.FIFO;
+	
+	/**
+	 * The waiting time by which the {@link BorrowPriority} of a borrower rises one level.
+	 * A borrower of {@link BorrowPriority#LOW} which has waited twice this value
+	 * is preferred to a borrower of {@link BorrowPriority#HIGH} which has just started waiting.
+	 * */
+	@Min(1)
+	private long priorityAgingMillis = 1000;
+	
+	/**
+	 * Whether to reject a borrow immediately, 
+	 * when the estimated time to wait for {@link PoolEntry} exceeds the timeout of the borrow.
+	 * <p>
+	 * The estimate follows Little's law, from the count of waiting borrowers 
+	 * and the recent time that {@link PoolEntry} are held by borrowers.
+	 * The rejected borrow throws {@link PoolOverloadedException} instead of waiting until it times out.
+	 * This setting has no effect on the {@link HandoffIdleEntriesQueue} and {@link Pool#borrowEntryAsync()}.
+	 * </p>
+	 * @see Pool#getPressure()
+	 * */
+	private boolean admissionControl = false;
+	
+	/**
+	 * The time that a borrower can hold {@link PoolEntry}.
+	 * <p>
+	 * If {@link PoolEntry} is not returned within this time, it is regarded as leaked.
+	 * A background thread logs it, invalidates it and releases its capacity, 
+	 * and the late return of it is ignored.
+	 * The expired leases are checked at the interval of {@link #invalidateIntervalMillis}.
+	 * If this value is zero, the lease is unlimited and the borrowed entries are not tracked.
+	 * </p>
+	 * */
+	@Min(0)
+	private long leaseTimeMillis = LEASE_TIME_UNLIMIT;
+	
+	/**
+	 * Capture the stack trace of one in this number of borrows, 
+	 * to be logged when the lease of the borrowed {@link PoolEntry} expires.
+	 * If this value is zero, the stack traces are not captured.
+	 * This setting has no effect if the {@link #leaseTimeMillis} is zero.
+	 * */
+	@Min(0)
+	private int leaseStackTraceSampling = 0;
+	
+	/**
+	 * The maximum number of {@link PooledObjectFactory#createInstance()} running at the same time.
+	 * Borrowers beyond this wait for a running creation to finish, 
+	 * and take a returned {@link PoolEntry} instead if one arrives first.
+	 * If this value is zero, the concurrent creations are not limited.
+	 * */
+	@Min(0)
+	private int maxConcurrentCreates = 0;
+	
+	/**
+	 * The maximum number of {@link PooledObjectFactory#createInstance()} started per second.
+	 * The rate is limited by a token bucket whose capacity is {@link #createBurst}.
+	 * If this value is zero, the rate of creations is not limited.
+	 * */
+	@Min(0)
+	private int createsPerSecond = 0;
+	
+	/**
+	 * The number of {@link PooledObjectFactory#createInstance()} that can start at once
+	 * under {@link #createsPerSecond}.
+	 * */
+	@Min(1)
+	private int createBurst = 1;
+	
+	/**
+	 * The number of threads that create {@link #initialEntries} in parallel.
+	 * If this value is zero, the thread which instantiates the {@link Pool} creates them one by one.
+	 * */
+	@Min(0)
+	private int warmUpThreads = 0;
+	
+	/**
+	 * The time limit to create {@link #initialEntries}.
+	 * The initial entries not started by this time are skipped.
+	 * If this value is zero, the time is unlimited.
+	 * */
+	@Min(0)
+	private long warmUpTimeoutMillis = 0;
+	
+	/**
+	 * Whether to create {@link #initialEntries} in the background.
+	 * If true, the {@link Pool} is instantiated without waiting for the initial entries,
+	 * and serves borrows while they are created by the {@link #warmUpThreads}.
+	 * The progress is reported by {@link Pool#getWarmUpStats()}.
+	 * */
+	private boolean warmUpInBackground = false;
+	
+	/**
+	 * Whether to adjust the active limit and the idle target at runtime.
+	 * The active limit is increased by one while the borrowers wait longer than {@link #targetWaitMillisOnBorrow},
+	 * decreased multiplicatively while the creation fails more than {@link #maxCreateFailurePercent},
+	 * and decreased by one while the entries are not used up.
+	 * It stays between {@link #minActiveEntries} and {@link #maxActiveEntries}.
+	 * */
+	private boolean adaptiveSizing = false;
+	
+	/**
+	 * The lower bound of the active limit adjusted by {@link #adaptiveSizing}.
+	 * */
+	@Min(1)
+	private int minActiveEntries = 1;
+	
+	/**
+	 * The interval to adjust the active limit.
+	 * */
+	@Min(1)
+	private volatile long adaptiveIntervalMillis = 1000;
+	
+	/**
+	 * The average wait time on borrow that {@link #adaptiveSizing} aims at.
+	 * */
+	@Min(0)
+	private long targetWaitMillisOnBorrow = 10;
+	
+	/**
+	 * The percentage of failed creations above which {@link #adaptiveSizing} decreases the active limit.
+	 * */
+	@Min(0)
+	private int maxCreateFailurePercent = 10;
+	
+	/**
+	 * The number of threads that invalidate the idle {@link PoolEntry} on {@link Pool#close(long, java.util.concurrent.TimeUnit)}.
+	 * */
+	@Min(1)
+	private int closeThreads = 4;
+	
+	/**
+	 * The clock that stamps {@link PoolEntry}, and is read by the age and the interval checks.
+	 * {@link CoarsePoolClock} saves the system calls on the borrow path, 
+	 * and the timestamps lag behind by up to its resolution.
+	 * */
+	@NotNull
+	private PoolClock clock = SystemPoolClock.INSTANCE;
 	
 	/**
 	 * Validate this configuration value.
@@ -106,6 +332,23 @@ public class PoolConfig {
 			throw new PropertyValidationException("maxActiveEntries < minIdleEntries");
 		if (maxIdleEntries < minIdleEntries) 
 			throw new PropertyValidationException("maxIdleEntries < minIdleEntries");
+		
+		if (maxIdleEntries < magazineSize)
+			throw new PropertyValidationException("maxIdleEntries < magazineSize");
+		
+		// only the default queue is adjusted in the background
+		if (ensureThreads > 0 && idleEntriesQueueType != IdleEntriesQueueType.DEFAULT)
+			throw new PropertyValidationException("ensureThreads > 0 && idleEntriesQueueType != DEFAULT");
+		
+		// the magazines would hide the handoff of the bag
+		if (magazineSize > 0 && idleEntriesQueueType == IdleEntriesQueueType.CONCURRENT_BAG)
+			throw new PropertyValidationException("magazineSize > 0 && idleEntriesQueueType == CONCURRENT_BAG");
+		
+		if (warmUpInBackground && warmUpThreads < 1)
+			throw new PropertyValidationException("warmUpInBackground && warmUpThreads < 1");
+		
+		if (maxActiveEntries < minActiveEntries)
+			throw new PropertyValidationException("maxActiveEntries < minActiveEntries");
 	}
 		
 	public boolean isWaitUnlimitOnBorrow() {
@@ -120,6 +363,30 @@ public class PoolConfig {
 		return (ensureThreads > 0);
 	}
 	
+	public boolean isIdleTimeUnlimit() {
+		return maxIdleTimeMillis == IDLE_TIME_UNLIMIT;
+	}
+	
+	public boolean isLeaseTimeUnlimit() {
+		return leaseTimeMillis == LEASE_TIME_UNLIMIT;
+	}
+	
+	public boolean isCreationGoverned() {
+		return (maxConcurrentCreates > 0) || (createsPerSecond > 0);
+	}
+	
+	public boolean isLifo() {
+		return idleEntriesOrder == IdleEntriesOrder.LIFO;
+	}
+	
+	public boolean isOffloadEnabled() {
+		return (offloadThreads > 0);
+	}
+	
+	public boolean isMagazineEnabled() {
+		return (magazineSize > 0);
+	}
+	
 	public int getMaxActiveEntries() {
 		return maxActiveEntries;
 	}
@@ -189,4 +456,172 @@ public class PoolConfig {
 	public void setEnsureIntervalMillis(long ensureIntervalMillis) {
 		this.ensureIntervalMillis = ensureIntervalMillis;
 	}
+	
+	public int getMagazineSize() {
+		return magazineSize;
+	}
+	public void setMagazineSize(int magazineSize) {
+		this.magazineSize = magazineSize;
+	}
+	
+	public IdleEntriesQueueType getIdleEntriesQueueType() {
+		return idleEntriesQueueType;
+	}
+	public void setIdleEntriesQueueType(IdleEntriesQueueType idleEntriesQueueType) {
+		this.idleEntriesQueueType = idleEntriesQueueType;
+	}
+	
+	public IdleEntriesOrder getIdleEntriesOrder() {
+		return idleEntriesOrder;
+	}
+	public void setIdleEntriesOrder(IdleEntriesOrder idleEntriesOrder) {
+		this.idleEntriesOrder = idleEntriesOrder;
+	}
+	
+	public long getMaxIdleTimeMillis() {
+		return maxIdleTimeMillis;
+	}
+	public void setMaxIdleTimeMillis(long maxIdleTimeMillis) {
+		this.maxIdleTimeMillis = maxIdleTimeMillis;
+	}
+	
+	public int getAsyncCreateThreads() {
+		return asyncCreateThreads;
+	}
+	public void setAsyncCreateThreads(int asyncCreateThreads) {
+		this.asyncCreateThreads = asyncCreateThreads;
+	}
+	
+	public int getOffloadThreads() {
+		return offloadThreads;
+	}
+	public void setOffloadThreads(int offloadThreads) {
+		this.offloadThreads = offloadThreads;
+	}
+	
+	public long getPriorityAgingMillis() {
+		return priorityAgingMillis;
+	}
+	public void setPriorityAgingMillis(long priorityAgingMillis) {
+		this.priorityAgingMillis = priorityAgingMillis;
+	}
+	
+	public boolean isAdmissionControl() {
+		return admissionControl;
+	}
+	public void setAdmissionControl(boolean admissionControl) {
+		this.admissionControl = admissionControl;
+	}
+	
+	public long getLeaseTimeMillis() {
+		return leaseTimeMillis;
+	}
+	public void setLeaseTimeMillis(long leaseTimeMillis) {
+		this.leaseTimeMillis = leaseTimeMillis;
+	}
+	
+	public int getLeaseStackTraceSampling() {
+		return leaseStackTraceSampling;
+	}
+	public void setLeaseStackTraceSampling(int leaseStackTraceSampling) {
+		this.leaseStackTraceSampling = leaseStackTraceSampling;
+	}
+	
+	public int getMaxConcurrentCreates() {
+		return maxConcurrentCreates;
+	}
+	public void setMaxConcurrentCreates(int maxConcurrentCreates) {
+		this.maxConcurrentCreates = maxConcurrentCreates;
+	}
+	
+	public int getCreatesPerSecond() {
+		return createsPerSecond;
+	}
+	public void setCreatesPerSecond(int createsPerSecond) {
+		this.createsPerSecond = createsPerSecond;
+	}
+	
+	public int getCreateBurst() {
+		return createBurst;
+	}
+	public void setCreateBurst(int createBurst) {
+		this.createBurst = createBurst;
+	}
+	
+	public int getWarmUpThreads() {
+		return warmUpThreads;
+	}
+	public void setWarmUpThreads(int warmUpThreads) {
+		this.warmUpThreads = warmUpThreads;
+	}
+	
+	public long getWarmUpTimeoutMillis() {
+		return warmUpTimeoutMillis;
+	}
+	public void setWarmUpTimeoutMillis(long warmUpTimeoutMillis) {
+		this.warmUpTimeoutMillis = warmUpTimeoutMillis;
+	}
+	
+	public boolean isWarmUpInBackground() {
+		return warmUpInBackground;
+	}
+	public void setWarmUpInBackground(boolean warmUpInBackground) {
+		this.warmUpInBackground = warmUpInBackground;
+	}
+	
+	public boolean isPredictiveEnsure() {
+		return predictiveEnsure;
+	}
+	public void setPredictiveEnsure(boolean predictiveEnsure) {
+		this.predictiveEnsure = predictiveEnsure;
+	}
+	
+	public boolean isAdaptiveSizing() {
+		return adaptiveSizing;
+	}
+	public void setAdaptiveSizing(boolean adaptiveSizing) {
+		this.adaptiveSizing = adaptiveSizing;
+	}
+	
+	public int getMinActiveEntries() {
+		return minActiveEntries;
+	}
+	public void setMinActiveEntries(int minActiveEntries) {
+		this.minActiveEntries = minActiveEntries;
+	}
+	
+	public long getAdaptiveIntervalMillis() {
+		return adaptiveIntervalMillis;
+	}
+	public void setAdaptiveIntervalMillis(long adaptiveIntervalMillis) {
+		this.adaptiveIntervalMillis = adaptiveIntervalMillis;
+	}
+	
+	public long getTargetWaitMillisOnBorrow() {
+		return targetWaitMillisOnBorrow;
+	}
+	public void setTargetWaitMillisOnBorrow(long targetWaitMillisOnBorrow) {
+		this.targetWaitMillisOnBorrow = targetWaitMillisOnBorrow;
+	}
+	
+	public int getMaxCreateFailurePercent() {
+		return maxCreateFailurePercent;
+	}
+	public void setMaxCreateFailurePercent(int maxCreateFailurePercent) {
+		this.maxCreateFailurePercent = maxCreateFailurePercent;
+	}
+	
+	public int getCloseThreads() {
+		return closeThreads;
+	}
+	public void setCloseThreads(int closeThreads) {
+		this.closeThreads = closeThreads;
+	}
+	
+	public PoolClock getClock() {
+		return clock;
+	}
+	public void setClock(PoolClock clock) {
+		this.clock = clock;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.github.kei2100.pool;
+
+/**
+ * A callback that uses {@link PoolEntry} borrowed by {@link Pool#withEntry(PoolEntryCallback)}.
+ * <p>
+ * The entry is returned to the {@link Pool} when this callback finishes, 
+ * so this callback must not return the entry nor keep it.
+ * The instance of implementing this interface may be reused for each borrow.
+ * </p>
+ * 
+ * @param <T> the type of included object in {@link PoolEntry}
+ * @param <R> the type of result
+ * */
+public interface PoolEntryCallback<T, R> {
+	
+	/**
+	 * Use the borrowed entry.
+	 * 
+	 * @param entry the borrowed {@link PoolEntry}
+	 * @return result, passed through to the caller of {@link Pool#withEntry(PoolEntryCallback)}
+	 * @throws Exception if some kind of exception occurred
+	 * */
+	R doWithEntry(PoolEntry<T> entry) throws Exception;
+}
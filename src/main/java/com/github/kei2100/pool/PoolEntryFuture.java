@@ -0,0 +1,44 @@
+package com.github.kei2100.pool;
+
+import java.util.concurrent.Future;
+
+/**
+ * The result of an asynchronous borrow from {@link Pool}.
+ * <p>
+ * If the borrow fails, {@link #get()} throws {@link java.util.concurrent.ExecutionException}
+ * whose cause is {@link java.util.concurrent.TimeoutException} or {@link PoolException}.
+ * Cancelling this future before it is completed releases the capacity reserved for it,
+ * and the entry completed after cancellation is returned to the {@link Pool}.
+ * </p>
+ *
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public interface PoolEntryFuture<T> extends Future<PoolEntry<T>> {
+
+	/**
+	 * Add a listener called when this future is completed.
+	 * <p>
+	 * The listener is called by the thread that completes this future,
+	 * for example a thread which returns an entry to the {@link Pool}.
+	 * If this future is already completed, the listener is called immediately by the current thread.
+	 * </p>
+	 * @param listener {@link Listener}
+	 * @throws NullPointerException if listener is null.
+	 * */
+	void addListener(Listener<T> listener) throws NullPointerException;
+
+	/**
+	 * A listener of {@link PoolEntryFuture}.
+	 *
+	 * @param <T> the type of included object in {@link PoolEntry}
+	 * */
+	interface Listener<T> {
+
+		/**
+		 * Called when the future is completed, failed or cancelled.
+		 * This method should not block.
+		 * @param future the completed future
+		 * */
+		void onComplete(PoolEntryFuture<T> future);
+	}
+}
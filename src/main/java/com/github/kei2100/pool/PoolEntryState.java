@@ -1,8 +1,12 @@
 package com.github.kei2100.pool;
 
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.github.kei2100.pool.util.PoolClock;
+import com.github.kei2100.pool.util.SystemPoolClock;
+
 /**
  * Manage the state of {@link PoolEntry}.
  * <p>
@@ -11,11 +15,49 @@ import java.util.concurrent.atomic.AtomicLong;
  * */
 public class PoolEntryState {
 	
-	private final long createdAt = System.currentTimeMillis();
+	private static final int IDLE = 0;
+	private static final int BORROWED = 1;
+	// retired on the next return
+	private static final int RETIRING = 2;
+	private static final int RETIRED = 3;
+	
+	private final long createdAt;
+	
+	private AtomicLong lastValidatedAt;
+	
+	private AtomicLong lastReturnedAt;
+	
+	private AtomicLong lastBorrowedAt;
+	
+	private AtomicBoolean valid;
 	
-	private AtomicLong lastValidatedAt = new AtomicLong(System.currentTimeMillis());
+	private AtomicInteger lifecycle;
 	
-	private AtomicBoolean valid = new AtomicBoolean(true);
+	public PoolEntryState() {
+		this(SystemPoolClock.INSTANCE);
+	}
+	
+	/**
+	 * Constructor
+	 * @param clock the clock which stamps the creation
+	 * */
+	public PoolEntryState(PoolClock clock) {
+		createdAt = clock.currentTimeMillis();
+		lastValidatedAt = new AtomicLong(createdAt);
+		lastReturnedAt = new AtomicLong(createdAt);
+		lastBorrowedAt = new AtomicLong(0);
+		valid = new AtomicBoolean(true);
+		lifecycle = new AtomicInteger(IDLE);
+	}
+	
+	/**
+	 * Constructor for the subclasses which keep the mutable state outside of this object.
+	 * No atomic field is allocated, so the subclass has to override all the methods but {@link #getCreatedAt()}.
+	 * @param createdAt the time the entry was created
+	 * */
+	protected PoolEntryState(long createdAt) {
+		this.createdAt = createdAt;
+	}
 	
 	/**
 	 * Get time {@link PoolEntry} was created.
@@ -40,6 +82,38 @@ public class PoolEntryState {
 		this.lastValidatedAt.set(lastValidatedAt);
 	}
 	
+	/**
+	 * Get the last time {@link PoolEntry} was returned to the {@link Pool}.
+	 * If {@link PoolEntry} has never been returned, this is the time it was created.
+	 * @return lastReturnedAt
+	 * */
+	public long getLastReturnedAt() {
+		return lastReturnedAt.longValue();
+	}
+	/**
+	 * Set lastReturnedAt.
+	 * @param lastReturnedAt
+	 * */
+	public void setLastReturnedAt(long lastReturnedAt) {
+		this.lastReturnedAt.set(lastReturnedAt);
+	}
+	
+	/**
+	 * Get the last time {@link PoolEntry} was borrowed from the {@link Pool}.
+	 * If {@link PoolEntry} has never been borrowed, this is zero.
+	 * @return lastBorrowedAt
+	 * */
+	public long getLastBorrowedAt() {
+		return lastBorrowedAt.longValue();
+	}
+	/**
+	 * Set lastBorrowedAt.
+	 * @param lastBorrowedAt
+	 * */
+	public void setLastBorrowedAt(long lastBorrowedAt) {
+		this.lastBorrowedAt.set(lastBorrowedAt);
+	}
+	
 	/**
 	 * Get validity of {@link PoolEntry}.
 	 * */
@@ -56,4 +130,57 @@ public class PoolEntryState {
 	public boolean compareAndSetValid(boolean expect, boolean update) {
 		return valid.compareAndSet(expect, update);
 	}
-}
+	
+	/**
+	 * Mark {@link PoolEntry} borrowed, unless it is retired.
+	 * The pool calls this when it takes the entry, so that the entry is not retired while it is used.
+	 * @return true, if marked
+	 * */
+	public boolean markBorrowed() {
+		while (true) {
+			int current = lifecycle.get();
+			if (current >= RETIRING) return false;
+			if (lifecycle.compareAndSet(current, BORROWED)) return true;
+		}
+	}
+	
+	/**
+	 * Mark {@link PoolEntry} idle, unless the retirement was requested while it was borrowed.
+	 * @return true, if marked. false, if the entry is retired and has to be invalidated by the caller.
+	 * */
+	public boolean markReturned() {
+		while (true) {
+			int current = lifecycle.get();
+			if (current >= RETIRING) {
+				lifecycle.set(RETIRED);
+				return false;
+			}
+			if (lifecycle.compareAndSet(current, IDLE)) return true;
+		}
+	}
+	
+	/**
+	 * Request the retirement of {@link PoolEntry}.
+	 * An idle entry is retired immediately, and a borrowed entry is retired when it is returned.
+	 * @return true, if the entry was idle and is retired. The caller has to invalidate it.
+	 * */
+	public boolean retire() {
+		while (true) {
+			int current = lifecycle.get();
+			if (current == IDLE) {
+				if (lifecycle.compareAndSet(IDLE, RETIRED)) return true;
+			} else if (current == BORROWED) {
+				if (lifecycle.compareAndSet(BORROWED, RETIRING)) return false;
+			} else {
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Get whether the retirement of {@link PoolEntry} was requested.
+	 * */
+	public boolean isRetired() {
+		return lifecycle.get() >= RETIRING;
+	}
+}
\ No newline at end of file
@@ -1,9 +1,20 @@
 package com.github.kei2100.pool;
 
 import com.github.kei2100.pool.asyncadjust.AsyncAdjustIdleEntriesQueue;
+import com.github.kei2100.pool.bag.ConcurrentBagIdleEntriesQueue;
 import com.github.kei2100.pool.basic.BasicIdleEntriesQueue;
 import com.github.kei2100.pool.basic.BasicPool;
 import com.github.kei2100.pool.basic.BasicPoolEntryFactory;
+import com.github.kei2100.pool.magazine.MagazineIdleEntriesQueue;
+import com.github.kei2100.pool.offload.OffloadPooledObjectFactory;
+import com.github.kei2100.pool.offload.OffloadPooledObjectValidator;
+import com.github.kei2100.pool.offload.OffloadThread;
+import com.github.kei2100.pool.slot.SlotTable;
+import com.github.kei2100.pool.slot.SlotTableIdleEntriesQueue;
+import com.github.kei2100.pool.slot.SlotTablePoolEntryFactory;
+import com.github.kei2100.pool.striped.StripedIdleEntriesQueue;
+import com.github.kei2100.pool.validatable.AgeExpiryPoolEntryFactory;
+import com.github.kei2100.pool.validatable.AgeExpiryWheel;
 import com.github.kei2100.pool.validatable.ValidatablePool;
 
 
@@ -47,28 +58,83 @@ public class PoolFactory<T> {
 		poolConfig.validateConfig();
 		validationConfig.validateConfig();
 		
-		PoolEntryFactory<T> poolEntryFactory = createPoolEntryFactory();
-		IdleEntriesQueue<T> idleEntriesQueue = createIdleEntriesQueue(poolEntryFactory);
-		Pool<T> pool = createPool(idleEntriesQueue, poolEntryFactory);
+		// shared by the entry factory and the idle entries queue
+		SlotTable<T> slotTable = null;
+		if (poolConfig.getIdleEntriesQueueType() == IdleEntriesQueueType.SLOT_TABLE) {
+			slotTable = new SlotTable<T>(poolConfig.getMaxActiveEntries() + poolConfig.getMaxIdleEntries());
+		}
+		
+		// shut down by the pool on close
+		OffloadThread offloadThread = null;
+		if (poolConfig.isOffloadEnabled()) {
+			offloadThread = new OffloadThread(poolConfig);
+		}
+		
+		PoolEntryFactory<T> poolEntryFactory = createPoolEntryFactory(slotTable, offloadThread);
+		// the expiry is scheduled when the entry is created
+		AgeExpiryWheel<T> ageExpiryWheel = null;
+		if (!validationConfig.isMaxAgeUnlimit()) {
+			ageExpiryWheel = new AgeExpiryWheel<T>(validationConfig, poolConfig.getClock());
+			poolEntryFactory = new AgeExpiryPoolEntryFactory<T>(poolEntryFactory, ageExpiryWheel);
+		}
+		IdleEntriesQueue<T> idleEntriesQueue = createIdleEntriesQueue(poolEntryFactory, slotTable);
+		Pool<T> pool = createPool(idleEntriesQueue, poolEntryFactory, ageExpiryWheel, offloadThread);
 		
 		return pool;
 	}
 
-	private PoolEntryFactory<T> createPoolEntryFactory() {
-		return new BasicPoolEntryFactory<T>(pooledObjectfactory, pooledObjectValidator);
+	private PoolEntryFactory<T> createPoolEntryFactory(SlotTable<T> slotTable, OffloadThread offloadThread) {
+		PooledObjectFactory<T> objectFactory = pooledObjectfactory;
+		PooledObjectValidator<T> objectValidator = pooledObjectValidator;
+		if (offloadThread != null) {
+			objectFactory = new OffloadPooledObjectFactory<T>(pooledObjectfactory, pooledObjectValidator, offloadThread);
+			objectValidator = new OffloadPooledObjectValidator<T>(pooledObjectValidator, offloadThread);
+		}
+		
+		if (slotTable != null) {
+			return new SlotTablePoolEntryFactory<T>(slotTable, objectFactory, objectValidator, poolConfig.getClock());
+		}
+		return new BasicPoolEntryFactory<T>(objectFactory, objectValidator, poolConfig.getClock());
 	}
 
-	private IdleEntriesQueue<T> createIdleEntriesQueue(PoolEntryFactory<T> poolEntryFactory) {
-		if (poolConfig.isInvalidateInBackground() || poolConfig.isInvalidateInBackground()) {
+	private IdleEntriesQueue<T> createIdleEntriesQueue(
+			PoolEntryFactory<T> poolEntryFactory, SlotTable<T> slotTable) {
+		
+		IdleEntriesQueue<T> sharedQueue = createSharedIdleEntriesQueue(poolEntryFactory, slotTable);
+		
+		if (poolConfig.isMagazineEnabled()) {
+			return new MagazineIdleEntriesQueue<T>(poolConfig, sharedQueue);
+		}
+		return sharedQueue;
+	}
+	
+	private IdleEntriesQueue<T> createSharedIdleEntriesQueue(
+			PoolEntryFactory<T> poolEntryFactory, SlotTable<T> slotTable) {
+		
+		if (slotTable != null) {
+			return new SlotTableIdleEntriesQueue<T>(poolConfig, slotTable);
+		}
+		if (poolConfig.getIdleEntriesQueueType() == IdleEntriesQueueType.CONCURRENT_BAG) {
+			return new ConcurrentBagIdleEntriesQueue<T>(poolConfig);
+		}
+		if (poolConfig.getIdleEntriesQueueType() == IdleEntriesQueueType.STRIPED) {
+			return new StripedIdleEntriesQueue<T>(poolConfig);
+		}
+		if (poolConfig.isInvalidateInBackground() || poolConfig.isEnsureInBackground()) {
 			return new AsyncAdjustIdleEntriesQueue<T>(poolConfig, poolEntryFactory);
 		}
 		return new BasicIdleEntriesQueue<T>(poolConfig);
 	}
 	
-	private Pool<T> createPool(IdleEntriesQueue<T> idleEntriesQueue, PoolEntryFactory<T> poolEntryFactory) {
+	private Pool<T> createPool(
+			IdleEntriesQueue<T> idleEntriesQueue, 
+			PoolEntryFactory<T> poolEntryFactory, 
+			AgeExpiryWheel<T> ageExpiryWheel,
+			OffloadThread offloadThread) {
+		
 		Pool<T> delegate =
-				new BasicPool<T>(poolConfig, idleEntriesQueue, poolEntryFactory);
+				new BasicPool<T>(poolConfig, idleEntriesQueue, poolEntryFactory, offloadThread);
 		
-		return new ValidatablePool<T>(delegate, validationConfig);
+		return new ValidatablePool<T>(delegate, ageExpiryWheel, validationConfig);
 	}
 }
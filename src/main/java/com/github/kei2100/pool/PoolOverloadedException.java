@@ -0,0 +1,22 @@
+package com.github.kei2100.pool;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thrown when a borrow is rejected without waiting, 
+ * because the {@link Pool} is not expected to serve it within the timeout.
+ * 
+ * @see PoolConfig#isAdmissionControl()
+ * */
+public class PoolOverloadedException extends TimeoutException {
+
+	private static final long serialVersionUID = -3270527930517248826L;
+
+	public PoolOverloadedException() {
+		super();
+	}
+
+	public PoolOverloadedException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,90 @@
+package com.github.kei2100.pool;
+
+/**
+ * A snapshot of the load of {@link Pool}, for upstream load balancers.
+ * 
+ * @see Pool#getPressure()
+ * */
+public class PoolPressure {
+	
+	private final int maxActiveEntries;
+	private final int busyEntries;
+	private final int waiters;
+	private final double averageHoldMillis;
+	private final long estimatedWaitMillis;
+	private final long maxWaitMillisOnBorrow;
+	
+	public PoolPressure(
+			int maxActiveEntries, 
+			int busyEntries, 
+			int waiters, 
+			double averageHoldMillis,
+			long estimatedWaitMillis, 
+			long maxWaitMillisOnBorrow) {
+		
+		this.maxActiveEntries = maxActiveEntries;
+		this.busyEntries = busyEntries;
+		this.waiters = waiters;
+		this.averageHoldMillis = averageHoldMillis;
+		this.estimatedWaitMillis = estimatedWaitMillis;
+		this.maxWaitMillisOnBorrow = maxWaitMillisOnBorrow;
+	}
+	
+	/**
+	 * Get the ratio of the borrowed entries to the active limit,
+	 * which is {@link PoolConfig#getMaxActiveEntries()} unless {@link PoolConfig#isAdaptiveSizing()}.
+	 * @return from 0.0 to 1.0
+	 * */
+	public double getUtilization() {
+		return (double) busyEntries / maxActiveEntries;
+	}
+	
+	/**
+	 * Get whether a new borrower is expected to wait longer than {@link PoolConfig#getMaxWaitMillisOnBorrow()}.
+	 * If the wait on borrow is unlimited, this is always false.
+	 * @return true, if overloaded
+	 * */
+	public boolean isOverloaded() {
+		if (maxWaitMillisOnBorrow == 0) return false;
+		return estimatedWaitMillis > maxWaitMillisOnBorrow;
+	}
+	
+	/**
+	 * Get the count of borrowed entries.
+	 * @return busyEntries
+	 * */
+	public int getBusyEntries() {
+		return busyEntries;
+	}
+	
+	/**
+	 * Get the count of borrowers waiting for an entry.
+	 * @return waiters
+	 * */
+	public int getWaiters() {
+		return waiters;
+	}
+	
+	/**
+	 * Get the recent average time that an entry is held by a borrower.
+	 * @return averageHoldMillis
+	 * */
+	public double getAverageHoldMillis() {
+		return averageHoldMillis;
+	}
+	
+	/**
+	 * Get the estimated time that a new borrower waits for an entry.
+	 * @return estimatedWaitMillis
+	 * */
+	public long getEstimatedWaitMillis() {
+		return estimatedWaitMillis;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format(
+				"PoolPressure [utilization=%.2f, waiters=%d, averageHoldMillis=%.2f, estimatedWaitMillis=%d]", 
+				getUtilization(), waiters, averageHoldMillis, estimatedWaitMillis);
+	}
+}
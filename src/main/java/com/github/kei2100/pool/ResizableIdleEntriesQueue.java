@@ -0,0 +1,25 @@
+package com.github.kei2100.pool;
+
+/**
+ * {@link IdleEntriesQueue} whose capacity is fixed at construction,
+ * and has to be told when {@link PoolConfig#getMaxIdleEntries()} is changed.
+ * <p>
+ * The queues which read {@link PoolConfig#getMaxIdleEntries()} at each offer 
+ * do not need to implement this.
+ * </p>
+ * 
+ * @param <T> the type of included object in {@link PoolEntry}
+ * @see Pool#reconfigure(PoolConfig)
+ * */
+public interface ResizableIdleEntriesQueue<T> extends IdleEntriesQueue<T> {
+	
+	/**
+	 * Change the capacity of this queue.
+	 * If the capacity is decreased below the idle entries, the excess entries are kept until they are borrowed,
+	 * and the entries offered over the capacity are rejected.
+	 * 
+	 * @param maxIdleEntries the new capacity
+	 * @throws IllegalArgumentException if maxIdleEntries is less than 1
+	 * */
+	void resize(int maxIdleEntries);
+}
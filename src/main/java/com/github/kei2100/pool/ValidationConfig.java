@@ -2,6 +2,7 @@ package com.github.kei2100.pool;
 
 import javax.validation.constraints.Min;
 
+import com.github.kei2100.pool.util.MaintenanceScheduler;
 import com.github.kei2100.pool.util.PropertyValidationException;
 import com.github.kei2100.pool.util.PropertyValidator;
 
@@ -50,6 +51,8 @@ public class ValidationConfig {
 	/**
 	 * The number of threads to validation threads. 
 	 * These threads check validity of the object in the background while object is idling.  
+	 * The threads are the workers of the shared {@link MaintenanceScheduler}, 
+	 * and this value limits the validations of the pool run at the same time.
 	 * */
 	@Min(0)
 	private int testThreads = 0;
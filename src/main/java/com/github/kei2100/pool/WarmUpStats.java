@@ -0,0 +1,92 @@
+package com.github.kei2100.pool;
+
+/**
+ * A snapshot of the creation of {@link PoolConfig#getInitialEntries()}.
+ * 
+ * @see Pool#getWarmUpStats()
+ * */
+public class WarmUpStats {
+	
+	private final int requestedEntries;
+	private final int createdEntries;
+	private final int failedEntries;
+	private final int skippedEntries;
+	private final long elapsedMillis;
+	
+	public WarmUpStats(
+			int requestedEntries, 
+			int createdEntries, 
+			int failedEntries, 
+			int skippedEntries, 
+			long elapsedMillis) {
+		
+		this.requestedEntries = requestedEntries;
+		this.createdEntries = createdEntries;
+		this.failedEntries = failedEntries;
+		this.skippedEntries = skippedEntries;
+		this.elapsedMillis = elapsedMillis;
+	}
+	
+	/**
+	 * Get whether the creation of all initial entries is finished, successfully or not.
+	 * @return true, if finished
+	 * */
+	public boolean isCompleted() {
+		return createdEntries + failedEntries + skippedEntries == requestedEntries;
+	}
+	
+	/**
+	 * Get whether some initial entries were skipped by {@link PoolConfig#getWarmUpTimeoutMillis()}.
+	 * @return true, if timed out
+	 * */
+	public boolean isTimedOut() {
+		return skippedEntries > 0;
+	}
+	
+	/**
+	 * Get {@link PoolConfig#getInitialEntries()}.
+	 * @return requestedEntries
+	 * */
+	public int getRequestedEntries() {
+		return requestedEntries;
+	}
+	
+	/**
+	 * Get the count of initial entries created successfully.
+	 * @return createdEntries
+	 * */
+	public int getCreatedEntries() {
+		return createdEntries;
+	}
+	
+	/**
+	 * Get the count of initial entries whose creation threw an exception.
+	 * @return failedEntries
+	 * */
+	public int getFailedEntries() {
+		return failedEntries;
+	}
+	
+	/**
+	 * Get the count of initial entries not created by the time limit.
+	 * @return skippedEntries
+	 * */
+	public int getSkippedEntries() {
+		return skippedEntries;
+	}
+	
+	/**
+	 * Get the time from the start of the creation to its completion, or to now if not completed.
+	 * @return elapsedMillis
+	 * */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format(
+				"WarmUpStats [requested=%d, created=%d, failed=%d, skipped=%d, elapsedMillis=%d]", 
+				requestedEntries, createdEntries, failedEntries, skippedEntries, elapsedMillis);
+	}
+}
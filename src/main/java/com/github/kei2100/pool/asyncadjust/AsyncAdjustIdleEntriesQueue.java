@@ -1,36 +1,47 @@
 package com.github.kei2100.pool.asyncadjust;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.CloseableIdleEntriesQueue;
 import com.github.kei2100.pool.PoolConfig;
 import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.PoolEntryFactory;
 import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
 
 
-public class AsyncAdjustIdleEntriesQueue<T> implements IdleEntriesQueue<T> {	
+public class AsyncAdjustIdleEntriesQueue<T> implements CloseableIdleEntriesQueue<T> {	
 	private static final Logger logger = LoggerFactory.getLogger(AsyncAdjustIdleEntriesQueue.class);
 
 	private final PoolConfig config;
 	
-	private final ConcurrentLinkedQueue<PoolEntry<T>> idleEntries;
+	private final boolean lifo;
+	private final ReentrantLock idleEntriesLock = new ReentrantLock();
+	// guarded by idleEntriesLock, does not allocate a node on an uncontended offer
+	private final ArrayDeque<PoolEntry<T>> idleEntries = new ArrayDeque<PoolEntry<T>>();
+	// added while idleEntriesLock is contended, moved to idleEntries by the next holder of the lock
+	private final ConcurrentLinkedQueue<PoolEntry<T>> contendedEntries = new ConcurrentLinkedQueue<PoolEntry<T>>();
 	private final AtomicInteger idleEntriesCount;	
 	private final ConcurrentLinkedQueue<PoolEntry<T>> idleEntriesToBeInvalidate;
 	
 	private AsyncInvalidateThread<T> invalidateThread;
 	private AsyncEnsureThread<T> ensureThread;
+	private DemandPredictor demandPredictor;
 	private AtomicBoolean isScheduledEnsureThread = new AtomicBoolean(false);
+	private volatile boolean isClosed = false;
 	
 	public AsyncAdjustIdleEntriesQueue(PoolConfig config, PoolEntryFactory<T> entryFactory) {
 		this.config = config;
 		
-		idleEntries = new ConcurrentLinkedQueue<PoolEntry<T>>();
+		this.lifo = config.isLifo();
 		idleEntriesCount = new AtomicInteger(0);
 		idleEntriesToBeInvalidate = new ConcurrentLinkedQueue<PoolEntry<T>>();
 		
@@ -40,12 +51,22 @@ public class AsyncAdjustIdleEntriesQueue<T> implements IdleEntriesQueue<T> {
 		}
 		if (config.isEnsureInBackground()) {
 			ensureThread = new AsyncEnsureThread<T>(config, this, entryFactory);
+			
+			if (config.isPredictiveEnsure()) {
+				demandPredictor = new DemandPredictor(config);
+				// the prediction needs the ticks before the demand rises
+				isScheduledEnsureThread.set(true);
+				ensureThread.scheduluBackgroundEnsure();
+			}
 		}
 	}
 	
 	@Override
 	public PoolEntry<T> poll() {
-		PoolEntry<T> idle = idleEntries.poll();
+		PoolEntry<T> idle = pollIdleEntry();
+		if (demandPredictor != null) {
+			demandPredictor.recordBorrow();
+		}
 		if (idle == null) {
 			return idleEntriesToBeInvalidate.poll();
 		}
@@ -53,7 +74,7 @@ public class AsyncAdjustIdleEntriesQueue<T> implements IdleEntriesQueue<T> {
 		// Move toBeInvalidate to idle, if toBeInvalidate is not null.
 		PoolEntry<T> toBeInvalidate = idleEntriesToBeInvalidate.poll();
 		if (toBeInvalidate != null) {
-			idleEntries.add(toBeInvalidate);
+			addIdleEntry(toBeInvalidate);
 		} else {
 			idleEntriesCount.decrementAndGet();
 			scheduleBackgroundEnsureIfNeed(idle);
@@ -79,6 +100,27 @@ public class AsyncAdjustIdleEntriesQueue<T> implements IdleEntriesQueue<T> {
 	public boolean offer(PoolEntry<T> entry) throws NullPointerException {
 		if (entry == null) throw new NullPointerException("entry is null.");
 		if (!entry.getState().isValid()) return false;
+		if (demandPredictor != null) {
+			demandPredictor.recordReturn(entry, config.getClock().currentTimeMillis());
+		}
+		return addIfAcceptable(entry);
+	}
+	
+	/*
+	 * The restored entry is not recorded to the demand predictor.
+	 * */
+	@Override
+	public boolean restore(PoolEntry<T> entry) throws NullPointerException {
+		if (entry == null) throw new NullPointerException("entry is null.");
+		if (!entry.getState().isValid()) return false;
+		return addIfAcceptable(entry);
+	}
+	
+	private boolean addIfAcceptable(PoolEntry<T> entry) {
+		if (isClosed) {
+			invalidate(entry);
+			return false;
+		}
 		
 		int idleCount = idleEntriesCount.incrementAndGet();
 		
@@ -87,29 +129,178 @@ public class AsyncAdjustIdleEntriesQueue<T> implements IdleEntriesQueue<T> {
 			innerInvalidate(entry);
 			return false;
 		} else {
-			idleEntries.add(entry);
+			addIdleEntry(entry);
 			return true;
 		}
 	}	
 	
+	/*
+	 * The entries are always added at the last.
+	 * While the lock is contended, the entries added without it are taken first, 
+	 * so the order of the entries returned under contention is approximate.
+	 * */
+	private PoolEntry<T> pollIdleEntry() {
+		if (!idleEntriesLock.tryLock()) {
+			PoolEntry<T> idle = contendedEntries.poll();
+			if (idle != null) return idle;
+			idleEntriesLock.lock();
+		}
+		try {
+			addContendedEntries();
+			return lifo ? idleEntries.pollLast() : idleEntries.pollFirst();
+		} finally {
+			idleEntriesLock.unlock();
+		}
+	}
+	
+	/*
+	 * Does not wait for the lock, the entry is added to the lock-free queue while the lock is contended.
+	 * */
+	private void addIdleEntry(PoolEntry<T> entry) {
+		if (!idleEntriesLock.tryLock()) {
+			contendedEntries.add(entry);
+			return;
+		}
+		try {
+			idleEntries.addLast(entry);
+		} finally {
+			idleEntriesLock.unlock();
+		}
+	}
+	
+	/*
+	 * Called with idleEntriesLock.
+	 * */
+	private void addContendedEntries() {
+		if (contendedEntries.isEmpty()) return;
+		
+		PoolEntry<T> entry;
+		while ((entry = contendedEntries.poll()) != null) {
+			idleEntries.addLast(entry);
+		}
+	}
+	
+	@Override
+	public int drainTo(Collection<? super PoolEntry<T>> collection, int maxEntries) 
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		
+		int drained = 0;
+		while (drained < maxEntries) {
+			PoolEntry<T> entry = poll();
+			if (entry == null) break;
+			
+			collection.add(entry);
+			drained++;
+		}
+		return drained;
+	}
+	
+	/*
+	 * The entries waiting for the background invalidation are removed first, regardless of the time.
+	 * The idle entries are added at the last, so the first is the least recently returned.
+	 * */
+	@Override
+	public int evictTo(Collection<? super PoolEntry<T>> collection, long returnedBefore, int maxEntries)
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		
+		int evicted = 0;
+		while (evicted < maxEntries) {
+			PoolEntry<T> entry = idleEntriesToBeInvalidate.poll();
+			if (entry == null) break;
+			
+			collection.add(entry);
+			evicted++;
+		}
+		
+		idleEntriesLock.lock();
+		try {
+			addContendedEntries();
+			Iterator<PoolEntry<T>> it = idleEntries.iterator();
+			while (evicted < maxEntries && it.hasNext()) {
+				PoolEntry<T> entry = it.next();
+				if (entry.getState().getLastReturnedAt() > returnedBefore) continue;
+				
+				it.remove();
+				idleEntriesCount.decrementAndGet();
+				collection.add(entry);
+				evicted++;
+			}
+		} finally {
+			idleEntriesLock.unlock();
+		}
+		return evicted;
+	}
+	
+	@Override
+	public int getIdleEntriesCount() {
+		return idleEntriesCount.get();
+	}
+	
 	private void innerInvalidate(PoolEntry<T> entry) {
 		if (!config.isInvalidateInBackground()) {
-			try {
-				entry.invalidate();
-			} catch (Exception e) {
-				logger.warn(PoolLoggerMarkerFactory.getMarker(), 
-						"Invalidate PoolEntry throws Exception.", e);
-			}
+			invalidate(entry);
 		} else {
 			idleEntriesToBeInvalidate.add(entry);
 		}
 	}
 	
+	private void invalidate(PoolEntry<T> entry) {
+		try {
+			entry.invalidate();
+		} catch (Exception e) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(), 
+					"Invalidate PoolEntry throws Exception.", e);
+		}
+	}
+	
+	/*
+	 * The entries waiting for the background invalidation are left to evictTo.
+	 * */
+	@Override
+	public void close() {
+		isClosed = true;
+		// prevent the lazy schedule of the ensure thread
+		isScheduledEnsureThread.set(true);
+		
+		if (invalidateThread != null) {
+			invalidateThread.stopBackgroundInvalidate();
+		}
+		if (ensureThread != null) {
+			ensureThread.stopBackgroundEnsure();
+		}
+	}
+	
 	PoolEntry<T> pollToBeInvalidate() {
 		return idleEntriesToBeInvalidate.poll();
 	}
 	
 	int countNeedForEnsure() {
+		if (demandPredictor != null) {
+			return demandPredictor.getTargetIdleEntries() - idleEntriesCount.get();
+		}
 		return config.getMinIdleEntries() - idleEntriesCount.get();
 	}
+	
+	/*
+	 * Update the demand prediction, if predictiveEnsure.
+	 * */
+	void predictDemand() {
+		if (demandPredictor != null) {
+			demandPredictor.tick(config.getClock().currentTimeMillis());
+		}
+	}
+	
+	/*
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	int getTargetIdleEntries() {
+		if (demandPredictor != null) {
+			return demandPredictor.getTargetIdleEntries();
+		}
+		return config.getMinIdleEntries();
+	}
 }
@@ -1,8 +1,5 @@
 package com.github.kei2100.pool.asyncadjust;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
@@ -11,7 +8,8 @@ import org.slf4j.LoggerFactory;
 import com.github.kei2100.pool.PoolConfig;
 import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.PoolEntryFactory;
-import com.github.kei2100.pool.util.NameableDaemonThreadFactory;
+import com.github.kei2100.pool.util.FixedDelayTask;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
 import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
 
 
@@ -23,7 +21,7 @@ class AsyncEnsureThread<T> {
 	private final PoolEntryFactory<T> entryFactory;
 	
 	private AtomicBoolean isScheduled = new AtomicBoolean(false); 
-	private ScheduledExecutorService taskExecutor;
+	private MaintenanceScheduler.Registration registration;
 	
 	AsyncEnsureThread(
 			PoolConfig config, AsyncAdjustIdleEntriesQueue<T> queue, PoolEntryFactory<T> entryFactory) {
@@ -41,31 +39,38 @@ class AsyncEnsureThread<T> {
 			throw new IllegalStateException("already scheduled");
 		}
 		
-		taskExecutor = 
-				Executors.newScheduledThreadPool(
-						config.getEnsureThreads(), 
-						new NameableDaemonThreadFactory(AsyncEnsureThread.class.getSimpleName()));
+		registration =
+				MaintenanceScheduler.getShared().register(
+						AsyncEnsureThread.class.getSimpleName(), config.getEnsureThreads());
 		
-		EnsureTaskBootstrap bootstrap = new EnsureTaskBootstrap();
+		EnsureTaskBootstrap bootstrap = new EnsureTaskBootstrap(registration);
 		long initialDelay = 0;
-		taskExecutor.scheduleWithFixedDelay(
-				bootstrap, initialDelay, config.getEnsureIntervalMillis(), TimeUnit.MILLISECONDS);
-		
-		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
-			@Override
-			public void run() {
-				taskExecutor.shutdownNow();
-			}
-		}));
+		bootstrap.schedule(initialDelay);
+	}
+	
+	void stopBackgroundEnsure() {
+		if (registration != null) {
+			registration.cancel();
+		}
 	}
 	
-	private class EnsureTaskBootstrap implements Runnable {
+	private class EnsureTaskBootstrap extends FixedDelayTask {
+		private EnsureTaskBootstrap(MaintenanceScheduler.Registration registration) {
+			super(registration);
+		}
+		
 		@Override
-		public void run() {
+		protected long getDelayMillis() {
+			return config.getEnsureIntervalMillis();
+		}
+		
+		@Override
+		protected void runTask() {
+			queue.predictDemand();
 			int needForEnsure = queue.countNeedForEnsure();
 			
 			for (int i = 0; i < needForEnsure; i++) {
-				taskExecutor.submit(new EnsureTask());
+				registration.execute(new EnsureTask());
 				if (notNeedForEnsure()) {
 					break;
 				}
@@ -1,13 +1,12 @@
 package com.github.kei2100.pool.asyncadjust;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.github.kei2100.pool.PoolConfig;
 import com.github.kei2100.pool.PoolEntry;
-import com.github.kei2100.pool.util.NameableDaemonThreadFactory;
+import com.github.kei2100.pool.util.FixedDelayTask;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
 
 
 class AsyncInvalidateThread<T> {
@@ -16,7 +15,7 @@ class AsyncInvalidateThread<T> {
 	private final AsyncAdjustIdleEntriesQueue<T> queue; 
 	
 	private AtomicBoolean isScheduled = new AtomicBoolean(false);
-	private ScheduledExecutorService taskExecutor;
+	private MaintenanceScheduler.Registration registration;
 	
 	AsyncInvalidateThread(PoolConfig config, AsyncAdjustIdleEntriesQueue<T> queue) {
 		this.config = config;
@@ -31,34 +30,50 @@ class AsyncInvalidateThread<T> {
 			throw new IllegalStateException("already scheduled");
 		}
 		
-		taskExecutor = 
-				Executors.newScheduledThreadPool(
-						config.getInvalidateThreads(), 
-						new NameableDaemonThreadFactory(AsyncInvalidateThread.class.getSimpleName()));
+		registration =
+				MaintenanceScheduler.getShared().register(
+						AsyncInvalidateThread.class.getSimpleName(), config.getInvalidateThreads());
 				
-		InvalidateTaskBootstrap bootstrap = new InvalidateTaskBootstrap();
-		taskExecutor.scheduleWithFixedDelay(
-				bootstrap, 
-				config.getInvalidateThreadInitialDelayMillis(),
-				config.getInvalidateIntervalMillis(), 
-				TimeUnit.MILLISECONDS);
+		InvalidateTaskBootstrap bootstrap = new InvalidateTaskBootstrap(registration);
+		bootstrap.schedule(config.getInvalidateThreadInitialDelayMillis());
+	}
+	
+	/*
+	 * The entries whose invalidation is still queued are invalidated by the calling thread.
+	 * */
+	void stopBackgroundInvalidate() {
+		if (registration == null) return;
 		
-		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
-			@Override
-			public void run() {
-				taskExecutor.shutdownNow();
+		for (Runnable task : registration.cancel()) {
+			if (task instanceof AsyncInvalidateThread.InvalidateTask) {
+				task.run();
 			}
-		}));
+		}
 	}
 	
-	private class InvalidateTaskBootstrap implements Runnable {
+	private class InvalidateTaskBootstrap extends FixedDelayTask {
+		private InvalidateTaskBootstrap(MaintenanceScheduler.Registration registration) {
+			super(registration);
+		}
+		
 		@Override
-		public void run() {
+		protected long getDelayMillis() {
+			return config.getInvalidateIntervalMillis();
+		}
+		
+		@Override
+		protected void runTask() {
 			while (true) {
 				PoolEntry<T> entry = queue.pollToBeInvalidate();
 				if (entry == null) break;
 				
-				taskExecutor.submit(new InvalidateTask(entry));
+				InvalidateTask task = new InvalidateTask(entry);
+				try {
+					registration.execute(task);
+				} catch (RejectedExecutionException e) {
+					// stopped meanwhile, the polled entry is not left valid
+					task.run();
+				}
 			}
 		}
 	}
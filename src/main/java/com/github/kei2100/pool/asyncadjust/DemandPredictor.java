@@ -0,0 +1,87 @@
+package com.github.kei2100.pool.asyncadjust;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+
+
+/*
+ * Predicts the idle entries needed for the next ensure interval.
+ * <p>
+ * The borrow rate is averaged twice, quickly and slowly.
+ * By Little's law, the entries in use are (rate * averageHoldMillis).
+ * The pool already holds about as many entries as the slow rate needs,
+ * so the entries to add for a ramp are (projectedRate - slowRate) * averageHoldMillis,
+ * where the projected rate extends the upward trend of the quick rate for one more interval.
+ * When the demand stops rising, the slow rate catches up and the target decays to minIdleEntries.
+ * </p>
+ * */
+class DemandPredictor {
+	// the weight of a new sample in the moving averages
+	private static final double FAST_SMOOTHING = 0.5;
+	private static final double SLOW_SMOOTHING = 0.1;
+
+	private final PoolConfig config;
+
+	private final AtomicInteger borrows = new AtomicInteger(0);
+
+	// updated without lock, a lost sample does not matter to the prediction
+	private volatile double averageHoldMillis = 0;
+
+	// updated only by tick()
+	private long lastTickAt = 0;
+	private double fastRatePerMillis = 0;
+	private double slowRatePerMillis = 0;
+
+	private volatile int targetIdleEntries;
+
+	DemandPredictor(PoolConfig config) {
+		this.config = config;
+		this.targetIdleEntries = config.getMinIdleEntries();
+	}
+
+	void recordBorrow() {
+		borrows.incrementAndGet();
+	}
+
+	void recordReturn(PoolEntry<?> entry, long returnedAt) {
+		long borrowedAt = entry.getState().getLastBorrowedAt();
+		if (borrowedAt == 0) return;
+
+		double holdMillis = Math.max(0, returnedAt - borrowedAt);
+		double average = averageHoldMillis;
+		averageHoldMillis = (average == 0) ? holdMillis : average + SLOW_SMOOTHING * (holdMillis - average);
+	}
+
+	/*
+	 * Called at each ensure interval by a single thread.
+	 * */
+	void tick(long now) {
+		if (lastTickAt == 0) {
+			lastTickAt = now;
+			borrows.set(0);
+			return;
+		}
+		long elapsedMillis = now - lastTickAt;
+		if (elapsedMillis <= 0) return;
+		lastTickAt = now;
+
+		double rate = (double) borrows.getAndSet(0) / elapsedMillis;
+		fastRatePerMillis += FAST_SMOOTHING * (rate - fastRatePerMillis);
+		slowRatePerMillis += SLOW_SMOOTHING * (rate - slowRatePerMillis);
+
+		double trend = Math.max(0, fastRatePerMillis - slowRatePerMillis);
+		double projectedRate = fastRatePerMillis + trend;
+		double rampEntries = (projectedRate - slowRatePerMillis) * averageHoldMillis;
+
+		// negative while the demand is falling
+		int minIdleEntries = config.getMinIdleEntries();
+		int target = minIdleEntries + (int) Math.max(0, Math.round(rampEntries));
+		targetIdleEntries = Math.min(target, Math.max(minIdleEntries, config.getMaxIdleEntries()));
+	}
+
+	int getTargetIdleEntries() {
+		return targetIdleEntries;
+	}
+}
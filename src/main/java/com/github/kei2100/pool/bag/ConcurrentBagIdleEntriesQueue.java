@@ -0,0 +1,409 @@
+package com.github.kei2100.pool.bag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.HandoffIdleEntriesQueue;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/**
+ * {@link HandoffIdleEntriesQueue} in the style of a concurrent bag.
+ * <p>
+ * All entries known to this queue are kept in a shared copy-on-write list,
+ * and each of them carries an idle/borrowed state that is changed with CAS.
+ * A thread first looks for the entries it returned recently (per-thread hints),
+ * then scans the shared list.
+ * </p>
+ * <p>
+ * Waiting borrowers are kept in FIFO order, and a returned entry is transferred
+ * to the longest waiting one.
+ * </p>
+ *
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class ConcurrentBagIdleEntriesQueue<T> implements HandoffIdleEntriesQueue<T> {
+	private static final Logger logger = LoggerFactory.getLogger(ConcurrentBagIdleEntriesQueue.class);
+
+	private static final int MAX_HINTS_PER_THREAD = 16;
+
+	private static final Object SIGNALLED = new Object();
+	private static final Object CANCELLED = new Object();
+
+	private final PoolConfig config;
+
+	private final CopyOnWriteArrayList<BagItem<T>> sharedList;
+	private final ConcurrentMap<PoolEntry<T>, BagItem<T>> items;
+	private final ThreadLocal<List<BagItem<T>>> hints;
+	private final AtomicInteger idleEntriesCount;
+
+	private final ConcurrentLinkedQueue<BagWaiter> waiters;
+
+	public ConcurrentBagIdleEntriesQueue(PoolConfig config) {
+		this.config = config;
+
+		sharedList = new CopyOnWriteArrayList<BagItem<T>>();
+		items = new ConcurrentHashMap<PoolEntry<T>, BagItem<T>>();
+		hints = new ThreadLocal<List<BagItem<T>>>() {
+			@Override
+			protected List<BagItem<T>> initialValue() {
+				return new ArrayList<BagItem<T>>(MAX_HINTS_PER_THREAD);
+			}
+		};
+		idleEntriesCount = new AtomicInteger(0);
+		waiters = new ConcurrentLinkedQueue<BagWaiter>();
+	}
+
+	/*
+	 * The items whose entries are invalidated are removed when they are found,
+	 * because the borrowers do not return the invalidated entries.
+	 * */
+	@Override
+	public PoolEntry<T> poll() {
+		List<BagItem<T>> threadHints = hints.get();
+		for (int i = threadHints.size() - 1; i >= 0; i--) {
+			BagItem<T> item = threadHints.remove(i);
+			if (takeIdle(item)) {
+				return item.entry;
+			}
+		}
+
+		for (BagItem<T> item : sharedList) {
+			if (takeIdle(item)) {
+				return item.entry;
+			}
+			if (item.get() == BagItem.BORROWED && !item.entry.getState().isValid()) {
+				// invalidated while borrowed, e.g. the lease expired
+				removeItem(item);
+			}
+		}
+		return null;
+	}
+	
+	/*
+	 * Take the item if it is idle and valid.
+	 * An idle item whose entry is invalidated is removed instead.
+	 * */
+	private boolean takeIdle(BagItem<T> item) {
+		if (!item.compareAndSet(BagItem.IDLE, BagItem.BORROWED)) {
+			return false;
+		}
+		idleEntriesCount.decrementAndGet();
+		
+		if (!item.entry.getState().isValid()) {
+			removeItem(item);
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean offer(PoolEntry<T> entry) throws NullPointerException {
+		return offer(entry, true);
+	}
+
+	/*
+	 * The restored entry is not hinted to the current thread, 
+	 * which is a maintenance thread and does not borrow it again.
+	 * */
+	@Override
+	public boolean restore(PoolEntry<T> entry) throws NullPointerException {
+		return offer(entry, false);
+	}
+
+	private boolean offer(PoolEntry<T> entry, boolean hint) {
+		if (entry == null) throw new NullPointerException("entry is null.");
+
+		BagItem<T> item = items.get(entry);
+		if (!entry.getState().isValid()) {
+			removeItem(item);
+			return false;
+		}
+
+		int idleCount = idleEntriesCount.incrementAndGet();
+		if (idleCount > config.getMaxIdleEntries()) {
+			idleEntriesCount.decrementAndGet();
+			removeItem(item);
+			invalidateEntry(entry);
+			return false;
+		}
+
+		if (item == null) {
+			item = new BagItem<T>(entry);
+			items.put(entry, item);
+			sharedList.add(item);
+		} else {
+			item.set(BagItem.IDLE);
+		}
+		if (hint) addHint(item);
+		return true;
+	}
+
+	@Override
+	public int drainTo(Collection<? super PoolEntry<T>> collection, int maxEntries) 
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		
+		int drained = 0;
+		while (drained < maxEntries) {
+			PoolEntry<T> entry = poll();
+			if (entry == null) break;
+			
+			collection.add(entry);
+			drained++;
+		}
+		return drained;
+	}
+
+	/*
+	 * The shared list is in the order of the first offer, 
+	 * so the idle items are sorted by the time they were returned.
+	 * The evicted items are removed from this queue, and the items of the invalidated entries are purged meanwhile.
+	 * */
+	@Override
+	public int evictTo(Collection<? super PoolEntry<T>> collection, long returnedBefore, int maxEntries)
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		
+		List<BagItem<T>> candidates = new ArrayList<BagItem<T>>();
+		for (BagItem<T> item : sharedList) {
+			if (!item.entry.getState().isValid()) {
+				if (item.get() == BagItem.BORROWED) {
+					removeItem(item);
+				} else {
+					// counted as idle until it is taken
+					takeIdle(item);
+				}
+				continue;
+			}
+			if (item.get() == BagItem.IDLE && item.entry.getState().getLastReturnedAt() <= returnedBefore) {
+				candidates.add(item);
+			}
+		}
+		Collections.sort(candidates, new Comparator<BagItem<T>>() {
+			@Override
+			public int compare(BagItem<T> o1, BagItem<T> o2) {
+				long returnedAt1 = o1.entry.getState().getLastReturnedAt();
+				long returnedAt2 = o2.entry.getState().getLastReturnedAt();
+				return (returnedAt1 < returnedAt2) ? -1 : ((returnedAt1 == returnedAt2) ? 0 : 1);
+			}
+		});
+		
+		int evicted = 0;
+		for (int i = 0; i < candidates.size() && evicted < maxEntries; i++) {
+			BagItem<T> item = candidates.get(i);
+			if (takeIdle(item)) {
+				removeItem(item);
+				collection.add(item.entry);
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	private void addHint(BagItem<T> item) {
+		List<BagItem<T>> threadHints = hints.get();
+		if (threadHints.size() == MAX_HINTS_PER_THREAD) {
+			threadHints.remove(0);
+		}
+		threadHints.add(item);
+	}
+
+	private void removeItem(BagItem<T> item) {
+		if (item == null) return;
+
+		item.set(BagItem.REMOVED);
+		items.remove(item.entry);
+		sharedList.remove(item);
+	}
+
+	private void invalidateEntry(PoolEntry<T> entry) {
+		try {
+			entry.invalidate();
+		} catch (Exception e) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(),
+					"Invalidate PoolEntry throws Exception.", e);
+		}
+	}
+
+	@Override
+	public Waiter<T> addWaiter() {
+		BagWaiter waiter = new BagWaiter(Thread.currentThread());
+		waiters.add(waiter);
+		return waiter;
+	}
+
+	@Override
+	public boolean transfer(PoolEntry<T> entry) throws NullPointerException {
+		if (entry == null) throw new NullPointerException("entry is null.");
+		if (waiters.isEmpty()) return false;
+
+		Iterator<BagWaiter> it = waiters.iterator();
+		while (it.hasNext()) {
+			BagWaiter waiter = it.next();
+			Object state = waiter.get();
+
+			if (state != null && state != SIGNALLED) {
+				// already transferred or cancelled
+				it.remove();
+				continue;
+			}
+			if (waiter.compareAndSet(state, entry)) {
+				it.remove();
+				LockSupport.unpark(waiter.thread);
+
+				// the waiter no longer uses the capacity it was signalled for.
+				if (state == SIGNALLED) {
+					signalWaiter();
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void signalWaiter() {
+		if (waiters.isEmpty()) return;
+
+		Iterator<BagWaiter> it = waiters.iterator();
+		while (it.hasNext()) {
+			BagWaiter waiter = it.next();
+			Object state = waiter.get();
+
+			if (state == SIGNALLED) continue;
+			if (state != null) {
+				it.remove();
+				continue;
+			}
+			if (waiter.compareAndSet(null, SIGNALLED)) {
+				LockSupport.unpark(waiter.thread);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public int getIdleEntriesCount() {
+		return idleEntriesCount.get();
+	}
+
+	/*
+	 * The count of the idle and borrowed entries known to this queue.
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getItemsCount() {
+		return sharedList.size();
+	}
+
+	/*
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getWaitersCount() {
+		return waiters.size();
+	}
+
+	/*
+	 * An entry with its idle/borrowed state.
+	 * */
+	private static class BagItem<T> extends AtomicInteger {
+		private static final long serialVersionUID = 2637504617357383262L;
+
+		private static final int IDLE = 0;
+		private static final int BORROWED = 1;
+		private static final int REMOVED = -1;
+
+		private final PoolEntry<T> entry;
+
+		private BagItem(PoolEntry<T> entry) {
+			super(IDLE);
+			this.entry = entry;
+		}
+	}
+
+	/*
+	 * The value is null while waiting,
+	 * then the transferred entry, SIGNALLED or CANCELLED.
+	 * */
+	private class BagWaiter extends AtomicReference<Object> implements Waiter<T> {
+		private static final long serialVersionUID = -2786120937404423409L;
+
+		private final Thread thread;
+
+		private BagWaiter(Thread thread) {
+			this.thread = thread;
+		}
+
+		@Override
+		public PoolEntry<T> await(long timeoutNanos) throws InterruptedException {
+			boolean timed = (timeoutNanos != Long.MAX_VALUE);
+			long deadline = config.getClock().nanoTime() + timeoutNanos;
+
+			while (true) {
+				Object state = get();
+				if (state == SIGNALLED) {
+					if (compareAndSet(SIGNALLED, null)) {
+						return null;
+					}
+					continue;
+				}
+				if (state != null && state != CANCELLED) {
+					return castEntry(state);
+				}
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+
+				if (timed) {
+					long remaining = deadline - config.getClock().nanoTime();
+					if (remaining <= 0) return null;
+					LockSupport.parkNanos(this, remaining);
+				} else {
+					LockSupport.park(this);
+				}
+			}
+		}
+
+		@Override
+		public PoolEntry<T> cancel() {
+			while (true) {
+				Object state = get();
+				if (state == CANCELLED) return null;
+				if (state != null && state != SIGNALLED) {
+					return castEntry(state);
+				}
+				if (compareAndSet(state, CANCELLED)) {
+					waiters.remove(this);
+					// pass the signal which this waiter did not consume
+					if (state == SIGNALLED) {
+						signalWaiter();
+					}
+					return null;
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private PoolEntry<T> castEntry(Object state) {
+			return (PoolEntry<T>) state;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.kei2100.pool.PoolConfig;
+
+
+/*
+ * Adjusts the active limit and the idle target with AIMD.
+ * <p>
+ * At each interval,
+ * the limit is decreased multiplicatively if the creation fails more than maxCreateFailurePercent,
+ * or increased by one if the borrowers waited longer than targetWaitMillisOnBorrow on average,
+ * or decreased by one if the entries were not used up.
+ * The limit stays between minActiveEntries and maxActiveEntries, which may be reconfigured.
+ * </p>
+ * <p>
+ * If the creation takes longer than targetWaitMillisOnBorrow, creating on borrow breaks the target,
+ * so the idle target keeps entries up to the limit.
+ * Otherwise the idle target follows the peak of the borrowed entries.
+ * </p>
+ * */
+class AdaptiveSizingController {
+	private static final double DECREASE_FACTOR = 0.75;
+
+	private final PoolConfig config;
+	private final long targetWaitNanos;
+	private final int maxCreateFailurePercent;
+
+	private final AtomicLong borrows = new AtomicLong(0);
+	private final AtomicLong waitNanos = new AtomicLong(0);
+	private final AtomicInteger peakBusyEntries = new AtomicInteger(0);
+	private final AtomicLong creates = new AtomicLong(0);
+	private final AtomicLong createNanos = new AtomicLong(0);
+	private final AtomicLong createFailures = new AtomicLong(0);
+
+	// updated only by adjust()
+	private long averageCreateNanos = 0;
+
+	private volatile int activeLimit;
+	private volatile int idleTarget;
+	private volatile boolean spare = false;
+
+	AdaptiveSizingController(PoolConfig config) {
+		this.config = config;
+		this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getTargetWaitMillisOnBorrow());
+		this.maxCreateFailurePercent = config.getMaxCreateFailurePercent();
+
+		this.activeLimit = config.getMaxActiveEntries();
+		this.idleTarget = config.getMaxIdleEntries();
+	}
+
+	void recordBorrow(int busyEntries) {
+		borrows.incrementAndGet();
+		while (true) {
+			int peak = peakBusyEntries.get();
+			if (busyEntries <= peak) return;
+			if (peakBusyEntries.compareAndSet(peak, busyEntries)) return;
+		}
+	}
+
+	/*
+	 * Record the time waited for a permit, including the timed out borrowers.
+	 * */
+	void recordWait(long nanos) {
+		waitNanos.addAndGet(nanos);
+	}
+
+	void recordCreate(long nanos, boolean succeeded) {
+		if (succeeded) {
+			creates.incrementAndGet();
+			createNanos.addAndGet(nanos);
+		} else {
+			createFailures.incrementAndGet();
+		}
+	}
+
+	/*
+	 * Called at each interval by a single thread.
+	 * */
+	void adjust() {
+		long borrowCount = borrows.getAndSet(0);
+		long waitedNanos = waitNanos.getAndSet(0);
+		int peak = peakBusyEntries.getAndSet(0);
+		long createCount = creates.getAndSet(0);
+		long createdNanos = createNanos.getAndSet(0);
+		long failureCount = createFailures.getAndSet(0);
+
+		if (createCount > 0) {
+			averageCreateNanos = createdNanos / createCount;
+		}
+
+		int limit = activeLimit;
+		long averageWaitNanos = waitedNanos / Math.max(1, borrowCount);
+
+		if (failureCount * 100 > (createCount + failureCount) * maxCreateFailurePercent) {
+			// the backend is failing, do not load it more
+			limit = (int) (limit * DECREASE_FACTOR);
+		} else if (waitedNanos > 0 && averageWaitNanos > targetWaitNanos) {
+			limit = limit + 1;
+		} else if (peak + 1 < limit) {
+			// keep one spare entry for the next borrower
+			limit = limit - 1;
+		}
+		limit = clamp(limit);
+
+		spare = (limit < activeLimit) || (waitedNanos == 0);
+		activeLimit = limit;
+
+		if (averageCreateNanos > targetWaitNanos) {
+			idleTarget = Math.min(config.getMaxIdleEntries(), limit);
+		} else {
+			idleTarget = Math.min(config.getMaxIdleEntries(), Math.max(config.getMinIdleEntries(), peak));
+		}
+	}
+
+	/*
+	 * Clamp the active limit to the reconfigured maxActiveEntries.
+	 * Called by the same thread as adjust().
+	 * */
+	void reconfigure() {
+		activeLimit = clamp(activeLimit);
+		idleTarget = Math.min(config.getMaxIdleEntries(), idleTarget);
+	}
+
+	private int clamp(int limit) {
+		return Math.max(config.getMinActiveEntries(), Math.min(config.getMaxActiveEntries(), limit));
+	}
+
+	int getActiveLimit() {
+		return activeLimit;
+	}
+
+	int getIdleTarget() {
+		return idleTarget;
+	}
+
+	/*
+	 * Whether the last interval needed no more entries,
+	 * so that the idle entries over the idle target can be invalidated.
+	 * */
+	boolean hasSpareEntries() {
+		return spare;
+	}
+}
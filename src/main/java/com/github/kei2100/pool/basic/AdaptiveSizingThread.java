@@ -0,0 +1,63 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.util.FixedDelayTask;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/*
+ * A thread which adjusts the active limit and the idle target of the pool.
+ * It runs on the shared MaintenanceScheduler.
+ * */
+class AdaptiveSizingThread {
+	private static final Logger logger = LoggerFactory.getLogger(AdaptiveSizingThread.class);
+
+	private final PoolConfig config;
+	private final BasicPool<?> pool;
+
+	private AtomicBoolean isScheduled = new AtomicBoolean(false);
+	private MaintenanceScheduler.Registration registration;
+
+	AdaptiveSizingThread(PoolConfig config, BasicPool<?> pool) {
+		this.config = config;
+		this.pool = pool;
+	}
+
+	void startAdjust() {
+		if (!isScheduled.compareAndSet(false, true)) {
+			throw new IllegalStateException("already scheduled");
+		}
+
+		registration =
+				MaintenanceScheduler.getShared().register(
+						AdaptiveSizingThread.class.getSimpleName(), 1);
+
+		new FixedDelayTask(registration) {
+			@Override
+			protected void runTask() {
+				try {
+					pool.adjustSize();
+				} catch (RuntimeException e) {
+					logger.warn(PoolLoggerMarkerFactory.getMarker(), "Failed to adjust pool size.", e);
+				}
+			}
+			
+			@Override
+			protected long getDelayMillis() {
+				return config.getAdaptiveIntervalMillis();
+			}
+		}.schedule(config.getAdaptiveIntervalMillis());
+	}
+	
+	void stopAdjust() {
+		if (registration != null) {
+			registration.cancel();
+		}
+	}
+}
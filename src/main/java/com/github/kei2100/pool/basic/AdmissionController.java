@@ -0,0 +1,38 @@
+package com.github.kei2100.pool.basic;
+
+import com.github.kei2100.pool.PoolEntry;
+
+
+/*
+ * Estimates the time that a new borrower waits for a permit, by Little's law.
+ * While all entries are busy, a permit is released every (averageHoldMillis / activeEntries) on average,
+ * so a borrower behind n waiters waits about (n + 1) times of that.
+ * */
+class AdmissionController {
+	// the weight of a new sample in the moving average
+	private static final double SMOOTHING = 0.1;
+
+	// updated without lock, a lost sample does not matter to the estimate
+	private volatile double averageHoldMillis = 0;
+
+	void recordHoldTime(PoolEntry<?> entry, long returnedAt) {
+		long borrowedAt = entry.getState().getLastBorrowedAt();
+		if (borrowedAt == 0) return;
+
+		double holdMillis = Math.max(0, returnedAt - borrowedAt);
+		double average = averageHoldMillis;
+		averageHoldMillis = (average == 0) ? holdMillis : average + SMOOTHING * (holdMillis - average);
+	}
+
+	boolean admit(int waiters, int activeEntries, long timeoutMillis) {
+		return estimateWaitMillis(waiters, activeEntries) <= timeoutMillis;
+	}
+
+	long estimateWaitMillis(int waiters, int activeEntries) {
+		return (long) Math.ceil((waiters + 1) * averageHoldMillis / activeEntries);
+	}
+
+	double getAverageHoldMillis() {
+		return averageHoldMillis;
+	}
+}
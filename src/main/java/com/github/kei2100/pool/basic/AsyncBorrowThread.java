@@ -0,0 +1,72 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
+import com.github.kei2100.pool.util.NameableDaemonThreadFactory;
+
+
+/*
+ * Threads used by the asynchronous borrow.
+ * The timeouts of the waiters run on the shared MaintenanceScheduler, and the create threads create new entries.
+ * The create threads are started at the first asynchronous creation, and terminate while idle.
+ * */
+class AsyncBorrowThread {
+	private static final long CREATE_THREAD_KEEP_ALIVE_MILLIS = 60 * 1000;
+
+	private final PoolConfig config;
+	private final MaintenanceScheduler.Registration timeoutRegistration;
+	
+	// guarded by this
+	private ExecutorService createExecutor;
+	private boolean isShutdown = false;
+
+	AsyncBorrowThread(PoolConfig config) {
+		this.config = config;
+		timeoutRegistration =
+				MaintenanceScheduler.getShared().register(AsyncBorrowThread.class.getSimpleName(), 1);
+	}
+
+	/*
+	 * Return the future to cancel the timeout, when the waiter is done before it.
+	 * */
+	ScheduledFuture<?> scheduleTimeout(Runnable task, long timeout, TimeUnit unit) {
+		return timeoutRegistration.schedule(task, unit.toMillis(timeout));
+	}
+
+	void submitCreate(Runnable task) {
+		getCreateExecutor().execute(task);
+	}
+	
+	private synchronized ExecutorService getCreateExecutor() {
+		if (isShutdown) throw new RejectedExecutionException("AsyncBorrowThread is shutdown.");
+		
+		if (createExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(
+					config.getAsyncCreateThreads(), config.getAsyncCreateThreads(),
+					CREATE_THREAD_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new NameableDaemonThreadFactory(AsyncBorrowThread.class.getSimpleName() + "-create"));
+			executor.allowCoreThreadTimeOut(true);
+			createExecutor = executor;
+		}
+		return createExecutor;
+	}
+	
+	/*
+	 * The pending timeouts are dropped, and the queued creations are completed.
+	 * */
+	synchronized void shutdown() {
+		isShutdown = true;
+		timeoutRegistration.cancel();
+		if (createExecutor != null) {
+			createExecutor.shutdown();
+		}
+	}
+}
@@ -1,6 +1,11 @@
 package com.github.kei2100.pool.basic;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,17 +16,47 @@ import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
 
 
+/*
+ * The idle entries are kept in an array deque under a lock, 
+ * so that offer and poll do not allocate a node once the deque has grown to maxIdleEntries.
+ * While the lock is contended, offer does not wait for it and adds the entry to a lock-free queue instead,
+ * and poll takes from that queue first. Those entries are moved to the deque by the next holder of the lock,
+ * so the order of the entries returned under contention is approximate.
+ * */
 public class BasicIdleEntriesQueue<T> implements IdleEntriesQueue<T>{
 	private static final Logger logger = LoggerFactory.getLogger(BasicIdleEntriesQueue.class);
-	private final ArrayBlockingQueue<PoolEntry<T>> idleEntries;
+	private final PoolConfig config;
+	private final boolean lifo;
+	private final ReentrantLock lock = new ReentrantLock();
+	// guarded by lock
+	private final ArrayDeque<PoolEntry<T>> idleEntries = new ArrayDeque<PoolEntry<T>>();
+	// offered while the lock is contended
+	private final ConcurrentLinkedQueue<PoolEntry<T>> contendedEntries = new ConcurrentLinkedQueue<PoolEntry<T>>();
+	// bounded by maxIdleEntries, which may be reconfigured
+	private final AtomicInteger idleEntriesCount = new AtomicInteger(0);
 
 	public BasicIdleEntriesQueue(PoolConfig config) {
-		idleEntries = new ArrayBlockingQueue<PoolEntry<T>>(config.getMaxIdleEntries());
+		this.config = config;
+		this.lifo = config.isLifo();
 	}
 	
 	@Override
 	public PoolEntry<T> poll() {
-		PoolEntry<T> idle = idleEntries.poll();
+		PoolEntry<T> idle = null;
+		if (!lock.tryLock()) {
+			idle = contendedEntries.poll();
+			if (idle == null) lock.lock();
+		}
+		if (idle == null) {
+			try {
+				idle = pollIdleEntry();
+			} finally {
+				lock.unlock();
+			}
+		}
+		if (idle != null) {
+			idleEntriesCount.decrementAndGet();
+		}
 		return idle;
 	}
 	
@@ -30,12 +65,101 @@ public class BasicIdleEntriesQueue<T> implements IdleEntriesQueue<T>{
 		if (entry == null) throw new NullPointerException("entry is null.");
 		if (!entry.getState().isValid()) return false;		
 		
-		boolean offerSuccessful = idleEntries.offer(entry);
-		if (!offerSuccessful) {
+		if (idleEntriesCount.incrementAndGet() > config.getMaxIdleEntries()) {
+			idleEntriesCount.decrementAndGet();
 			invalidateEntry(entry);
+			return false;
 		}
 		
-		return offerSuccessful;
+		if (!lock.tryLock()) {
+			contendedEntries.add(entry);
+			return true;
+		}
+		try {
+			idleEntries.addLast(entry);
+		} finally {
+			lock.unlock();
+		}
+		return true;
+	}
+	
+	/*
+	 * Called with the lock.
+	 * The entries are always added at the last.
+	 * */
+	private PoolEntry<T> pollIdleEntry() {
+		addContendedEntries();
+		return lifo ? idleEntries.pollLast() : idleEntries.pollFirst();
+	}
+	
+	/*
+	 * Called with the lock.
+	 * */
+	private void addContendedEntries() {
+		if (contendedEntries.isEmpty()) return;
+		
+		PoolEntry<T> entry;
+		while ((entry = contendedEntries.poll()) != null) {
+			idleEntries.addLast(entry);
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super PoolEntry<T>> collection, int maxEntries) 
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		int drained = 0;
+		lock.lock();
+		try {
+			while (drained < maxEntries) {
+				PoolEntry<T> entry = pollIdleEntry();
+				if (entry == null) break;
+				
+				collection.add(entry);
+				drained++;
+			}
+		} finally {
+			lock.unlock();
+		}
+		idleEntriesCount.addAndGet(-drained);
+		return drained;
+	}
+
+	/*
+	 * The offer of this queue counts nothing, the entry is offered as it is.
+	 * */
+	@Override
+	public boolean restore(PoolEntry<T> entry) throws NullPointerException {
+		return offer(entry);
+	}
+
+	/*
+	 * The entries are added at the last, so the first is the least recently returned.
+	 * */
+	@Override
+	public int evictTo(Collection<? super PoolEntry<T>> collection, long returnedBefore, int maxEntries)
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		int evicted = 0;
+		lock.lock();
+		try {
+			addContendedEntries();
+			Iterator<PoolEntry<T>> it = idleEntries.iterator();
+			while (evicted < maxEntries && it.hasNext()) {
+				PoolEntry<T> entry = it.next();
+				if (entry.getState().getLastReturnedAt() > returnedBefore) continue;
+				
+				it.remove();
+				collection.add(entry);
+				evicted++;
+			}
+		} finally {
+			lock.unlock();
+		}
+		idleEntriesCount.addAndGet(-evicted);
+		return evicted;
 	}
 
 	private void invalidateEntry(PoolEntry<T> entry) {
@@ -47,10 +171,8 @@ public class BasicIdleEntriesQueue<T> implements IdleEntriesQueue<T>{
 		}
 	}
 	
-	/*
-	 * This method is typically used for debugging and testing purposes.
-	 * */	
+	@Override
 	public int getIdleEntriesCount() {
-		return idleEntries.size();
+		return idleEntriesCount.get();
 	}
 }
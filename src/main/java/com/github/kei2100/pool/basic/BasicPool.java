@@ -1,19 +1,40 @@
 package com.github.kei2100.pool.basic;
 
-import java.util.concurrent.Semaphore;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.kei2100.pool.BorrowPriority;
+import com.github.kei2100.pool.CloseableIdleEntriesQueue;
+import com.github.kei2100.pool.HandoffIdleEntriesQueue;
 import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.IdleEntriesQueueType;
 import com.github.kei2100.pool.Pool;
 import com.github.kei2100.pool.PoolConfig;
 import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryCallback;
 import com.github.kei2100.pool.PoolEntryFactory;
+import com.github.kei2100.pool.PoolEntryFuture;
 import com.github.kei2100.pool.PoolException;
+import com.github.kei2100.pool.PoolOverloadedException;
+import com.github.kei2100.pool.PoolPressure;
+import com.github.kei2100.pool.ResizableIdleEntriesQueue;
+import com.github.kei2100.pool.WarmUpStats;
+import com.github.kei2100.pool.offload.OffloadThread;
 import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+import com.github.kei2100.pool.util.PropertyValidationException;
 
 
 
@@ -23,24 +44,106 @@ public class BasicPool<T> implements Pool<T> {
 	private final PoolConfig config ;
 	private final PoolEntryFactory<T> entryFactory;
 	private final IdleEntriesQueue<T> idleEntries;
+	private final HandoffIdleEntriesQueue<T> handoffEntries;
 	
-	private final Semaphore borrowingSemaphore;
+	private final ResizableSemaphore borrowingSemaphore;
+	private final PriorityWaiters priorityWaiters;
+	private final AdmissionController admissionController;
+	private final LeaseRegistry<T> leaseRegistry;
+	private final CreationGovernor creationGovernor;
+	private final WarmUpThread<T> warmUpThread;
+	private final LeaseReaperThread leaseReaperThread;
+	private final IdleEvictionThread<T> idleEvictionThread;
+	private final AdaptiveSizingController sizingController;
+	private final AdaptiveSizingThread sizingThread;
+	// serializes the changes of the active limit
+	private final ReentrantLock resizeLock = new ReentrantLock();
+	
+	private final AtomicBoolean isClosed = new AtomicBoolean(false);
+	// signalled when a permit is released after close
+	private final ReentrantLock closeLock = new ReentrantLock();
+	private final Condition permitReleased = closeLock.newCondition();
+	
+	private final ConcurrentLinkedQueue<AsyncWaiter> asyncWaiters;
+	private final AsyncBorrowThread asyncBorrowThread;
+	private final OffloadThread offloadThread;
+	// the slot table of SLOT_TABLE is sized by the limits at construction, and is not grown
+	private final int maxLiveEntries;
 		
 	public BasicPool(PoolConfig config, IdleEntriesQueue<T> idleEntries, PoolEntryFactory<T> entryFactory) {
+		this(config, idleEntries, entryFactory, null);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param config {@link PoolConfig}
+	 * @param idleEntries {@link IdleEntriesQueue}
+	 * @param entryFactory {@link PoolEntryFactory}
+	 * @param offloadThread {@link OffloadThread} used by the entry factory, which is shut down on close.
+	 * null if the pooled objects are not offloaded.
+	 * */
+	public BasicPool(PoolConfig config, IdleEntriesQueue<T> idleEntries, PoolEntryFactory<T> entryFactory,
+			OffloadThread offloadThread) {
 		this.config = config;
 		this.idleEntries = idleEntries;
 		this.entryFactory = entryFactory;
+		this.offloadThread = offloadThread;
+		if (config.getIdleEntriesQueueType() == IdleEntriesQueueType.SLOT_TABLE) {
+			maxLiveEntries = config.getMaxActiveEntries() + config.getMaxIdleEntries();
+		} else {
+			maxLiveEntries = Integer.MAX_VALUE;
+		}
 		
-		borrowingSemaphore = new Semaphore(config.getMaxActiveEntries());
+		if (idleEntries instanceof HandoffIdleEntriesQueue) {
+			this.handoffEntries = (HandoffIdleEntriesQueue<T>) idleEntries;
+		} else {
+			this.handoffEntries = null;
+		}
+		
+		borrowingSemaphore = new ResizableSemaphore(config.getMaxActiveEntries());
+		priorityWaiters = new PriorityWaiters(config);
+		admissionController = new AdmissionController();
+		sizingController = config.isAdaptiveSizing() ? new AdaptiveSizingController(config) : null;
+		
+		leaseRegistry = config.isLeaseTimeUnlimit() ? null : new LeaseRegistry<T>(config);
+		creationGovernor = config.isCreationGoverned() ? new CreationGovernor(config) : null;
+		
+		asyncWaiters = new ConcurrentLinkedQueue<AsyncWaiter>();
+		asyncBorrowThread = new AsyncBorrowThread(config);
 		
 		// initialize idle entries
-		for (int i = 0; i < config.getInitialEntries(); i++) {
-			try {
-				idleEntries.offer(createIdleEntry());
-			} catch (Exception e) {
-				logger.warn(PoolLoggerMarkerFactory.getMarker(), 
-						"Failed to create initial pool entry.", e);
+		warmUpThread = new WarmUpThread<T>(config, idleEntries, new Callable<PoolEntry<T>>() {
+			@Override
+			public PoolEntry<T> call() throws Exception {
+				return createIdleEntry();
 			}
+		});
+		try {
+			warmUpThread.warmUp();
+		} catch (InterruptedException e) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(), 
+					"Interrupted while creating initial pool entries.", e);
+			Thread.currentThread().interrupt();
+		}
+		
+		if (leaseRegistry != null) {
+			leaseReaperThread = new LeaseReaperThread(config, this);
+			leaseReaperThread.startReaper();
+		} else {
+			leaseReaperThread = null;
+		}
+		if (config.isInvalidateInBackground() && !config.isIdleTimeUnlimit()) {
+			idleEvictionThread = new IdleEvictionThread<T>(config, this);
+			idleEvictionThread.startEviction();
+		} else {
+			idleEvictionThread = null;
+		}
+		if (sizingController != null) {
+			sizingThread = new AdaptiveSizingThread(config, this);
+			sizingThread.startAdjust();
+		} else {
+			sizingThread = null;
 		}
 	}
 
@@ -75,23 +178,307 @@ public class BasicPool<T> implements Pool<T> {
 	public PoolEntry<T> borrowEntry(boolean createNew, long timeout, TimeUnit unit) 
 			throws InterruptedException, TimeoutException, PoolException {
 
+		return borrowEntry(BorrowPriority.NORMAL, createNew, timeout, unit);
+	}
+	
+	@Override
+	public PoolEntry<T> borrowEntry(BorrowPriority priority)
+			throws InterruptedException, TimeoutException, PoolException {
+		
+		long timeout = config.getMaxWaitMillisOnBorrow();
+		return borrowEntry(priority, true, timeout, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public PoolEntry<T> borrowEntry(BorrowPriority priority, boolean createNew, long timeout, TimeUnit unit) 
+			throws InterruptedException, TimeoutException, PoolException {
+		
+		if (priority == null) throw new NullPointerException("priority is null.");
+		checkNotClosed();
+		
+		if (handoffEntries != null) {
+			return borrowEntryWithHandoff(createNew, timeout, unit);
+		}
+		
+		acquirePermit(priority, timeout, unit);
+		return innerBorrowEntry(createNew);
+	}
+	
+	/*
+	 * Acquire a permit without overtaking the waiters.
+	 * If no permit is available, wait until a released permit is granted by PriorityWaiters.
+	 * */
+	private void acquirePermit(BorrowPriority priority, long timeout, TimeUnit unit) 
+			throws InterruptedException, TimeoutException {
+		
+		if (priorityWaiters.isEmpty() && borrowingSemaphore.tryAcquire()) {
+			return;
+		}
+		
+		if (config.isAdmissionControl() && !config.isWaitUnlimitOnBorrow()) {
+			if (!admissionController.admit(
+					priorityWaiters.size(), borrowingSemaphore.getLimit(), unit.toMillis(timeout))) {
+				throw new PoolOverloadedException("borrowEntry rejected, the estimated wait exceeds the timeout.");
+			}
+		}
+		
+		long waitStartedAt = config.getClock().nanoTime();
+		PriorityWaiters.Waiter waiter = priorityWaiters.addWaiter(priority);
+		// a permit may be released before the waiter is added
+		grantPermitsToWaiters();
+		
+		long timeoutNanos = config.isWaitUnlimitOnBorrow() ? Long.MAX_VALUE : unit.toNanos(timeout);
+		boolean granted;
 		try {
-			if (config.isWaitUnlimitOnBorrow()) {
-				borrowingSemaphore.acquire();
-			} else {
-				boolean acquireSuccess = borrowingSemaphore.tryAcquire(timeout, unit);
-				if (!acquireSuccess) {
-					// pool entries all busy
-					throw new TimeoutException("borrowEntry timed out.");
+			granted = waiter.await(timeoutNanos);
+		} catch (InterruptedException e) {
+			if (!waiter.cancel()) {
+				releasePermit();
+			}
+			throw e;
+		} finally {
+			if (sizingController != null) {
+				sizingController.recordWait(config.getClock().nanoTime() - waitStartedAt);
+			}
+		}
+		
+		if (granted || !waiter.cancel()) {
+			return;
+		}
+		// pool entries all busy
+		throw new TimeoutException("borrowEntry timed out.");
+	}
+	
+	/*
+	 * Wait for either of an entry transferred by returnEntry or a released permit.
+	 * A transferred entry comes with the permit of the thread which returned it.
+	 * */
+	private PoolEntry<T> borrowEntryWithHandoff(boolean createNew, long timeout, TimeUnit unit) 
+			throws InterruptedException, TimeoutException, PoolException {
+		
+		if (borrowingSemaphore.tryAcquire()) {
+			return innerBorrowEntry(createNew);
+		}
+		
+		boolean waitUnlimit = config.isWaitUnlimitOnBorrow();
+		long waitStartedAt = config.getClock().nanoTime();
+		long deadline = waitStartedAt + unit.toNanos(timeout);
+		
+		HandoffIdleEntriesQueue.Waiter<T> waiter = handoffEntries.addWaiter();
+		try {
+			while (true) {
+				// a permit may be released before the waiter is signalled
+				if (borrowingSemaphore.tryAcquire()) {
+					PoolEntry<T> transferred = waiter.cancel();
+					if (transferred == null) {
+						return innerBorrowEntry(createNew);
+					}
+					releasePermit();
+					return markBorrowed(transferred);
+				}
+				
+				long remaining = waitUnlimit ? Long.MAX_VALUE : deadline - config.getClock().nanoTime();
+				if (remaining <= 0) {
+					break;
+				}
+				PoolEntry<T> transferred = waiter.await(remaining);
+				if (transferred != null) {
+					return markBorrowed(transferred);
 				}
 			}
 		} catch (InterruptedException e) {
+			PoolEntry<T> transferred = waiter.cancel();
+			if (transferred != null) {
+				returnEntry(transferred);
+			}
 			throw e;
+		} finally {
+			// includes the creation, if no entry is transferred
+			if (sizingController != null) {
+				sizingController.recordWait(config.getClock().nanoTime() - waitStartedAt);
+			}
 		}
 		
-		return innerBorrowEntry(createNew);
+		PoolEntry<T> transferred = waiter.cancel();
+		if (transferred != null) {
+			return markBorrowed(transferred);
+		}
+		// pool entries all busy
+		throw new TimeoutException("borrowEntry timed out.");
+	}
+	
+	/*
+	 * Acquire all permits at once, so that batch borrowers never hold a part of them.
+	 * */
+	@Override
+	public List<PoolEntry<T>> borrowEntries(int entries, long timeout, TimeUnit unit)
+			throws InterruptedException, TimeoutException, PoolException {
+		
+		if (entries < 1 || entries > borrowingSemaphore.getLimit()) {
+			throw new IllegalArgumentException("entries must be between 1 and the active limit.");
+		}
+		checkNotClosed();
+		
+		if (config.isWaitUnlimitOnBorrow()) {
+			borrowingSemaphore.acquire(entries);
+		} else {
+			boolean acquireSuccess = borrowingSemaphore.tryAcquire(entries, timeout, unit);
+			if (!acquireSuccess) {
+				// pool entries all busy
+				throw new TimeoutException("borrowEntries timed out.");
+			}
+		}
+		
+		if (isClosed.get()) {
+			releasePermits(entries);
+			checkNotClosed();
+		}
+		
+		List<PoolEntry<T>> borrowed = new ArrayList<PoolEntry<T>>(entries);
+		try {
+			List<PoolEntry<T>> drained = new ArrayList<PoolEntry<T>>(entries);
+			idleEntries.drainTo(drained, entries);
+			for (PoolEntry<T> entry : drained) {
+				// skip the entries retired while idle
+				if (entry.getState().markBorrowed()) {
+					borrowed.add(entry);
+				}
+			}
+			while (borrowed.size() < entries) {
+				borrowed.add(createIdleEntry());
+			}
+			for (PoolEntry<T> entry : borrowed) {
+				markBorrowed(entry);
+			}
+			return borrowed;
+		} catch (Exception e) {
+			for (PoolEntry<T> entry : borrowed) {
+				if (entry.getState().markReturned()) {
+					idleEntries.offer(entry);
+				} else {
+					invalidateEntry(entry);
+				}
+			}
+			releasePermits(entries);
+			throw new PoolException(e);
+		}
+	}
+	
+	@Override
+	public PoolEntryFuture<T> borrowEntryAsync() {
+		long timeout = config.getMaxWaitMillisOnBorrow();
+		return borrowEntryAsync(true, timeout, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public PoolEntryFuture<T> borrowEntryAsync(long timeout, TimeUnit unit) {
+		return borrowEntryAsync(true, timeout, unit);
+	}
+	
+	@Override
+	public PoolEntryFuture<T> borrowEntryAsync(boolean createNew, long timeout, TimeUnit unit) {
+		checkNotClosed();
+		
+		final AsyncWaiter waiter = new AsyncWaiter(createNew);
+		
+		if (borrowingSemaphore.tryAcquire()) {
+			if (!serveAsyncWaiter(waiter)) {
+				releasePermit();
+			}
+			return waiter;
+		}
+		
+		asyncWaiters.add(waiter);
+		if (isClosed.get()) {
+			// closed before the waiter is added
+			asyncWaiters.remove(waiter);
+			waiter.fail(new IllegalStateException("pool is closed."));
+			return waiter;
+		}
+		if (!config.isWaitUnlimitOnBorrow()) {
+			try {
+				WaiterTimeout waiterTimeout = new WaiterTimeout(waiter);
+				waiterTimeout.future = asyncBorrowThread.scheduleTimeout(waiterTimeout, timeout, unit);
+				waiter.addListener(waiterTimeout);
+			} catch (RejectedExecutionException e) {
+				// closed meanwhile
+				asyncWaiters.remove(waiter);
+				waiter.fail(new IllegalStateException("pool is closed."));
+				return waiter;
+			}
+		}
+		
+		// a permit may be released before the waiter is added
+		dispatchAsyncWaiters();
+		return waiter;
+	}
+	
+	/*
+	 * Give released permits to the async waiters.
+	 * */
+	private void dispatchAsyncWaiters() {
+		while (!asyncWaiters.isEmpty()) {
+			if (!borrowingSemaphore.tryAcquire()) return;
+			
+			AsyncWaiter waiter = pollAsyncWaiter();
+			if (waiter == null || !serveAsyncWaiter(waiter)) {
+				releaseSemaphore();
+			}
+		}
+	}
+	
+	private AsyncWaiter pollAsyncWaiter() {
+		while (true) {
+			AsyncWaiter waiter = asyncWaiters.poll();
+			if (waiter == null || !waiter.isDone()) {
+				return waiter;
+			}
+		}
+	}
+	
+	/*
+	 * Complete the waiter with the permit held by the current thread.
+	 * Return false if the permit is not used.
+	 * */
+	private boolean serveAsyncWaiter(final AsyncWaiter waiter) {
+		PoolEntry<T> entry = pollBorrowable(idleEntries);
+		if (entry != null) {
+			completeAsyncWaiter(waiter, entry);
+			return true;
+		}
+		if (!waiter.createNew) {
+			waiter.complete(null);
+			return false;
+		}
+		
+		try {
+			asyncBorrowThread.submitCreate(new Runnable() {
+				@Override
+				public void run() {
+					PoolEntry<T> created;
+					try {
+						created = createIdleEntry();
+					} catch (Exception e) {
+						releasePermit();
+						waiter.fail(new PoolException(e));
+						return;
+					}
+					completeAsyncWaiter(waiter, created);
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			waiter.fail(new PoolException(e));
+			return false;
+		}
+	}
+	
+	private void completeAsyncWaiter(AsyncWaiter waiter, PoolEntry<T> entry) {
+		if (!waiter.complete(markBorrowed(entry))) {
+			// cancelled or timed out
+			returnEntry(entry);
+		}
 	}
-
 	
 	@Override
 	public PoolEntry<T> tryBorrowEntry() throws PoolException {
@@ -100,6 +487,8 @@ public class BasicPool<T> implements Pool<T> {
 	
 	@Override
 	public PoolEntry<T> tryBorrowEntry(boolean createNew) throws PoolException {
+		checkNotClosed();
+		
 		boolean acquireSuccess = borrowingSemaphore.tryAcquire();
 		if (!acquireSuccess) {
 			return null;
@@ -109,41 +498,630 @@ public class BasicPool<T> implements Pool<T> {
 	}
 	
 	private PoolEntry<T> innerBorrowEntry(boolean createNew) throws PoolException {
+		if (isClosed.get()) {
+			// the permit was granted after close
+			releasePermit();
+			checkNotClosed();
+		}
+		
 		try {
-			PoolEntry<T> entry = idleEntries.poll();
+			PoolEntry<T> entry = pollBorrowable(idleEntries);
 			if (entry == null && createNew) {
-				entry = createIdleEntry();
+				entry = createIdleEntry(idleEntries);
 			}
 			
 			if (entry == null) {
-				borrowingSemaphore.release();
+				releasePermit();
+				return null;
 			}
-			return entry;
+			return markBorrowed(entry);
+		} catch (InterruptedException e) {
+			// interrupted while waiting for the creation governor
+			releasePermit();
+			Thread.currentThread().interrupt();
+			throw new PoolException(e);
 		} catch (Exception e) {
-			borrowingSemaphore.release();
+			releasePermit();
 			throw new PoolException(e);
 		}
 	}
 
+	/*
+	 * Poll an idle entry, skipping the entries retired while idle.
+	 * The entry is marked borrowed when it is taken, so that it is not retired while it is used.
+	 * */
+	static <T> PoolEntry<T> pollBorrowable(IdleEntriesQueue<T> idleEntries) {
+		while (true) {
+			PoolEntry<T> entry = idleEntries.poll();
+			if (entry == null || entry.getState().markBorrowed()) {
+				return entry;
+			}
+		}
+	}
+	
+	private PoolEntry<T> markBorrowed(PoolEntry<T> entry) {
+		// the polled entries are already marked, and the transferred entries are kept marked 
+		entry.getState().markBorrowed();
+		long now = config.getClock().currentTimeMillis();
+		entry.getState().setLastBorrowedAt(now);
+		if (leaseRegistry != null) {
+			leaseRegistry.register(entry, now);
+		}
+		if (sizingController != null) {
+			sizingController.recordBorrow(borrowingSemaphore.getLimit() - borrowingSemaphore.availablePermits());
+		}
+		return entry;
+	}
+	
 	private PoolEntry<T> createIdleEntry() throws Exception {
-		return entryFactory.createPoolEntry();
+		return createIdleEntry(null);
+	}
+	
+	/*
+	 * If the creation is governed, wait for the permission to create.
+	 * If an entry is returned to the idle entries meanwhile, it is taken instead of creating.
+	 * */
+	private PoolEntry<T> createIdleEntry(IdleEntriesQueue<T> returnedEntries) throws Exception {
+		if (creationGovernor == null) {
+			return createPoolEntry();
+		}
+		
+		PoolEntry<T> returned = creationGovernor.awaitCreate(returnedEntries);
+		if (returned != null) {
+			return returned;
+		}
+		try {
+			return createPoolEntry();
+		} finally {
+			creationGovernor.createFinished();
+		}
+	}
+	
+	private PoolEntry<T> createPoolEntry() throws Exception {
+		if (sizingController == null) {
+			return entryFactory.createPoolEntry();
+		}
+		
+		long startedAt = config.getClock().nanoTime();
+		boolean succeeded = false;
+		try {
+			PoolEntry<T> created = entryFactory.createPoolEntry();
+			succeeded = true;
+			return created;
+		} finally {
+			sizingController.recordCreate(config.getClock().nanoTime() - startedAt, succeeded);
+		}
 	}
 	
 	@Override
 	public void returnEntry(PoolEntry<T> entry) throws NullPointerException {
 		if (entry == null) throw new NullPointerException("entry is null");
 		
+		if (leaseRegistry != null && !leaseRegistry.unregister(entry)) {
+			// the lease expired, and the permit was already released by the reaper
+			return;
+		}
+		
+		long now = config.getClock().currentTimeMillis();
+		entry.getState().setLastReturnedAt(now);
+		admissionController.recordHoldTime(entry, now);
+		
+		if (isClosed.get() || entry.getState().isRetired()) {
+			invalidateEntry(entry);
+			releasePermit();
+			return;
+		}
+		
+		if (handoffEntries != null && entry.getState().isValid() && !isActiveLimitExceeded()) {
+			// the permit is passed to the waiter with the entry
+			if (handoffEntries.transfer(entry)) return;
+		}
+		
+		if (!entry.getState().markReturned()) {
+			// retired after the check
+			invalidateEntry(entry);
+			releasePermit();
+			return;
+		}
 		try{
 			idleEntries.offer(entry);
 		} finally { 
-			borrowingSemaphore.release();
+			releasePermit();
+			if (creationGovernor != null) {
+				creationGovernor.entryReturned();
+			}
+		}
+	}
+	
+	@Override
+	public void returnEntries(Collection<PoolEntry<T>> entries) throws NullPointerException {
+		if (entries == null) throw new NullPointerException("entries is null");
+		for (PoolEntry<T> entry : entries) {
+			if (entry == null) throw new NullPointerException("entry is null");
+		}
+		
+		long now = config.getClock().currentTimeMillis();
+		int releasing = 0;
+		try {
+			for (PoolEntry<T> entry : entries) {
+				if (leaseRegistry != null && !leaseRegistry.unregister(entry)) {
+					// the lease expired, and the permit was already released by the reaper
+					continue;
+				}
+				entry.getState().setLastReturnedAt(now);
+				admissionController.recordHoldTime(entry, now);
+				if (isClosed.get() || entry.getState().isRetired()) {
+					releasing++;
+					invalidateEntry(entry);
+					continue;
+				}
+				if (handoffEntries != null && entry.getState().isValid() && !isActiveLimitExceeded()) {
+					// the permit is passed to the waiter with the entry
+					if (handoffEntries.transfer(entry)) continue;
+				}
+				
+				releasing++;
+				if (entry.getState().markReturned()) {
+					idleEntries.offer(entry);
+				} else {
+					invalidateEntry(entry);
+				}
+			}
+		} finally {
+			if (releasing > 0) {
+				releasePermits(releasing);
+				if (creationGovernor != null) {
+					creationGovernor.entryReturned();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Take the idle entries for the maintenance of the pool, such as the background validation,
+	 * the least recently returned first.
+	 * <p>
+	 * Unlike {@link #tryBorrowEntry(boolean)}, the taken entries are not counted as borrowed.
+	 * They are not leased, and are not recorded to the hold time, the demand nor the adaptive sizing.
+	 * Each taken entry holds a permit until it is put back by {@link #restoreIdleEntry(PoolEntry)}.
+	 * </p>
+	 * 
+	 * @param maxEntries the maximum number of entries to take
+	 * @return the taken entries. empty if no idle entry or no permit is available
+	 * */
+	public List<PoolEntry<T>> takeIdleEntries(int maxEntries) {
+		List<PoolEntry<T>> taken = new ArrayList<PoolEntry<T>>();
+		if (isClosed.get()) return taken;
+		
+		int permits = 0;
+		while (permits < maxEntries && borrowingSemaphore.tryAcquire()) {
+			permits++;
+		}
+		if (permits == 0) return taken;
+		
+		List<PoolEntry<T>> evicted = new ArrayList<PoolEntry<T>>(permits);
+		idleEntries.evictTo(evicted, Long.MAX_VALUE, permits);
+		for (PoolEntry<T> entry : evicted) {
+			// skip the entries retired while idle
+			if (entry.getState().markBorrowed()) {
+				taken.add(entry);
+			}
+		}
+		if (taken.size() < permits) {
+			releasePermits(permits - taken.size());
+		}
+		return taken;
+	}
+	
+	/**
+	 * Put back the entry taken by {@link #takeIdleEntries(int)}, and release its permit.
+	 * <p>
+	 * The entry is not counted as returned, and keeps its last returned time.
+	 * </p>
+	 * 
+	 * @param entry the taken entry
+	 * @throws NullPointerException if entry is null
+	 * */
+	public void restoreIdleEntry(PoolEntry<T> entry) throws NullPointerException {
+		if (entry == null) throw new NullPointerException("entry is null");
+		
+		try {
+			if (isClosed.get() || !entry.getState().markReturned()) {
+				// closed or retired while maintained
+				invalidateEntry(entry);
+				return;
+			}
+			idleEntries.restore(entry);
+		} finally {
+			releasePermit();
+			if (creationGovernor != null) {
+				creationGovernor.entryReturned();
+			}
+		}
+	}
+	
+	@Override
+	public <R> R withEntry(PoolEntryCallback<T, R> callback)
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException {
+		
+		long timeout = config.getMaxWaitMillisOnBorrow();
+		return withEntry(timeout, TimeUnit.MILLISECONDS, callback);
+	}
+	
+	@Override
+	public <R> R withEntry(long timeout, TimeUnit unit, PoolEntryCallback<T, R> callback)
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException {
+		
+		if (callback == null) throw new NullPointerException("callback is null");
+		
+		PoolEntry<T> entry = borrowEntry(true, timeout, unit);
+		try {
+			return callback.doWithEntry(entry);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new PoolException(e);
+		} finally {
+			returnEntry(entry);
+		}
+	}
+	
+	private void releasePermit() {
+		releasePermits(1);
+	}
+	
+	private void releasePermits(int permits) {
+		releaseSemaphore(permits);
+		dispatchAsyncWaiters();
+	}
+	
+	private void releaseSemaphore() {
+		releaseSemaphore(1);
+	}
+	
+	private void releaseSemaphore(int permits) {
+		borrowingSemaphore.release(permits);
+		grantPermitsToWaiters();
+		
+		if (handoffEntries != null) {
+			for (int i = 0; i < permits; i++) {
+				handoffEntries.signalWaiter();
+			}
+		}
+		if (isClosed.get()) {
+			signalPermitReleased();
+		}
+	}
+	
+	/*
+	 * The permit is released before the waiters are checked,
+	 * so that either the releasing thread or a newly added waiter sees the other.
+	 * */
+	private void grantPermitsToWaiters() {
+		while (!priorityWaiters.isEmpty() && borrowingSemaphore.tryAcquire()) {
+			if (!priorityWaiters.grant()) {
+				borrowingSemaphore.release();
+			}
 		}
 	}
 					
+	/*
+	 * Run by LeaseReaperThread.
+	 * The entry may still be used by the borrower, so it is invalidated instead of being reused.
+	 * */
+	void reclaimExpiredLeases() {
+		for (LeaseRegistry.Lease<T> lease : leaseRegistry.pollExpired(config.getClock().currentTimeMillis())) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(), 
+					String.format("PoolEntry borrowed by thread %s was not returned within %s ms, and is reclaimed.", 
+							lease.getBorrowedBy(), config.getLeaseTimeMillis()), 
+					lease.getBorrowSite());
+			try {
+				invalidateEntry(lease.getEntry());
+			} finally {
+				releasePermit();
+			}
+		}
+	}
+	
+	/*
+	 * Run by IdleEvictionThread.
+	 * Remove the idle entries which have not been borrowed for longer than maxIdleTimeMillis,
+	 * the least recently returned first. The idle entries are not removed below minIdleEntries.
+	 * The removed entries are invalidated by the caller.
+	 * */
+	List<PoolEntry<T>> evictIdleTimeExpired() {
+		List<PoolEntry<T>> expired = new ArrayList<PoolEntry<T>>();
+		int excess = idleEntries.getIdleEntriesCount() - config.getMinIdleEntries();
+		if (excess <= 0) return expired;
+		
+		long returnedBefore = config.getClock().currentTimeMillis() - config.getMaxIdleTimeMillis();
+		idleEntries.evictTo(expired, returnedBefore, excess);
+		return expired;
+	}
+	
+	/*
+	 * Run by AdaptiveSizingThread.
+	 * The borrowers holding the taken away permits keep their entries, 
+	 * and the available permits stay negative until they return them.
+	 * */
+	void adjustSize() {
+		resizeLock.lock();
+		try {
+			sizingController.adjust();
+			resizeActiveLimit(sizingController.getActiveLimit());
+			
+			if (sizingController.hasSpareEntries()) {
+				trimIdleEntries(sizingController.getIdleTarget());
+			}
+		} finally {
+			resizeLock.unlock();
+		}
+	}
+	
+	@Override
+	public void reconfigure(PoolConfig newConfig) throws NullPointerException, PropertyValidationException {
+		if (newConfig == null) throw new NullPointerException("newConfig is null");
+		
+		newConfig.validateConfig();
+		// the values fixed at construction
+		if (newConfig.getMaxIdleEntries() < config.getMagazineSize())
+			throw new PropertyValidationException("maxIdleEntries < magazineSize");
+		if (newConfig.getMaxActiveEntries() < config.getMinActiveEntries())
+			throw new PropertyValidationException("maxActiveEntries < minActiveEntries");
+		if ((long) newConfig.getMaxActiveEntries() + newConfig.getMaxIdleEntries() > maxLiveEntries)
+			throw new PropertyValidationException("maxActiveEntries + maxIdleEntries > capacity of the slot table");
+		
+		resizeLock.lock();
+		try {
+			int previousMaxIdleEntries = config.getMaxIdleEntries();
+			
+			config.setMaxActiveEntries(newConfig.getMaxActiveEntries());
+			config.setMaxIdleEntries(newConfig.getMaxIdleEntries());
+			config.setMinIdleEntries(newConfig.getMinIdleEntries());
+			config.setInvalidateIntervalMillis(newConfig.getInvalidateIntervalMillis());
+			config.setEnsureIntervalMillis(newConfig.getEnsureIntervalMillis());
+			config.setAdaptiveIntervalMillis(newConfig.getAdaptiveIntervalMillis());
+			
+			if (idleEntries instanceof ResizableIdleEntriesQueue) {
+				((ResizableIdleEntriesQueue<T>) idleEntries).resize(config.getMaxIdleEntries());
+			}
+			if (config.getMaxIdleEntries() < previousMaxIdleEntries) {
+				trimIdleEntries(config.getMaxIdleEntries());
+			}
+			
+			if (sizingController != null) {
+				sizingController.reconfigure();
+				resizeActiveLimit(sizingController.getActiveLimit());
+			} else {
+				resizeActiveLimit(config.getMaxActiveEntries());
+			}
+		} finally {
+			resizeLock.unlock();
+		}
+	}
+	
+	/*
+	 * While the active limit is decreased below the borrowed entries,
+	 * the permits are released to the semaphore instead of being passed to the waiters.
+	 * */
+	private boolean isActiveLimitExceeded() {
+		return borrowingSemaphore.availablePermits() < 0;
+	}
+	
+	private void resizeActiveLimit(int activeLimit) {
+		int increased = borrowingSemaphore.resize(activeLimit);
+		if (increased > 0) {
+			releasePermits(increased);
+		}
+	}
+	
+	/*
+	 * Invalidate the idle entries over the idle target, the least recently returned first.
+	 * The other idle entries are left in the queue, so that the borrowers keep finding them.
+	 * */
+	private void trimIdleEntries(int idleTarget) {
+		int excess = idleEntries.getIdleEntriesCount() - idleTarget;
+		if (excess <= 0) {
+			return;
+		}
+		
+		List<PoolEntry<T>> trimmed = new ArrayList<PoolEntry<T>>(excess);
+		idleEntries.evictTo(trimmed, Long.MAX_VALUE, excess);
+		for (PoolEntry<T> entry : trimmed) {
+			invalidateEntry(entry);
+		}
+	}
+	
+	private void invalidateEntry(PoolEntry<T> entry) {
+		try {
+			entry.invalidate();
+		} catch (Exception e) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(), "Failed to invalidate pool entry.", e);
+		}
+	}
+	
+	@Override
+	public boolean close(long timeout, TimeUnit unit) throws NullPointerException, InterruptedException {
+		if (unit == null) throw new NullPointerException("unit is null");
+		if (!isClosed.compareAndSet(false, true)) {
+			return isDrained();
+		}
+		long deadline = config.getClock().nanoTime() + unit.toNanos(timeout);
+		
+		while (true) {
+			AsyncWaiter waiter = asyncWaiters.poll();
+			if (waiter == null) break;
+			waiter.fail(new IllegalStateException("pool is closed."));
+		}
+		
+		warmUpThread.cancel();
+		if (leaseReaperThread != null) {
+			leaseReaperThread.stopReaper();
+		}
+		if (idleEvictionThread != null) {
+			idleEvictionThread.stopEviction();
+		}
+		if (sizingThread != null) {
+			sizingThread.stopAdjust();
+		}
+		asyncBorrowThread.shutdown();
+		if (idleEntries instanceof CloseableIdleEntriesQueue) {
+			((CloseableIdleEntriesQueue<T>) idleEntries).close();
+		}
+		
+		try {
+			boolean drained = awaitDrained(deadline);
+			new CloseThread<T>(config, idleEntries).invalidateIdleEntries(deadline);
+			return drained;
+		} finally {
+			if (offloadThread != null) {
+				// the queued invalidations are completed
+				offloadThread.shutdown();
+			}
+		}
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return isClosed.get();
+	}
+	
+	private void checkNotClosed() {
+		if (isClosed.get()) throw new IllegalStateException("pool is closed.");
+	}
+	
+	private boolean isDrained() {
+		return borrowingSemaphore.availablePermits() >= borrowingSemaphore.getLimit();
+	}
+	
+	/*
+	 * Wait until all permits are released, which means all borrowed entries are returned.
+	 * */
+	private boolean awaitDrained(long deadline) throws InterruptedException {
+		closeLock.lock();
+		try {
+			while (!isDrained()) {
+				long remaining = deadline - config.getClock().nanoTime();
+				if (remaining <= 0) return false;
+				
+				permitReleased.awaitNanos(remaining);
+			}
+			return true;
+		} finally {
+			closeLock.unlock();
+		}
+	}
+	
+	private void signalPermitReleased() {
+		closeLock.lock();
+		try {
+			permitReleased.signalAll();
+		} finally {
+			closeLock.unlock();
+		}
+	}
+	
+	@Override
+	public WarmUpStats getWarmUpStats() {
+		return warmUpThread.getStats();
+	}
+	
+	@Override
+	public PoolPressure getPressure() {
+		int waiters = priorityWaiters.size();
+		int activeLimit = borrowingSemaphore.getLimit();
+		return new PoolPressure(
+				activeLimit,
+				activeLimit - borrowingSemaphore.availablePermits(),
+				waiters,
+				admissionController.getAverageHoldMillis(),
+				admissionController.estimateWaitMillis(waiters, activeLimit),
+				config.getMaxWaitMillisOnBorrow());
+	}
+	
 	/*
 	 * This method is typically used for debugging and testing purposes.
 	 * */
 	public int availablePermits() {
 		return borrowingSemaphore.availablePermits();
 	}	
+	
+	/*
+	 * The current limit of the borrowed entries.
+	 * It is maxActiveEntries unless adaptiveSizing.
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getActiveLimit() {
+		return borrowingSemaphore.getLimit();
+	}
+	
+	/*
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getAsyncWaitersCount() {
+		return asyncWaiters.size();
+	}
+	
+	/*
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getPriorityWaitersCount() {
+		return priorityWaiters.size();
+	}
+	
+	/*
+	 * The count of entries whose lease is not expired, or zero if the lease is unlimited.
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getLeasedEntriesCount() {
+		return (leaseRegistry == null) ? 0 : leaseRegistry.size();
+	}
+	
+	/*
+	 * An async borrower waiting for a permit.
+	 * */
+	private class AsyncWaiter extends BasicPoolEntryFuture<T> {
+		private final boolean createNew;
+		
+		private AsyncWaiter(boolean createNew) {
+			this.createNew = createNew;
+		}
+		
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (isDone()) return false;
+			
+			asyncWaiters.remove(this);
+			return super.cancel(mayInterruptIfRunning);
+		}
+	}
+	
+	/*
+	 * Fail the waiter when timed out.
+	 * When the waiter is done before, the timeout is cancelled and releases the waiter,
+	 * so that the pending timeout does not retain the waiter and its entry.
+	 * */
+	private class WaiterTimeout implements Runnable, PoolEntryFuture.Listener<T> {
+		private volatile AsyncWaiter waiter;
+		private volatile Future<?> future;
+		
+		private WaiterTimeout(AsyncWaiter waiter) {
+			this.waiter = waiter;
+		}
+		
+		@Override
+		public void run() {
+			AsyncWaiter timedOut = waiter;
+			if (timedOut == null) return;
+			
+			asyncWaiters.remove(timedOut);
+			timedOut.fail(new TimeoutException("borrowEntryAsync timed out."));
+		}
+		
+		@Override
+		public void onComplete(PoolEntryFuture<T> completed) {
+			waiter = null;
+			future.cancel(false);
+		}
+	}
 }
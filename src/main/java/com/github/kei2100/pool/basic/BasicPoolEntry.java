@@ -3,6 +3,8 @@ package com.github.kei2100.pool.basic;
 import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.PoolEntryState;
 import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.util.PoolClock;
+import com.github.kei2100.pool.util.SystemPoolClock;
 
 
 public class BasicPoolEntry<T> implements PoolEntry<T> {
@@ -10,12 +12,18 @@ public class BasicPoolEntry<T> implements PoolEntry<T> {
 	private final T object;
 	private final PoolEntryState state; 
 	private final PooledObjectValidator<T> validator;
+	private final PoolClock clock;
 	
 	protected BasicPoolEntry(T object, PooledObjectValidator<T> validator) {
+		this(object, validator, SystemPoolClock.INSTANCE);
+	}
+	
+	protected BasicPoolEntry(T object, PooledObjectValidator<T> validator, PoolClock clock) {
 		this.object = object;
 		this.validator = validator;
+		this.clock = clock;
 		
-		this.state = new PoolEntryState();
+		this.state = new PoolEntryState(clock);
 	}
 		
 	@Override
@@ -42,7 +50,7 @@ public class BasicPoolEntry<T> implements PoolEntry<T> {
 		
 		// return true, if entry is not invalidated while setting the state
 		if (updateValid && updateSuccessful) {
-			state.setLastValidatedAt(System.currentTimeMillis());
+			state.setLastValidatedAt(clock.currentTimeMillis());
 			return true;
 		} else {
 			return false;
@@ -4,16 +4,26 @@ import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.PoolEntryFactory;
 import com.github.kei2100.pool.PooledObjectFactory;
 import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.util.PoolClock;
+import com.github.kei2100.pool.util.SystemPoolClock;
 
 
 public class BasicPoolEntryFactory<T> implements PoolEntryFactory<T> {
 
 	private final PooledObjectFactory<T> objectFactory;
 	private final PooledObjectValidator<T> validator;
+	private final PoolClock clock;
 	
 	public BasicPoolEntryFactory(PooledObjectFactory<T> objectFactory, PooledObjectValidator<T> validator) {
+		this(objectFactory, validator, SystemPoolClock.INSTANCE);
+	}
+	
+	public BasicPoolEntryFactory(
+			PooledObjectFactory<T> objectFactory, PooledObjectValidator<T> validator, PoolClock clock) {
+		
 		this.objectFactory = objectFactory;
 		this.validator = validator;
+		this.clock = clock;
 	}
 	
 	@Override
@@ -21,7 +31,7 @@ public class BasicPoolEntryFactory<T> implements PoolEntryFactory<T> {
 		T object = null;
 		try {
 			object = objectFactory.createInstance();
-			return new BasicPoolEntry<T>(object, validator);
+			return new BasicPoolEntry<T>(object, validator, clock);
 		} catch (Exception e) {
 			throw e;
 		}
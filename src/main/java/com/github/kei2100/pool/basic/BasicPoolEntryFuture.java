@@ -0,0 +1,139 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryFuture;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/**
+ * {@link PoolEntryFuture} completed by {@link #complete(PoolEntry)} or {@link #fail(Throwable)}.
+ * <p>
+ * This class does not use intrinsic locks.
+ * Threads blocking in {@link #get()} wait on a {@link CountDownLatch}.
+ * </p>
+ *
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class BasicPoolEntryFuture<T> implements PoolEntryFuture<T> {
+	private static final Logger logger = LoggerFactory.getLogger(BasicPoolEntryFuture.class);
+
+	private static final int PENDING = 0;
+	private static final int COMPLETING = 1;
+	private static final int COMPLETED = 2;
+	private static final int FAILED = 3;
+	private static final int CANCELLED = 4;
+
+	private final AtomicInteger state = new AtomicInteger(PENDING);
+	private final CountDownLatch doneLatch = new CountDownLatch(1);
+	private final ConcurrentLinkedQueue<Listener<T>> listeners = new ConcurrentLinkedQueue<Listener<T>>();
+
+	private PoolEntry<T> entry;
+	private Throwable cause;
+
+	/**
+	 * Complete this future with the entry.
+	 * @param entry borrowed entry, or null
+	 * @return true, if succeeded. false, if this future is already completed or cancelled.
+	 * */
+	public boolean complete(PoolEntry<T> entry) {
+		if (!state.compareAndSet(PENDING, COMPLETING)) return false;
+
+		this.entry = entry;
+		state.set(COMPLETED);
+		done();
+		return true;
+	}
+
+	/**
+	 * Complete this future with the cause of failure.
+	 * @param cause the cause of failure
+	 * @return true, if succeeded. false, if this future is already completed or cancelled.
+	 * */
+	public boolean fail(Throwable cause) {
+		if (!state.compareAndSet(PENDING, COMPLETING)) return false;
+
+		this.cause = cause;
+		state.set(FAILED);
+		done();
+		return true;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+
+		done();
+		return true;
+	}
+
+	private void done() {
+		doneLatch.countDown();
+		fireListeners();
+	}
+
+	@Override
+	public void addListener(Listener<T> listener) throws NullPointerException {
+		if (listener == null) throw new NullPointerException("listener is null.");
+
+		listeners.add(listener);
+		if (isDone()) {
+			fireListeners();
+		}
+	}
+
+	private void fireListeners() {
+		Listener<T> listener;
+		while ((listener = listeners.poll()) != null) {
+			try {
+				listener.onComplete(this);
+			} catch (RuntimeException e) {
+				logger.warn(PoolLoggerMarkerFactory.getMarker(),
+						"PoolEntryFuture listener throws Exception.", e);
+			}
+		}
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return state.get() == CANCELLED;
+	}
+
+	@Override
+	public boolean isDone() {
+		return doneLatch.getCount() == 0;
+	}
+
+	@Override
+	public PoolEntry<T> get() throws InterruptedException, ExecutionException {
+		doneLatch.await();
+		return report();
+	}
+
+	@Override
+	public PoolEntry<T> get(long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+
+		if (!doneLatch.await(timeout, unit)) {
+			throw new TimeoutException("PoolEntryFuture#get timed out.");
+		}
+		return report();
+	}
+
+	private PoolEntry<T> report() throws ExecutionException {
+		int s = state.get();
+		if (s == COMPLETED) return entry;
+		if (s == CANCELLED) throw new CancellationException();
+		throw new ExecutionException(cause);
+	}
+}
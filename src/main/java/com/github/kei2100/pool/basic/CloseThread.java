@@ -0,0 +1,87 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.util.NameableDaemonThreadFactory;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/*
+ * Invalidates the idle entries of a closed pool, in parallel by closeThreads.
+ * The invalidations not finished by the deadline are left to the daemon threads.
+ * */
+class CloseThread<T> {
+	private static final Logger logger = LoggerFactory.getLogger(CloseThread.class);
+
+	private final PoolConfig config;
+	private final IdleEntriesQueue<T> idleEntries;
+
+	CloseThread(PoolConfig config, IdleEntriesQueue<T> idleEntries) {
+		this.config = config;
+		this.idleEntries = idleEntries;
+	}
+
+	/*
+	 * Return true if all idle entries are invalidated by the deadline.
+	 * */
+	boolean invalidateIdleEntries(long deadline) throws InterruptedException {
+		List<PoolEntry<T>> drained = new ArrayList<PoolEntry<T>>();
+		// evicted, not polled, so that the invalidated entries are not counted as borrowed
+		idleEntries.evictTo(drained, Long.MAX_VALUE, Integer.MAX_VALUE);
+		if (drained.isEmpty()) {
+			return true;
+		}
+
+		CountDownLatch doneLatch = new CountDownLatch(drained.size());
+		if (config.getCloseThreads() == 1 || drained.size() == 1) {
+			for (PoolEntry<T> entry : drained) {
+				new InvalidateTask(entry, doneLatch).run();
+			}
+			return true;
+		}
+
+		ExecutorService executor =
+				Executors.newFixedThreadPool(
+						Math.min(config.getCloseThreads(), drained.size()),
+						new NameableDaemonThreadFactory(CloseThread.class.getSimpleName()));
+		for (PoolEntry<T> entry : drained) {
+			executor.execute(new InvalidateTask(entry, doneLatch));
+		}
+		// the threads end when all tasks are done
+		executor.shutdown();
+
+		return doneLatch.await(deadline - config.getClock().nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	private class InvalidateTask implements Runnable {
+		private final PoolEntry<T> entry;
+		private final CountDownLatch doneLatch;
+
+		private InvalidateTask(PoolEntry<T> entry, CountDownLatch doneLatch) {
+			this.entry = entry;
+			this.doneLatch = doneLatch;
+		}
+
+		@Override
+		public void run() {
+			try {
+				entry.invalidate();
+			} catch (Exception e) {
+				logger.warn(PoolLoggerMarkerFactory.getMarker(), "Failed to invalidate pool entry.", e);
+			} finally {
+				doneLatch.countDown();
+			}
+		}
+	}
+}
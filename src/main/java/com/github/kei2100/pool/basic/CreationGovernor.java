@@ -0,0 +1,120 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.util.PoolClock;
+
+
+/*
+ * Limits the concurrent creations and the rate of creations of entries.
+ * A borrower waiting for the permission to create takes a returned entry instead, if one arrives first.
+ * */
+class CreationGovernor {
+	private static final long CANNOT_CREATE = Long.MAX_VALUE;
+
+	private final PoolClock clock;
+	private final int maxConcurrentCreates;
+	private final long nanosPerToken;
+	private final long burstNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+
+	// guarded by lock
+	private int creating = 0;
+	// the time when the token bucket becomes full again
+	private long fullAt;
+
+	// modified while holding lock
+	private volatile int waiters = 0;
+
+	CreationGovernor(PoolConfig config) {
+		this.maxConcurrentCreates = config.getMaxConcurrentCreates();
+		if (config.getCreatesPerSecond() > 0) {
+			this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / config.getCreatesPerSecond();
+		} else {
+			this.nanosPerToken = 0;
+		}
+		this.burstNanos = nanosPerToken * config.getCreateBurst();
+		this.clock = config.getClock();
+		this.fullAt = clock.nanoTime();
+	}
+
+	/*
+	 * Wait until the creation is permitted, or an idle entry can be polled from the queue.
+	 * Return the polled entry, or null if the creation is permitted.
+	 * If the creation is permitted, the caller must call createFinished().
+	 * */
+	<T> PoolEntry<T> awaitCreate(IdleEntriesQueue<T> idleEntries) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			waiters++;
+			while (true) {
+				if (idleEntries != null) {
+					PoolEntry<T> entry = BasicPool.pollBorrowable(idleEntries);
+					if (entry != null) return entry;
+				}
+
+				long waitNanos = tryPermit();
+				if (waitNanos == 0) return null;
+
+				if (waitNanos == CANNOT_CREATE) {
+					changed.await();
+				} else {
+					changed.awaitNanos(waitNanos);
+				}
+			}
+		} finally {
+			waiters--;
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * Return 0 if permitted, or the time to wait for the next token.
+	 * */
+	private long tryPermit() {
+		if (maxConcurrentCreates > 0 && creating >= maxConcurrentCreates) {
+			return CANNOT_CREATE;
+		}
+		if (nanosPerToken > 0) {
+			long now = clock.nanoTime();
+			// the bucket does not hold more than the burst
+			long takenAt = Math.max(fullAt, now);
+			long nextFullAt = takenAt + nanosPerToken;
+			long waitNanos = nextFullAt - burstNanos - now;
+			if (waitNanos > 0) return waitNanos;
+
+			fullAt = nextFullAt;
+		}
+		creating++;
+		return 0;
+	}
+
+	void createFinished() {
+		lock.lock();
+		try {
+			creating--;
+			// wake also the waiters for the token, so that one of them takes the slot
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void entryReturned() {
+		if (waiters == 0) return;
+
+		lock.lock();
+		try {
+			changed.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.util.FixedDelayTask;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/*
+ * A thread which invalidates the idle entries exceeded maxIdleTimeMillis, whatever the idle entries queue is.
+ * It runs on the shared MaintenanceScheduler, and the invalidations are limited by invalidateThreads.
+ * */
+class IdleEvictionThread<T> {
+	private static final Logger logger = LoggerFactory.getLogger(IdleEvictionThread.class);
+
+	private final PoolConfig config;
+	private final BasicPool<T> pool;
+
+	private AtomicBoolean isScheduled = new AtomicBoolean(false);
+	private MaintenanceScheduler.Registration registration;
+
+	IdleEvictionThread(PoolConfig config, BasicPool<T> pool) {
+		this.config = config;
+		this.pool = pool;
+	}
+
+	void startEviction() {
+		if (!isScheduled.compareAndSet(false, true)) {
+			throw new IllegalStateException("already scheduled");
+		}
+
+		registration =
+				MaintenanceScheduler.getShared().register(
+						IdleEvictionThread.class.getSimpleName(), config.getInvalidateThreads());
+
+		new FixedDelayTask(registration) {
+			@Override
+			protected void runTask() {
+				for (PoolEntry<T> entry : pool.evictIdleTimeExpired()) {
+					InvalidateTask task = new InvalidateTask(entry);
+					try {
+						registration.execute(task);
+					} catch (RejectedExecutionException e) {
+						// stopped meanwhile, the evicted entry is not left valid
+						task.run();
+					}
+				}
+			}
+			
+			@Override
+			protected long getDelayMillis() {
+				return config.getInvalidateIntervalMillis();
+			}
+		}.schedule(config.getInvalidateThreadInitialDelayMillis());
+	}
+	
+	/*
+	 * The evicted entries whose invalidation is still queued are invalidated by the calling thread.
+	 * */
+	void stopEviction() {
+		if (registration == null) return;
+		
+		for (Runnable task : registration.cancel()) {
+			if (task instanceof IdleEvictionThread.InvalidateTask) {
+				task.run();
+			}
+		}
+	}
+	
+	private class InvalidateTask implements Runnable {
+		private final PoolEntry<T> entry;
+		
+		private InvalidateTask(PoolEntry<T> entry) {
+			this.entry = entry;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				entry.invalidate();
+			} catch (Exception e) {
+				logger.warn(PoolLoggerMarkerFactory.getMarker(), "Failed to invalidate pool entry.", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.util.FixedDelayTask;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/*
+ * A thread which reclaims the entries whose lease expired.
+ * It runs on the shared MaintenanceScheduler.
+ * */
+class LeaseReaperThread {
+	private static final Logger logger = LoggerFactory.getLogger(LeaseReaperThread.class);
+
+	private final PoolConfig config;
+	private final BasicPool<?> pool;
+
+	private AtomicBoolean isScheduled = new AtomicBoolean(false);
+	private MaintenanceScheduler.Registration registration;
+
+	LeaseReaperThread(PoolConfig config, BasicPool<?> pool) {
+		this.config = config;
+		this.pool = pool;
+	}
+
+	void startReaper() {
+		if (!isScheduled.compareAndSet(false, true)) {
+			throw new IllegalStateException("already scheduled");
+		}
+
+		registration =
+				MaintenanceScheduler.getShared().register(
+						LeaseReaperThread.class.getSimpleName(), 1);
+
+		new FixedDelayTask(registration) {
+			@Override
+			protected void runTask() {
+				try {
+					pool.reclaimExpiredLeases();
+				} catch (RuntimeException e) {
+					logger.warn(PoolLoggerMarkerFactory.getMarker(), "Failed to reclaim pool entries.", e);
+				}
+			}
+			
+			@Override
+			protected long getDelayMillis() {
+				return config.getInvalidateIntervalMillis();
+			}
+		}.schedule(config.getInvalidateIntervalMillis());
+	}
+	
+	void stopReaper() {
+		if (registration != null) {
+			registration.cancel();
+		}
+	}
+}
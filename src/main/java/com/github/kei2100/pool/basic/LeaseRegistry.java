@@ -0,0 +1,87 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+
+
+/*
+ * The leases of the borrowed entries.
+ * Whichever of the returning thread and the reaper removes the lease first owns the permit of the entry.
+ * */
+class LeaseRegistry<T> {
+
+	private final long leaseTimeMillis;
+	private final int stackTraceSampling;
+	private final AtomicInteger borrows = new AtomicInteger(0);
+
+	private final ConcurrentMap<PoolEntry<T>, Lease<T>> leases = new ConcurrentHashMap<PoolEntry<T>, Lease<T>>();
+
+	LeaseRegistry(PoolConfig config) {
+		this.leaseTimeMillis = config.getLeaseTimeMillis();
+		this.stackTraceSampling = config.getLeaseStackTraceSampling();
+	}
+
+	void register(PoolEntry<T> entry, long borrowedAt) {
+		leases.put(entry, new Lease<T>(entry, borrowedAt + leaseTimeMillis, captureBorrowSite()));
+	}
+
+	private Throwable captureBorrowSite() {
+		if (stackTraceSampling == 0) return null;
+		if (borrows.incrementAndGet() % stackTraceSampling != 0) return null;
+
+		return new Exception("PoolEntry was borrowed here.");
+	}
+
+	/*
+	 * Return false if the lease has expired and the entry was reclaimed by the reaper.
+	 * */
+	boolean unregister(PoolEntry<T> entry) {
+		return leases.remove(entry) != null;
+	}
+
+	List<Lease<T>> pollExpired(long now) {
+		List<Lease<T>> expired = new ArrayList<Lease<T>>();
+		for (Lease<T> lease : leases.values()) {
+			if (lease.deadline <= now && leases.remove(lease.entry, lease)) {
+				expired.add(lease);
+			}
+		}
+		return expired;
+	}
+
+	int size() {
+		return leases.size();
+	}
+
+	static class Lease<T> {
+		private final PoolEntry<T> entry;
+		private final long deadline;
+		private final String borrowedBy = Thread.currentThread().getName();
+		private final Throwable borrowSite;
+
+		private Lease(PoolEntry<T> entry, long deadline, Throwable borrowSite) {
+			this.entry = entry;
+			this.deadline = deadline;
+			this.borrowSite = borrowSite;
+		}
+
+		PoolEntry<T> getEntry() {
+			return entry;
+		}
+
+		String getBorrowedBy() {
+			return borrowedBy;
+		}
+
+		// null if the stack trace was not sampled
+		Throwable getBorrowSite() {
+			return borrowSite;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.kei2100.pool.BorrowPriority;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.util.PoolClock;
+
+
+/*
+ * The borrowers waiting for a permit, queued for each BorrowPriority.
+ * A permit is granted to the waiter whose priority, raised by the aging, is the highest.
+ * Among the waiters of the same priority, the longest waiting one is granted first.
+ * */
+class PriorityWaiters {
+	private static final int WAITING = 0;
+	private static final int GRANTED = 1;
+	private static final int CANCELLED = 2;
+
+	private final PoolClock clock;
+	private final long agingNanos;
+	private final List<ConcurrentLinkedQueue<Waiter>> queues;
+	private final AtomicInteger waitersCount = new AtomicInteger(0);
+
+	PriorityWaiters(PoolConfig config) {
+		this.clock = config.getClock();
+		this.agingNanos = TimeUnit.MILLISECONDS.toNanos(config.getPriorityAgingMillis());
+
+		BorrowPriority[] priorities = BorrowPriority.values();
+		queues = new ArrayList<ConcurrentLinkedQueue<Waiter>>(priorities.length);
+		for (int i = 0; i < priorities.length; i++) {
+			queues.add(new ConcurrentLinkedQueue<Waiter>());
+		}
+	}
+
+	Waiter addWaiter(BorrowPriority priority) {
+		Waiter waiter = new Waiter(priority.ordinal());
+		waitersCount.incrementAndGet();
+		queues.get(waiter.level).add(waiter);
+		return waiter;
+	}
+
+	boolean isEmpty() {
+		return waitersCount.get() == 0;
+	}
+
+	/*
+	 * Grant the permit held by the current thread to the highest priority waiter.
+	 * Return false if there is no waiter.
+	 * */
+	boolean grant() {
+		while (!isEmpty()) {
+			Waiter waiter = pollHighest();
+			if (waiter == null) return false;
+			if (waiter.grant()) return true;
+		}
+		return false;
+	}
+
+	private Waiter pollHighest() {
+		while (true) {
+			long now = clock.nanoTime();
+			Waiter highest = null;
+			long highestRank = Long.MAX_VALUE;
+
+			for (ConcurrentLinkedQueue<Waiter> queue : queues) {
+				Waiter head = queue.peek();
+				if (head == null) continue;
+
+				// rises one level per agingNanos waited
+				long rank = head.level * agingNanos - (now - head.enqueuedAt);
+				if (highest == null || rank < highestRank) {
+					highest = head;
+					highestRank = rank;
+				}
+			}
+			if (highest == null) return null;
+
+			if (remove(highest)) return highest;
+			// removed by other threads, find again
+		}
+	}
+
+	private boolean remove(Waiter waiter) {
+		if (queues.get(waiter.level).remove(waiter)) {
+			waitersCount.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/*
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	int size() {
+		return waitersCount.get();
+	}
+
+	class Waiter {
+		private final Thread thread = Thread.currentThread();
+		private final int level;
+		private final long enqueuedAt = clock.nanoTime();
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+
+		private Waiter(int level) {
+			this.level = level;
+		}
+
+		private boolean grant() {
+			if (!state.compareAndSet(WAITING, GRANTED)) return false;
+
+			LockSupport.unpark(thread);
+			return true;
+		}
+
+		/*
+		 * Wait until a permit is granted.
+		 * Return false if the waiting time elapsed.
+		 * */
+		boolean await(long timeoutNanos) throws InterruptedException {
+			long deadline = clock.nanoTime() + timeoutNanos;
+			while (state.get() == WAITING) {
+				if (Thread.interrupted()) throw new InterruptedException();
+
+				if (timeoutNanos == Long.MAX_VALUE) {
+					LockSupport.park(this);
+				} else {
+					long remaining = deadline - clock.nanoTime();
+					if (remaining <= 0) return false;
+					LockSupport.parkNanos(this, remaining);
+				}
+			}
+			return true;
+		}
+
+		/*
+		 * Stop waiting.
+		 * Return false if a permit is already granted, and the caller owns the permit.
+		 * */
+		boolean cancel() {
+			if (!state.compareAndSet(WAITING, CANCELLED)) return false;
+
+			remove(this);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/*
+ * A semaphore whose number of permits can be changed while the permits are acquired.
+ * When the limit is decreased, the permits are taken away from the available ones,
+ * and the available permits may become negative until the acquired ones are released.
+ * */
+class ResizableSemaphore extends Semaphore {
+	private static final long serialVersionUID = 1L;
+
+	private final ReentrantLock resizeLock = new ReentrantLock();
+
+	// modified while holding resizeLock
+	private volatile int limit;
+
+	ResizableSemaphore(int limit) {
+		super(limit);
+		this.limit = limit;
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	/*
+	 * Return the increased permits, which the caller must release.
+	 * The permits are not released here, so that the caller can hand them to the waiters.
+	 * */
+	int resize(int newLimit) {
+		if (newLimit < 1) throw new IllegalArgumentException("newLimit must be positive.");
+
+		resizeLock.lock();
+		try {
+			int delta = newLimit - limit;
+			limit = newLimit;
+			if (delta < 0) {
+				reducePermits(-delta);
+				return 0;
+			}
+			return delta;
+		} finally {
+			resizeLock.unlock();
+		}
+	}
+}
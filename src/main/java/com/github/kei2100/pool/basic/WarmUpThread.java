@@ -0,0 +1,137 @@
+package com.github.kei2100.pool.basic;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.WarmUpStats;
+import com.github.kei2100.pool.util.NameableDaemonThreadFactory;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/*
+ * Creates the initial entries, in parallel if warmUpThreads is positive.
+ * The entries not started by the deadline are skipped.
+ * */
+class WarmUpThread<T> {
+	private static final Logger logger = LoggerFactory.getLogger(WarmUpThread.class);
+
+	private final PoolConfig config;
+	private final IdleEntriesQueue<T> idleEntries;
+	private final Callable<PoolEntry<T>> creator;
+
+	private final int requestedEntries;
+	private final CountDownLatch doneLatch;
+	private final AtomicInteger createdEntries = new AtomicInteger(0);
+	private final AtomicInteger failedEntries = new AtomicInteger(0);
+	private final AtomicInteger skippedEntries = new AtomicInteger(0);
+
+	private volatile long startedAt;
+	private volatile long deadline;
+	private volatile long finishedAt;
+	private volatile boolean isCancelled = false;
+
+	WarmUpThread(PoolConfig config, IdleEntriesQueue<T> idleEntries, Callable<PoolEntry<T>> creator) {
+		this.config = config;
+		this.idleEntries = idleEntries;
+		this.creator = creator;
+
+		this.requestedEntries = config.getInitialEntries();
+		this.doneLatch = new CountDownLatch(requestedEntries);
+	}
+
+	/*
+	 * Wait for the initial entries unless warmUpInBackground.
+	 * */
+	void warmUp() throws InterruptedException {
+		startedAt = config.getClock().nanoTime();
+		deadline = startedAt + TimeUnit.MILLISECONDS.toNanos(config.getWarmUpTimeoutMillis());
+		if (requestedEntries == 0) {
+			finishedAt = startedAt;
+			return;
+		}
+
+		if (config.getWarmUpThreads() == 0) {
+			for (int i = 0; i < requestedEntries; i++) {
+				new CreateTask().run();
+			}
+			return;
+		}
+
+		ExecutorService executor =
+				Executors.newFixedThreadPool(
+						Math.min(config.getWarmUpThreads(), requestedEntries),
+						new NameableDaemonThreadFactory(WarmUpThread.class.getSimpleName()));
+		for (int i = 0; i < requestedEntries; i++) {
+			executor.execute(new CreateTask());
+		}
+		// the threads end when all tasks are done
+		executor.shutdown();
+
+		if (config.isWarmUpInBackground()) {
+			return;
+		}
+		if (config.getWarmUpTimeoutMillis() == 0) {
+			doneLatch.await();
+		} else {
+			doneLatch.await(deadline - config.getClock().nanoTime(), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	WarmUpStats getStats() {
+		long endedAt = (doneLatch.getCount() == 0) ? finishedAt : config.getClock().nanoTime();
+		return new WarmUpStats(
+				requestedEntries,
+				createdEntries.get(),
+				failedEntries.get(),
+				skippedEntries.get(),
+				TimeUnit.NANOSECONDS.toMillis(endedAt - startedAt));
+	}
+
+	/*
+	 * Skip the entries not started yet, and invalidate the entries being created.
+	 * */
+	void cancel() {
+		isCancelled = true;
+	}
+
+	private boolean isDeadlinePassed() {
+		return config.getWarmUpTimeoutMillis() > 0 && config.getClock().nanoTime() - deadline > 0;
+	}
+
+	private class CreateTask implements Runnable {
+		@Override
+		public void run() {
+			try {
+				if (isCancelled || isDeadlinePassed()) {
+					skippedEntries.incrementAndGet();
+					return;
+				}
+				PoolEntry<T> created = creator.call();
+				if (isCancelled) {
+					created.invalidate();
+					skippedEntries.incrementAndGet();
+					return;
+				}
+				idleEntries.offer(created);
+				createdEntries.incrementAndGet();
+			} catch (Exception e) {
+				failedEntries.incrementAndGet();
+				logger.warn(PoolLoggerMarkerFactory.getMarker(),
+						"Failed to create initial pool entry.", e);
+			} finally {
+				finishedAt = config.getClock().nanoTime();
+				doneLatch.countDown();
+			}
+		}
+	}
+}
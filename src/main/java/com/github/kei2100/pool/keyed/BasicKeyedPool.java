@@ -0,0 +1,363 @@
+package com.github.kei2100.pool.keyed;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.KeyedPool;
+import com.github.kei2100.pool.KeyedPooledObjectFactory;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolException;
+import com.github.kei2100.pool.PooledObjectFactory;
+import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.ValidationConfig;
+import com.github.kei2100.pool.basic.BasicPoolEntryFactory;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+import com.github.kei2100.pool.validatable.ValidationHelper;
+
+
+/**
+ * {@link KeyedPool} which keeps the idle entries for each key,
+ * and counts the entries of all keys against {@link PoolConfig#getMaxActiveEntries()}.
+ * <p>
+ * A key holds only a deque of the idle entries.
+ * The background tasks of all keys are run by a single {@link KeyedPoolMaintenanceThread}.
+ * </p>
+ *
+ * @param <K> the type of key
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class BasicKeyedPool<K, T> implements KeyedPool<K, T> {
+	private static final Logger logger = LoggerFactory.getLogger(BasicKeyedPool.class);
+
+	private final PoolConfig config;
+	private final ValidationConfig validationConfig;
+	private final KeyedPooledObjectFactory<K, T> objectFactory;
+	private final PooledObjectValidator<T> validator;
+
+	private final ConcurrentMap<K, KeyedIdleEntries<T>> idleEntriesByKey =
+			new ConcurrentHashMap<K, KeyedIdleEntries<T>>();
+
+	// the count of created entries of all keys, both idle and borrowed
+	private final AtomicInteger totalEntries = new AtomicInteger(0);
+
+	private final ReentrantLock waitLock = new ReentrantLock();
+	private final Condition entryReleased = waitLock.newCondition();
+	// modified while holding waitLock
+	private volatile int waiters = 0;
+
+	private final KeyedPoolMaintenanceThread<K, T> maintenanceThread;
+
+	public BasicKeyedPool(
+			PoolConfig config,
+			ValidationConfig validationConfig,
+			KeyedPooledObjectFactory<K, T> objectFactory,
+			PooledObjectValidator<T> validator) {
+
+		this.config = config;
+		this.validationConfig = validationConfig;
+		this.objectFactory = objectFactory;
+		this.validator = validator;
+
+		if (config.isInvalidateInBackground() || validationConfig.isTestInBackground()) {
+			maintenanceThread = new KeyedPoolMaintenanceThread<K, T>(config, this);
+			maintenanceThread.startMaintenance();
+		} else {
+			maintenanceThread = null;
+		}
+	}
+
+	@Override
+	public PoolConfig getPoolConfig() {
+		return config;
+	}
+
+	@Override
+	public PoolEntry<T> borrowEntry(K key)
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException {
+
+		return borrowEntry(key, config.getMaxWaitMillisOnBorrow(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public PoolEntry<T> borrowEntry(K key, long timeout, TimeUnit unit)
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException {
+
+		if (key == null) throw new NullPointerException("key is null.");
+
+		boolean waitUnlimit = config.isWaitUnlimitOnBorrow();
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		while (true) {
+			PoolEntry<T> entry = obtainEntry(key, waitUnlimit, deadline);
+			if (validateOnBorrow(entry)) {
+				return entry;
+			}
+			releaseSlot();
+		}
+	}
+
+	@Override
+	public PoolEntry<T> tryBorrowEntry(K key) throws NullPointerException, PoolException {
+		if (key == null) throw new NullPointerException("key is null.");
+
+		while (true) {
+			KeyedIdleEntries<T> idleEntries = idleEntriesOf(key);
+			PoolEntry<T> entry = idleEntries.poll();
+			if (entry == null) {
+				if (!reserveSlot()) return null;
+				entry = createEntry(idleEntries);
+			}
+			if (validateOnBorrow(entry)) {
+				return entry;
+			}
+			releaseSlot();
+		}
+	}
+
+	private PoolEntry<T> obtainEntry(K key, boolean waitUnlimit, long deadline)
+			throws InterruptedException, TimeoutException, PoolException {
+
+		KeyedIdleEntries<T> idleEntries = idleEntriesOf(key);
+		PoolEntry<T> entry = idleEntries.poll();
+		if (entry != null) return entry;
+		if (reserveSlot()) return createEntry(idleEntries);
+
+		waitLock.lockInterruptibly();
+		try {
+			waiters++;
+			while (true) {
+				// the key may have been retired while waiting
+				idleEntries = idleEntriesOf(key);
+				entry = idleEntries.poll();
+				if (entry != null) return entry;
+				if (reserveSlot()) break;
+
+				if (waitUnlimit) {
+					entryReleased.await();
+				} else {
+					long remainingNanos = deadline - System.nanoTime();
+					if (remainingNanos <= 0) {
+						throw new TimeoutException("borrowEntry timed out.");
+					}
+					entryReleased.awaitNanos(remainingNanos);
+				}
+			}
+		} finally {
+			waiters--;
+			waitLock.unlock();
+		}
+		return createEntry(idleEntries);
+	}
+
+	/*
+	 * Reserve a slot of maxActiveEntries for a new entry.
+	 * If all the slots are used, evict the idle entry of the least recently used key and take over its slot.
+	 * */
+	private boolean reserveSlot() {
+		int max = config.getMaxActiveEntries();
+		while (true) {
+			int total = totalEntries.get();
+			if (total >= max) break;
+			if (totalEntries.compareAndSet(total, total + 1)) return true;
+		}
+
+		PoolEntry<T> evicted = pollLeastRecentlyUsed();
+		if (evicted == null) return false;
+
+		invalidate(evicted);
+		return true;
+	}
+
+	private PoolEntry<T> pollLeastRecentlyUsed() {
+		while (true) {
+			KeyedIdleEntries<T> coldest = null;
+			for (KeyedIdleEntries<T> idleEntries : idleEntriesByKey.values()) {
+				if (idleEntries.size() == 0) continue;
+				if (coldest == null || idleEntries.getLastAccessedAt() < coldest.getLastAccessedAt()) {
+					coldest = idleEntries;
+				}
+			}
+			if (coldest == null) return null;
+
+			PoolEntry<T> entry = coldest.pollEldest();
+			if (entry != null) return entry;
+			// polled by other threads, find again
+		}
+	}
+
+	private PoolEntry<T> createEntry(KeyedIdleEntries<T> idleEntries) throws PoolException {
+		try {
+			return idleEntries.getPoolEntryFactory().createPoolEntry();
+		} catch (Exception e) {
+			releaseSlot();
+			throw new PoolException(e);
+		}
+	}
+
+	private boolean validateOnBorrow(PoolEntry<T> entry) {
+		ValidationHelper.invalidateIfAgeExpired(validationConfig, entry, config.getClock());
+		if (!entry.getState().isValid()) {
+			return false;
+		}
+		if (validationConfig.isTestOnBorrow()) {
+			return ValidationHelper.validate(validationConfig, entry, config.getClock());
+		}
+		return true;
+	}
+
+	@Override
+	public void returnEntry(K key, PoolEntry<T> entry) throws NullPointerException {
+		if (key == null) throw new NullPointerException("key is null.");
+		if (entry == null) throw new NullPointerException("entry is null.");
+
+		ValidationHelper.invalidateIfAgeExpired(validationConfig, entry, config.getClock());
+		if (entry.getState().isValid() && validationConfig.isTestOnReturn()) {
+			ValidationHelper.validate(validationConfig, entry, config.getClock());
+		}
+		if (!entry.getState().isValid()) {
+			releaseSlot();
+			return;
+		}
+
+		entry.getState().setLastReturnedAt(config.getClock().currentTimeMillis());
+		offerOrRelease(key, entry);
+	}
+
+	private void offerOrRelease(K key, PoolEntry<T> entry) {
+		while (true) {
+			int result = idleEntriesOf(key).offer(entry);
+			if (result == KeyedIdleEntries.RETIRED) {
+				continue;
+			}
+			if (result == KeyedIdleEntries.FULL) {
+				invalidate(entry);
+				releaseSlot();
+				return;
+			}
+			signalWaiter();
+			return;
+		}
+	}
+
+	private KeyedIdleEntries<T> idleEntriesOf(final K key) {
+		KeyedIdleEntries<T> idleEntries = idleEntriesByKey.get(key);
+		if (idleEntries != null) return idleEntries;
+
+		PooledObjectFactory<T> keyBoundFactory = new PooledObjectFactory<T>() {
+			@Override
+			public T createInstance() throws Exception {
+				return objectFactory.createInstance(key);
+			}
+		};
+		KeyedIdleEntries<T> created = new KeyedIdleEntries<T>(
+				config, new BasicPoolEntryFactory<T>(keyBoundFactory, validator, config.getClock()));
+
+		idleEntries = idleEntriesByKey.putIfAbsent(key, created);
+		return (idleEntries != null) ? idleEntries : created;
+	}
+
+	private void releaseSlot() {
+		totalEntries.decrementAndGet();
+		signalWaiter();
+	}
+
+	private void signalWaiter() {
+		if (waiters == 0) return;
+
+		waitLock.lock();
+		try {
+			entryReleased.signal();
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	private void invalidate(PoolEntry<T> entry) {
+		try {
+			entry.invalidate();
+		} catch (Exception e) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(), "Failed to invalidate pool entry.", e);
+		}
+	}
+
+	/*
+	 * Run by KeyedPoolMaintenanceThread.
+	 * Invalidate the entries idle longer than maxIdleTimeMillis,
+	 * validate the idle entries if testInBackground, and remove the keys unused during the interval.
+	 * */
+	void maintain() {
+		long now = config.getClock().currentTimeMillis();
+
+		for (Map.Entry<K, KeyedIdleEntries<T>> keyAndEntries : idleEntriesByKey.entrySet()) {
+			K key = keyAndEntries.getKey();
+			KeyedIdleEntries<T> idleEntries = keyAndEntries.getValue();
+
+			if (!config.isIdleTimeUnlimit()) {
+				List<PoolEntry<T>> expired = idleEntries.pollIdleTimeExpired(now - config.getMaxIdleTimeMillis());
+				for (PoolEntry<T> entry : expired) {
+					invalidate(entry);
+					releaseSlot();
+				}
+			}
+			if (validationConfig.isTestInBackground()) {
+				validateIdleEntries(key, idleEntries);
+			}
+			if (idleEntries.retireIfUnused(now - config.getInvalidateIntervalMillis())) {
+				idleEntriesByKey.remove(key, idleEntries);
+			}
+		}
+	}
+
+	private void validateIdleEntries(K key, KeyedIdleEntries<T> idleEntries) {
+		for (int i = idleEntries.size(); i > 0; i--) {
+			PoolEntry<T> entry = idleEntries.pollEldest();
+			if (entry == null) return;
+
+			if (ValidationHelper.validate(validationConfig, entry, config.getClock())) {
+				offerOrRelease(key, entry);
+			} else {
+				releaseSlot();
+			}
+		}
+	}
+
+	/**
+	 * Get the count of entries of all keys, both idle and borrowed.
+	 * This method is typically used for debugging and testing purposes.
+	 * @return the count of entries
+	 * */
+	public int getTotalEntriesCount() {
+		return totalEntries.get();
+	}
+
+	/**
+	 * Get the count of idle entries of the key.
+	 * This method is typically used for debugging and testing purposes.
+	 * @param key the key of entries
+	 * @return the count of idle entries
+	 * */
+	public int getIdleEntriesCount(K key) {
+		KeyedIdleEntries<T> idleEntries = idleEntriesByKey.get(key);
+		return (idleEntries == null) ? 0 : idleEntries.size();
+	}
+
+	/**
+	 * Get the count of keys held by this pool.
+	 * This method is typically used for debugging and testing purposes.
+	 * @return the count of keys
+	 * */
+	public int getKeysCount() {
+		return idleEntriesByKey.size();
+	}
+}
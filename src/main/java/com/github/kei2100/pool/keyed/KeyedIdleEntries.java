@@ -0,0 +1,132 @@
+package com.github.kei2100.pool.keyed;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryFactory;
+
+
+/*
+ * The idle entries of a key.
+ * This is a deque guarded by a lock, without threads and semaphores,
+ * so that the pool can hold many keys.
+ * Once retired, no entry is offered to this, and the key is removed from the pool.
+ * */
+class KeyedIdleEntries<T> {
+	static final int OFFERED = 0;
+	static final int FULL = 1;
+	static final int RETIRED = 2;
+
+	private final PoolEntryFactory<T> poolEntryFactory;
+	private final int maxIdleEntries;
+	private final boolean lifo;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final ArrayDeque<PoolEntry<T>> entries = new ArrayDeque<PoolEntry<T>>();
+	private boolean retired = false;
+
+	// read without lock
+	private volatile int size = 0;
+	private volatile long lastAccessedAt = System.currentTimeMillis();
+
+	KeyedIdleEntries(PoolConfig config, PoolEntryFactory<T> poolEntryFactory) {
+		this.poolEntryFactory = poolEntryFactory;
+		this.maxIdleEntries = config.getMaxIdleEntries();
+		this.lifo = config.isLifo();
+	}
+
+	PoolEntryFactory<T> getPoolEntryFactory() {
+		return poolEntryFactory;
+	}
+
+	PoolEntry<T> poll() {
+		lastAccessedAt = System.currentTimeMillis();
+		if (size == 0) return null;
+
+		lock.lock();
+		try {
+			PoolEntry<T> entry = lifo ? entries.pollLast() : entries.pollFirst();
+			if (entry != null) size--;
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// poll the entry returned least recently, regardless of the order
+	PoolEntry<T> pollEldest() {
+		if (size == 0) return null;
+
+		lock.lock();
+		try {
+			PoolEntry<T> entry = entries.pollFirst();
+			if (entry != null) size--;
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int offer(PoolEntry<T> entry) {
+		lock.lock();
+		try {
+			if (retired) return RETIRED;
+			if (size >= maxIdleEntries) return FULL;
+
+			entries.addLast(entry);
+			size++;
+			lastAccessedAt = System.currentTimeMillis();
+			return OFFERED;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	List<PoolEntry<T>> pollIdleTimeExpired(long returnedBefore) {
+		List<PoolEntry<T>> expired = new ArrayList<PoolEntry<T>>();
+		if (size == 0) return expired;
+
+		lock.lock();
+		try {
+			Iterator<PoolEntry<T>> iterator = entries.iterator();
+			while (iterator.hasNext()) {
+				PoolEntry<T> entry = iterator.next();
+				if (entry.getState().getLastReturnedAt() <= returnedBefore) {
+					iterator.remove();
+					size--;
+					expired.add(entry);
+				}
+			}
+			return expired;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	boolean retireIfUnused(long accessedBefore) {
+		if (size > 0 || lastAccessedAt > accessedBefore) return false;
+
+		lock.lock();
+		try {
+			if (size > 0 || lastAccessedAt > accessedBefore) return false;
+
+			retired = true;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	long getLastAccessedAt() {
+		return lastAccessedAt;
+	}
+}
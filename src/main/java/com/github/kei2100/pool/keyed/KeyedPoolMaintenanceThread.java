@@ -0,0 +1,63 @@
+package com.github.kei2100.pool.keyed;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.util.FixedDelayTask;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/*
+ * A single task which maintains all keys of BasicKeyedPool,
+ * instead of the threads of AsyncInvalidateThread and ValidatablePoolThread for each key.
+ * */
+class KeyedPoolMaintenanceThread<K, T> {
+	private static final Logger logger = LoggerFactory.getLogger(KeyedPoolMaintenanceThread.class);
+
+	private final PoolConfig config;
+	private final BasicKeyedPool<K, T> pool;
+
+	private AtomicBoolean isScheduled = new AtomicBoolean(false);
+	private MaintenanceScheduler.Registration registration;
+
+	KeyedPoolMaintenanceThread(PoolConfig config, BasicKeyedPool<K, T> pool) {
+		this.config = config;
+		this.pool = pool;
+	}
+
+	void startMaintenance() {
+		if (!isScheduled.compareAndSet(false, true)) {
+			throw new IllegalStateException("already scheduled");
+		}
+
+		registration =
+				MaintenanceScheduler.getShared().register(
+						KeyedPoolMaintenanceThread.class.getSimpleName(), 1);
+
+		new MaintenanceTask(registration).schedule(config.getInvalidateThreadInitialDelayMillis());
+	}
+
+	private class MaintenanceTask extends FixedDelayTask {
+		private MaintenanceTask(MaintenanceScheduler.Registration registration) {
+			super(registration);
+		}
+
+		@Override
+		protected long getDelayMillis() {
+			return config.getInvalidateIntervalMillis();
+		}
+
+		@Override
+		protected void runTask() {
+			try {
+				pool.maintain();
+			} catch (RuntimeException e) {
+				logger.warn(PoolLoggerMarkerFactory.getMarker(), "Failed to maintain keyed pool.", e);
+			}
+		}
+	}
+}
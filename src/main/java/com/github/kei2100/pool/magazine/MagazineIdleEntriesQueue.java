@@ -0,0 +1,462 @@
+package com.github.kei2100.pool.magazine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.CloseableIdleEntriesQueue;
+import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.ResizableIdleEntriesQueue;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/**
+ * {@link IdleEntriesQueue} that caches idle entries per thread in front of a shared depot.
+ * <p>
+ * Each thread holds a small stack of idle entries (a magazine).
+ * Entries returned by a thread are pushed onto its magazine and borrowed again from it,
+ * so most borrow/return pairs on the same thread never touch the shared depot.
+ * A full magazine moves its coldest entries to the depot, and an empty magazine
+ * refills itself from the depot, a batch at a time.
+ * </p>
+ * <p>
+ * The number of idle entries is bounded by {@link PoolConfig#getMaxIdleEntries()} with credits.
+ * A magazine holds a credit for each cached entry, and the credit moves to the depot
+ * together with the entry. Credits are reserved from and released to the shared counter
+ * in batches, not for every entry.
+ * When the capacity is decreased, the credits may become negative, 
+ * and no credit is reserved until the excess entries are borrowed.
+ * </p>
+ * <p>
+ * Magazines of terminated threads are flushed back to the depot
+ * when a thread finds both its magazine and the depot empty.
+ * The maintenance of the pool flushes the magazines of all threads by {@link #flushMagazines()}.
+ * Each magazine is guarded by its own lock, which is not contended except while it is flushed.
+ * The entries are offered to the depot and invalidated after the lock is released.
+ * </p>
+ *
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class MagazineIdleEntriesQueue<T> implements ResizableIdleEntriesQueue<T>, CloseableIdleEntriesQueue<T> {
+	private static final Logger logger = LoggerFactory.getLogger(MagazineIdleEntriesQueue.class);
+
+	private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final IdleEntriesQueue<T> depot;
+	private final int magazineSize;
+	private final int batchSize;
+
+	private final AtomicInteger capacity;
+	// idle capacity that is not held by any magazine or depot.
+	private final AtomicInteger idleCredits;
+	// credits carried by the entries which are flushed to the depot.
+	private final AtomicInteger depotCredits;
+
+	private final ConcurrentLinkedQueue<Magazine<T>> magazines;
+	private final ThreadLocal<Magazine<T>> localMagazine;
+
+	private final AtomicBoolean isSweeping = new AtomicBoolean(false);
+	private volatile long lastSweptAt;
+	private volatile boolean isClosed = false;
+
+	public MagazineIdleEntriesQueue(PoolConfig config, IdleEntriesQueue<T> depot) {
+		this.depot = depot;
+		this.magazineSize = config.getMagazineSize();
+		this.batchSize = Math.max(1, magazineSize / 2);
+
+		capacity = new AtomicInteger(config.getMaxIdleEntries());
+		idleCredits = new AtomicInteger(config.getMaxIdleEntries());
+		depotCredits = new AtomicInteger(0);
+
+		magazines = new ConcurrentLinkedQueue<Magazine<T>>();
+		localMagazine = new ThreadLocal<Magazine<T>>() {
+			@Override
+			protected Magazine<T> initialValue() {
+				Magazine<T> magazine = new Magazine<T>(Thread.currentThread(), magazineSize);
+				magazines.add(magazine);
+				return magazine;
+			}
+		};
+		lastSweptAt = System.nanoTime() - SWEEP_INTERVAL_NANOS;
+	}
+
+	@Override
+	public PoolEntry<T> poll() {
+		Magazine<T> magazine = localMagazine.get();
+
+		magazine.lock.lock();
+		try {
+			PoolEntry<T> entry = magazine.pop();
+			if (entry != null) {
+				if (magazine.spareCredits() > batchSize) {
+					releaseSpareCredits(magazine);
+				}
+				return entry;
+			}
+		} finally {
+			magazine.lock.unlock();
+		}
+
+		PoolEntry<T> entry = depot.poll();
+		if (entry == null) {
+			if (!sweepTerminatedMagazines()) {
+				return null;
+			}
+			entry = depot.poll();
+			if (entry == null) {
+				return null;
+			}
+		}
+
+		magazine.lock.lock();
+		try {
+			refill(magazine);
+		} finally {
+			magazine.lock.unlock();
+		}
+		return entry;
+	}
+
+	/*
+	 * Called with the lock of the magazine.
+	 * The depot is only polled here, which does not invalidate entries.
+	 * */
+	private void refill(Magazine<T> magazine) {
+		int wanted = Math.min(batchSize, magazineSize - magazine.size) - magazine.spareCredits();
+		if (wanted > 0) {
+			int reserved = takeCredits(depotCredits, wanted);
+			if (reserved < wanted) {
+				reserved += takeCredits(idleCredits, wanted - reserved);
+			}
+			magazine.credits += reserved;
+		}
+
+		while (magazine.spareCredits() > 0 && magazine.size < magazineSize) {
+			PoolEntry<T> entry = depot.poll();
+			if (entry == null) break;
+			magazine.push(entry);
+		}
+	}
+
+	/*
+	 * The flushed entries are offered to the depot, and the rejected entry is invalidated, 
+	 * after the lock of the magazine is released.
+	 * */
+	@Override
+	public boolean offer(PoolEntry<T> entry) throws NullPointerException {
+		if (entry == null) throw new NullPointerException("entry is null.");
+		if (!entry.getState().isValid()) return false;
+
+		Magazine<T> magazine = localMagazine.get();
+		List<PoolEntry<T>> flushed = null;
+		boolean pushed = false;
+		magazine.lock.lock();
+		try {
+			// checked under the lock, so that the flush of close sees the pushed entry
+			if (!isClosed) {
+				if (magazine.size == magazineSize) {
+					flushed = takeColdest(magazine, batchSize);
+				}
+				if (magazine.spareCredits() == 0) {
+					magazine.credits += takeCredits(idleCredits, batchSize);
+				}
+				// no credit if idle entries have reached maxIdleEntries
+				if (magazine.spareCredits() > 0) {
+					magazine.push(entry);
+					pushed = true;
+				}
+			}
+		} finally {
+			magazine.lock.unlock();
+		}
+		
+		if (flushed != null) {
+			offerToDepot(flushed);
+		}
+		if (!pushed) {
+			invalidateEntry(entry);
+		}
+		return pushed;
+	}
+
+	/*
+	 * Drain the magazine of the current thread first, and then the depot.
+	 * */
+	@Override
+	public int drainTo(Collection<? super PoolEntry<T>> collection, int maxEntries) 
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		
+		Magazine<T> magazine = localMagazine.get();
+		int drained = 0;
+		magazine.lock.lock();
+		try {
+			while (drained < maxEntries) {
+				PoolEntry<T> entry = magazine.pop();
+				if (entry == null) break;
+				
+				collection.add(entry);
+				drained++;
+			}
+			if (magazine.spareCredits() > batchSize) {
+				releaseSpareCredits(magazine);
+			}
+		} finally {
+			magazine.lock.unlock();
+		}
+		
+		if (drained < maxEntries) {
+			drained += depot.drainTo(collection, maxEntries - drained);
+		}
+		return drained;
+	}
+
+	/*
+	 * The magazines of all threads are flushed first, so that their entries are also evicted.
+	 * */
+	@Override
+	public int evictTo(Collection<? super PoolEntry<T>> collection, long returnedBefore, int maxEntries)
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		
+		flushMagazines();
+		return depot.evictTo(collection, returnedBefore, maxEntries);
+	}
+	
+	/*
+	 * The entry is restored to the depot, not to the magazine of the maintenance thread.
+	 * Its credit is left in the depot credits by evictTo.
+	 * */
+	@Override
+	public boolean restore(PoolEntry<T> entry) throws NullPointerException {
+		if (entry == null) throw new NullPointerException("entry is null.");
+		if (isClosed) {
+			invalidateEntry(entry);
+			return false;
+		}
+		return depot.restore(entry);
+	}
+	
+	@Override
+	public int getIdleEntriesCount() {
+		return getCachedEntriesCount() + depot.getIdleEntriesCount();
+	}
+
+	/*
+	 * Remove the coldest entries of the magazine with their credits.
+	 * Called with the lock of the magazine, and the entries are offered to the depot after it is released.
+	 * */
+	private List<PoolEntry<T>> takeColdest(Magazine<T> magazine, int count) {
+		int taken = Math.min(count, magazine.size);
+		List<PoolEntry<T>> entries = new ArrayList<PoolEntry<T>>(taken);
+		for (int i = 0; i < taken; i++) {
+			entries.add(magazine.entries[i]);
+		}
+		magazine.removeBottom(taken);
+		magazine.credits -= taken;
+		return entries;
+	}
+	
+	/*
+	 * Move the entries taken from a magazine to the depot with their credits.
+	 * The depot may invalidate the rejected entries, so this is called without the lock of the magazine.
+	 * */
+	private void offerToDepot(List<PoolEntry<T>> entries) {
+		int flushed = 0;
+		int rejected = 0;
+		for (PoolEntry<T> entry : entries) {
+			if (depot.offer(entry)) {
+				flushed++;
+			} else {
+				rejected++;
+			}
+		}
+
+		if (flushed > 0) depotCredits.addAndGet(flushed);
+		if (rejected > 0) idleCredits.addAndGet(rejected);
+	}
+
+	@Override
+	public void resize(int maxIdleEntries) {
+		if (maxIdleEntries < 1) throw new IllegalArgumentException("maxIdleEntries must be positive.");
+		
+		idleCredits.addAndGet(maxIdleEntries - capacity.getAndSet(maxIdleEntries));
+		if (depot instanceof ResizableIdleEntriesQueue) {
+			((ResizableIdleEntriesQueue<T>) depot).resize(maxIdleEntries);
+		}
+	}
+	
+	/*
+	 * The entries of all magazines are flushed to the depot, where the close of the pool invalidates them.
+	 * The flag is read under the lock of each magazine, so no entry is pushed after its magazine is flushed.
+	 * */
+	@Override
+	public void close() {
+		isClosed = true;
+		flushMagazines();
+		if (depot instanceof CloseableIdleEntriesQueue) {
+			((CloseableIdleEntriesQueue<T>) depot).close();
+		}
+	}
+
+	private void releaseSpareCredits(Magazine<T> magazine) {
+		int spare = magazine.spareCredits();
+		magazine.credits -= spare;
+		idleCredits.addAndGet(spare);
+	}
+
+	private int takeCredits(AtomicInteger credits, int wanted) {
+		while (true) {
+			int current = credits.get();
+			if (current <= 0) return 0;
+
+			int taken = Math.min(current, wanted);
+			if (credits.compareAndSet(current, current - taken)) {
+				return taken;
+			}
+		}
+	}
+
+	/*
+	 * Flush the magazines of terminated threads to the depot.
+	 * Return true, if any entry was flushed.
+	 * */
+	boolean sweepTerminatedMagazines() {
+		long now = System.nanoTime();
+		if (now - lastSweptAt < SWEEP_INTERVAL_NANOS) return false;
+		if (!isSweeping.compareAndSet(false, true)) return false;
+
+		boolean flushed = false;
+		try {
+			lastSweptAt = now;
+
+			Iterator<Magazine<T>> it = magazines.iterator();
+			while (it.hasNext()) {
+				Magazine<T> magazine = it.next();
+				if (magazine.owner.isAlive()) continue;
+
+				it.remove();
+				if (flushAll(magazine) > 0) {
+					flushed = true;
+				}
+			}
+		} finally {
+			isSweeping.set(false);
+		}
+		return flushed;
+	}
+	
+	/**
+	 * Move the entries cached in the magazines of all threads to the depot, 
+	 * so that the maintenance of the pool, such as trim, eviction and close, reaches them.
+	 * The magazines of the terminated threads are removed.
+	 * 
+	 * @return the number of the entries moved
+	 * */
+	public int flushMagazines() {
+		int flushed = 0;
+		Iterator<Magazine<T>> it = magazines.iterator();
+		while (it.hasNext()) {
+			Magazine<T> magazine = it.next();
+			if (!magazine.owner.isAlive()) {
+				it.remove();
+			}
+			flushed += flushAll(magazine);
+		}
+		return flushed;
+	}
+	
+	private int flushAll(Magazine<T> magazine) {
+		List<PoolEntry<T>> flushed;
+		magazine.lock.lock();
+		try {
+			flushed = takeColdest(magazine, magazine.size);
+			releaseSpareCredits(magazine);
+		} finally {
+			magazine.lock.unlock();
+		}
+		
+		offerToDepot(flushed);
+		return flushed.size();
+	}
+
+	private void invalidateEntry(PoolEntry<T> entry) {
+		try {
+			entry.invalidate();
+		} catch (Exception e) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(),
+					"Invalidate PoolEntry throws Exception.", e);
+		}
+	}
+
+	/*
+	 * The count of the entries cached in the magazines, which are not in the depot.
+	 * */
+	public int getCachedEntriesCount() {
+		int count = 0;
+		for (Magazine<T> magazine : magazines) {
+			magazine.lock.lock();
+			try {
+				count += magazine.size;
+			} finally {
+				magazine.lock.unlock();
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * A stack of idle entries owned by a single thread.
+	 * It is used with its lock, because the maintenance flushes it from another thread.
+	 * The lock is not a monitor, so that a virtual thread holding it does not pin its carrier.
+	 * */
+	private static class Magazine<T> {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Thread owner;
+		private final PoolEntry<T>[] entries;
+		private int size;
+		private int credits;
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private Magazine(Thread owner, int capacity) {
+			this.owner = owner;
+			this.entries = new PoolEntry[capacity];
+		}
+
+		private void push(PoolEntry<T> entry) {
+			entries[size++] = entry;
+		}
+
+		private PoolEntry<T> pop() {
+			if (size == 0) return null;
+
+			PoolEntry<T> entry = entries[--size];
+			entries[size] = null;
+			return entry;
+		}
+
+		private void removeBottom(int count) {
+			size -= count;
+			System.arraycopy(entries, count, entries, 0, size);
+			Arrays.fill(entries, size, size + count, null);
+		}
+
+		private int spareCredits() {
+			return credits - size;
+		}
+	}
+}
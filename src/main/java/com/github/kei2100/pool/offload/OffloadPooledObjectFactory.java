@@ -0,0 +1,92 @@
+package com.github.kei2100.pool.offload;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.PooledObjectFactory;
+import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/**
+ * {@link PooledObjectFactory} that runs {@link PooledObjectFactory#createInstance()} 
+ * of the delegate by {@link OffloadThread}.
+ * <p>
+ * If the waiting thread is interrupted, the instance created after that 
+ * is invalidated by the validator.
+ * </p>
+ * 
+ * @param <T> the type of pooled object
+ * */
+public class OffloadPooledObjectFactory<T> implements PooledObjectFactory<T> {
+	private static final Logger logger = LoggerFactory.getLogger(OffloadPooledObjectFactory.class);
+
+	private final PooledObjectFactory<T> delegate;
+	private final PooledObjectValidator<T> validator;
+	private final OffloadThread offloadThread;
+
+	public OffloadPooledObjectFactory(
+			PooledObjectFactory<T> delegate, PooledObjectValidator<T> validator, OffloadThread offloadThread) {
+
+		this.delegate = delegate;
+		this.validator = validator;
+		this.offloadThread = offloadThread;
+	}
+
+	@Override
+	public T createInstance() throws Exception {
+		CreateTask task = new CreateTask();
+		Future<T> future = offloadThread.submit(task);
+
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw OffloadThread.unwrap(e);
+		} catch (InterruptedException e) {
+			if (!task.abandon()) {
+				// already created
+				invalidate(future.get());
+			}
+			future.cancel(false);
+			throw e;
+		}
+	}
+
+	private void invalidate(T instance) {
+		try {
+			validator.invalidate(instance);
+		} catch (Exception e) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(),
+					"Invalidate abandoned instance throws Exception.", e);
+		}
+	}
+
+	private class CreateTask implements Callable<T> {
+		private static final int RUNNING = 0;
+		private static final int CREATED = 1;
+		private static final int ABANDONED = 2;
+
+		private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+		@Override
+		public T call() throws Exception {
+			if (state.get() == ABANDONED) return null;
+
+			T instance = delegate.createInstance();
+			if (!state.compareAndSet(RUNNING, CREATED)) {
+				invalidate(instance);
+				return null;
+			}
+			return instance;
+		}
+
+		private boolean abandon() {
+			return state.compareAndSet(RUNNING, ABANDONED);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.github.kei2100.pool.offload;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.github.kei2100.pool.PooledObjectValidator;
+
+
+/**
+ * {@link PooledObjectValidator} that runs {@link PooledObjectValidator#validate(Object)}
+ * of the delegate by {@link OffloadThread}.
+ * <p>
+ * {@link #invalidate(Object)} is run by the calling thread, 
+ * because it is mostly called by the background threads.
+ * </p>
+ * 
+ * @param <T> the type of pooled object
+ * */
+public class OffloadPooledObjectValidator<T> implements PooledObjectValidator<T> {
+
+	private final PooledObjectValidator<T> delegate;
+	private final OffloadThread offloadThread;
+
+	public OffloadPooledObjectValidator(PooledObjectValidator<T> delegate, OffloadThread offloadThread) {
+		this.delegate = delegate;
+		this.offloadThread = offloadThread;
+	}
+
+	@Override
+	public boolean validate(final T pooledObject) throws Exception {
+		Future<Boolean> future = offloadThread.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return delegate.validate(pooledObject);
+			}
+		});
+
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw OffloadThread.unwrap(e);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void invalidate(T pooledObject) throws Exception {
+		delegate.invalidate(pooledObject);
+	}
+}
@@ -0,0 +1,64 @@
+package com.github.kei2100.pool.offload;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.util.NameableDaemonThreadFactory;
+
+
+/**
+ * Platform threads that run the blocking work of the pooled object
+ * instead of the borrowing threads.
+ * <p>
+ * The number of threads is bounded by {@link PoolConfig#getOffloadThreads()}.
+ * The borrowing thread waits for the result with {@link Future#get()},
+ * which parks a virtual thread without pinning its carrier thread.
+ * </p>
+ * */
+public class OffloadThread {
+
+	private final ExecutorService taskExecutor;
+
+	public OffloadThread(PoolConfig config) {
+		taskExecutor =
+				Executors.newFixedThreadPool(
+						config.getOffloadThreads(),
+						new NameableDaemonThreadFactory(OffloadThread.class.getSimpleName()));
+	}
+
+	<V> Future<V> submit(Callable<V> task) {
+		try {
+			return taskExecutor.submit(task);
+		} catch (RejectedExecutionException e) {
+			// shut down with the pool, the entries returned late are invalidated by the calling thread
+			FutureTask<V> future = new FutureTask<V>(task);
+			future.run();
+			return future;
+		}
+	}
+	
+	/**
+	 * Stop the threads after the submitted tasks are completed.
+	 * The tasks submitted after this method run on the calling thread.
+	 * */
+	public void shutdown() {
+		taskExecutor.shutdown();
+	}
+
+	static Exception unwrap(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof Exception) {
+			return (Exception) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return e;
+	}
+}
@@ -0,0 +1,154 @@
+package com.github.kei2100.pool.slot;
+
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryState;
+import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.util.PoolClock;
+
+
+/**
+ * {@link PoolEntry} whose state is kept in a slot of {@link SlotTable}.
+ * <p>
+ * The entry is its own {@link PoolEntryState}, which reads and writes the slot,
+ * so that an entry is a single object besides the pooled object.
+ * After the slot is released, the entry reads as invalid and retired.
+ * </p>
+ *
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class SlotPoolEntry<T> extends PoolEntryState implements PoolEntry<T> {
+
+	private final SlotTable<T> table;
+	private final int slot;
+	private final int generation;
+
+	private final T object;
+	private final PooledObjectValidator<T> validator;
+	private final PoolClock clock;
+
+	SlotPoolEntry(SlotTable<T> table, int slot, long createdAt,
+			T object, PooledObjectValidator<T> validator, PoolClock clock) {
+
+		super(createdAt);
+		this.table = table;
+		this.slot = slot;
+		this.generation = table.generation(slot);
+
+		this.object = object;
+		this.validator = validator;
+		this.clock = clock;
+	}
+
+	/**
+	 * Get the index of the slot in {@link SlotTable}.
+	 * @return slot
+	 * */
+	public int getSlot() {
+		return slot;
+	}
+
+	@Override
+	public T getObject() {
+		return object;
+	}
+
+	@Override
+	public PoolEntryState getState() {
+		return this;
+	}
+
+	@Override
+	public boolean validate() throws Exception {
+		if (!isValid()) {
+			// already invalidated
+			return false;
+		}
+
+		if (!validator.validate(object)) {
+			table.invalidate(slot, generation);
+			return false;
+		}
+		// return true, if entry is not invalidated while validating
+		if (isValid()) {
+			setLastValidatedAt(clock.currentTimeMillis());
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void invalidate() throws Exception {
+		// invalidate only once
+		if (table.invalidate(slot, generation)) {
+			validator.invalidate(object);
+		}
+	}
+
+	@Override
+	public long getLastValidatedAt() {
+		return table.getLastValidatedAt(slot);
+	}
+
+	@Override
+	public void setLastValidatedAt(long lastValidatedAt) {
+		table.setLastValidatedAt(slot, generation, lastValidatedAt);
+	}
+
+	@Override
+	public long getLastReturnedAt() {
+		return table.getLastReturnedAt(slot);
+	}
+
+	@Override
+	public void setLastReturnedAt(long lastReturnedAt) {
+		table.setLastReturnedAt(slot, generation, lastReturnedAt);
+	}
+
+	@Override
+	public long getLastBorrowedAt() {
+		return table.getLastBorrowedAt(slot);
+	}
+
+	@Override
+	public void setLastBorrowedAt(long lastBorrowedAt) {
+		table.setLastBorrowedAt(slot, generation, lastBorrowedAt);
+	}
+
+	@Override
+	public boolean isValid() {
+		return table.isValid(slot, generation);
+	}
+
+	@Override
+	public boolean compareAndSetValid(boolean expect, boolean update) {
+		if (expect == update) return isValid() == expect;
+		// the released slot can not be made valid again
+		if (update) return false;
+
+		return table.invalidate(slot, generation);
+	}
+
+	@Override
+	public boolean markBorrowed() {
+		return table.markBorrowed(slot, generation);
+	}
+
+	@Override
+	public boolean markReturned() {
+		return table.markReturned(slot, generation);
+	}
+
+	@Override
+	public boolean retire() {
+		return table.retire(slot, generation);
+	}
+
+	@Override
+	public boolean isRetired() {
+		return table.isRetired(slot, generation);
+	}
+
+	boolean offerTo(SlotTable<T> table) {
+		return (this.table == table) && table.pushIdle(slot, generation);
+	}
+}
@@ -0,0 +1,414 @@
+package com.github.kei2100.pool.slot;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.kei2100.pool.PoolEntry;
+
+
+/**
+ * A fixed number of slots holding the state of {@link SlotPoolEntry} in primitive arrays.
+ * <p>
+ * Each entry is identified by the index of its slot.
+ * The timestamps are kept in {@link AtomicLongArray}s,
+ * and the valid flag, the listed flag and the lifecycle are packed in an int of {@link AtomicIntegerArray},
+ * so that a large pool does not hold several atomic objects per entry.
+ * </p>
+ * <p>
+ * The unused slots and the idle slots are kept in two index-based stacks sharing one link array,
+ * a slot is in at most one of them.
+ * A slot invalidated while it is in the idle stack is no longer counted as idle,
+ * and is released when it is popped, or swept when no unused slot is left.
+ * The upper bits of the state are the generation of the slot, incremented when the slot is released.
+ * An entry remembers the generation of its slot,
+ * so that a stale entry reads as invalid and does not change the state of the reused slot.
+ * </p>
+ *
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class SlotTable<T> {
+
+	private static final int VALID = 1;
+	// the slot is in the idle stack
+	private static final int LISTED = 1 << 1;
+
+	private static final int LIFECYCLE_SHIFT = 2;
+	private static final int LIFECYCLE_MASK = 3 << LIFECYCLE_SHIFT;
+	private static final int IDLE = 0;
+	private static final int BORROWED = 1;
+	// retired on the next return
+	private static final int RETIRING = 2;
+	private static final int RETIRED = 3;
+
+	private static final int GENERATION_SHIFT = 4;
+	private static final int FLAGS_MASK = (1 << GENERATION_SHIFT) - 1;
+
+	private final int capacity;
+
+	private final AtomicLongArray lastValidatedAt;
+	private final AtomicLongArray lastReturnedAt;
+	private final AtomicLongArray lastBorrowedAt;
+	private final AtomicIntegerArray states;
+	private final AtomicReferenceArray<PoolEntry<T>> entries;
+
+	private final AtomicIntegerArray links;
+	private final IndexStack freeSlots;
+	private final IndexStack idleSlots;
+	private final AtomicInteger idleSlotsCount = new AtomicInteger(0);
+	// the slots invalidated while they are in the idle stack
+	private final AtomicInteger invalidListedSlotsCount = new AtomicInteger(0);
+	
+	// the slots popped by the sweep, reused under the sweep lock
+	private final ReentrantLock sweepLock = new ReentrantLock();
+	private final int[] sweptSlots;
+
+	/**
+	 * Constructor
+	 * @param capacity the number of the slots, which is the maximum number of the live entries
+	 * */
+	public SlotTable(int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be positive.");
+
+		this.capacity = capacity;
+		lastValidatedAt = new AtomicLongArray(capacity);
+		lastReturnedAt = new AtomicLongArray(capacity);
+		lastBorrowedAt = new AtomicLongArray(capacity);
+		states = new AtomicIntegerArray(capacity);
+		entries = new AtomicReferenceArray<PoolEntry<T>>(capacity);
+
+		links = new AtomicIntegerArray(capacity);
+		sweptSlots = new int[capacity];
+		freeSlots = new IndexStack(links);
+		idleSlots = new IndexStack(links);
+		// the slots are taken from 0
+		for (int slot = capacity - 1; slot >= 0; slot--) {
+			freeSlots.push(slot);
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/*
+	 * Take an unused slot and initialize it valid and idle.
+	 * Return -1 if all slots are used.
+	 * */
+	int allocate(long createdAt) {
+		int slot = freeSlots.pop();
+		if (slot < 0 && invalidListedSlotsCount.get() > 0) {
+			sweepIdle(null, Long.MIN_VALUE, 0);
+			slot = freeSlots.pop();
+		}
+		if (slot < 0) return -1;
+
+		lastValidatedAt.set(slot, createdAt);
+		lastReturnedAt.set(slot, createdAt);
+		lastBorrowedAt.set(slot, 0);
+		// keep the generation incremented by the release
+		states.set(slot, (states.get(slot) & ~FLAGS_MASK) | VALID | (IDLE << LIFECYCLE_SHIFT));
+		return slot;
+	}
+
+	/*
+	 * Bind the entry to the slot, so that the idle stack can return it.
+	 * */
+	void bind(int slot, PoolEntry<T> entry) {
+		entries.set(slot, entry);
+	}
+
+	/*
+	 * Return the slot to the unused slots, and invalidate the entries which still refer to it.
+	 * */
+	void release(int slot) {
+		entries.set(slot, null);
+		while (true) {
+			int state = states.get(slot);
+			int nextGeneration = (state >>> GENERATION_SHIFT) + 1;
+			if (states.compareAndSet(slot, state, nextGeneration << GENERATION_SHIFT)) break;
+		}
+		freeSlots.push(slot);
+	}
+
+	int generation(int slot) {
+		return states.get(slot) >>> GENERATION_SHIFT;
+	}
+
+	private boolean isCurrent(int state, int generation) {
+		return (state >>> GENERATION_SHIFT) == generation;
+	}
+
+	long getLastValidatedAt(int slot) {
+		return lastValidatedAt.get(slot);
+	}
+
+	void setLastValidatedAt(int slot, int generation, long time) {
+		// best effort, a stale entry does not reach here unless the slot is reused while it is validated
+		if (generation(slot) == generation) lastValidatedAt.set(slot, time);
+	}
+
+	long getLastReturnedAt(int slot) {
+		return lastReturnedAt.get(slot);
+	}
+
+	void setLastReturnedAt(int slot, int generation, long time) {
+		if (generation(slot) == generation) lastReturnedAt.set(slot, time);
+	}
+
+	long getLastBorrowedAt(int slot) {
+		return lastBorrowedAt.get(slot);
+	}
+
+	void setLastBorrowedAt(int slot, int generation, long time) {
+		if (generation(slot) == generation) lastBorrowedAt.set(slot, time);
+	}
+
+	boolean isValid(int slot, int generation) {
+		int state = states.get(slot);
+		return isCurrent(state, generation) && (state & VALID) != 0;
+	}
+
+	/*
+	 * Clear the valid flag, and release the slot unless it is in the idle stack.
+	 * A listed slot stops counting as idle at once, and is released by the pop or the sweep which takes it.
+	 * Return false if the slot is already invalid or released.
+	 * */
+	boolean invalidate(int slot, int generation) {
+		while (true) {
+			int state = states.get(slot);
+			if (!isCurrent(state, generation) || (state & VALID) == 0) return false;
+
+			if (states.compareAndSet(slot, state, state & ~VALID)) {
+				if ((state & LISTED) == 0) {
+					release(slot);
+				} else {
+					idleSlotsCount.decrementAndGet();
+					invalidListedSlotsCount.incrementAndGet();
+				}
+				return true;
+			}
+		}
+	}
+
+	boolean markBorrowed(int slot, int generation) {
+		while (true) {
+			int state = states.get(slot);
+			if (!isCurrent(state, generation) || lifecycle(state) >= RETIRING) return false;
+			if (states.compareAndSet(slot, state, withLifecycle(state, BORROWED))) return true;
+		}
+	}
+
+	boolean markReturned(int slot, int generation) {
+		while (true) {
+			int state = states.get(slot);
+			if (!isCurrent(state, generation)) return false;
+
+			if (lifecycle(state) >= RETIRING) {
+				if (states.compareAndSet(slot, state, withLifecycle(state, RETIRED))) return false;
+			} else if (states.compareAndSet(slot, state, withLifecycle(state, IDLE))) {
+				return true;
+			}
+		}
+	}
+
+	boolean retire(int slot, int generation) {
+		while (true) {
+			int state = states.get(slot);
+			if (!isCurrent(state, generation)) return false;
+
+			int lifecycle = lifecycle(state);
+			if (lifecycle == IDLE) {
+				if (states.compareAndSet(slot, state, withLifecycle(state, RETIRED))) return true;
+			} else if (lifecycle == BORROWED) {
+				if (states.compareAndSet(slot, state, withLifecycle(state, RETIRING))) return false;
+			} else {
+				return false;
+			}
+		}
+	}
+
+	boolean isRetired(int slot, int generation) {
+		int state = states.get(slot);
+		// the released slot is retired for the stale entry
+		return !isCurrent(state, generation) || lifecycle(state) >= RETIRING;
+	}
+
+	/*
+	 * Count a slot to be pushed on the idle stack, unless the idle slots reach the limit.
+	 * The slots invalidated while they are listed are not counted.
+	 * */
+	boolean reserveIdle(int maxIdleSlots) {
+		if (idleSlotsCount.incrementAndGet() > maxIdleSlots) {
+			idleSlotsCount.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	void cancelIdle() {
+		idleSlotsCount.decrementAndGet();
+	}
+
+	/*
+	 * Push the slot on the idle stack, if it is valid and not listed yet.
+	 * The slot has to be reserved by reserveIdle.
+	 * */
+	boolean pushIdle(int slot, int generation) {
+		while (true) {
+			int state = states.get(slot);
+			if (!isCurrent(state, generation)) return false;
+			if ((state & VALID) == 0 || (state & LISTED) != 0) return false;
+
+			if (states.compareAndSet(slot, state, state | LISTED)) break;
+		}
+		idleSlots.push(slot);
+		return true;
+	}
+
+	/*
+	 * Pop a slot from the idle stack, and return its entry.
+	 * The slots invalidated while they are listed are released here.
+	 * Return null if the idle stack is empty.
+	 * */
+	PoolEntry<T> popIdle() {
+		while (true) {
+			int slot = idleSlots.pop();
+			if (slot < 0) return null;
+
+			int state;
+			do {
+				state = states.get(slot);
+			} while (!states.compareAndSet(slot, state, state & ~LISTED));
+
+			if ((state & VALID) != 0) {
+				idleSlotsCount.decrementAndGet();
+				return entries.get(slot);
+			}
+			releaseInvalidListed(slot);
+		}
+	}
+
+	/*
+	 * Release the invalidated slots under the top of the idle stack, 
+	 * and take out at most maxEntries valid slots returned at or before returnedBefore, from the bottom.
+	 * The stack is popped entirely and the other valid slots are pushed back in the same order,
+	 * so a concurrent poll may find the stack empty for the moment.
+	 * The popped slots keep the listed flag, so that they are not pushed again meanwhile.
+	 * If nothing is evicted, the stack is popped only until the invalidated slots are found.
+	 * Return the number of the entries added to the evicted.
+	 * */
+	int sweepIdle(Collection<? super PoolEntry<T>> evicted, long returnedBefore, int maxEntries) {
+		sweepLock.lock();
+		try {
+			int[] popped = sweptSlots;
+			int count = 0;
+			int invalidCount = 0;
+			int invalidTarget = invalidListedSlotsCount.get();
+			while (count < capacity) {
+				if (maxEntries == 0 && invalidCount >= invalidTarget) break;
+				
+				int slot = idleSlots.pop();
+				if (slot < 0) break;
+				popped[count++] = slot;
+				if ((states.get(slot) & VALID) == 0) invalidCount++;
+			}
+
+			int evictedCount = 0;
+			for (int i = count - 1; i >= 0; i--) {
+				int slot = popped[i];
+				// read before unlisted, the slot may be released after that
+				PoolEntry<T> entry = entries.get(slot);
+				
+				if (evictedCount < maxEntries && lastReturnedAt.get(slot) <= returnedBefore && unlistValid(slot)) {
+					idleSlotsCount.decrementAndGet();
+					evicted.add(entry);
+					evictedCount++;
+				} else if ((states.get(slot) & VALID) != 0) {
+					// invalidated after the check, the slot is released by the next pop or sweep
+					idleSlots.push(slot);
+				} else {
+					releaseInvalidListed(slot);
+				}
+			}
+			return evictedCount;
+		} finally {
+			sweepLock.unlock();
+		}
+	}
+	
+	private boolean unlistValid(int slot) {
+		while (true) {
+			int state = states.get(slot);
+			if ((state & VALID) == 0) return false;
+			if (states.compareAndSet(slot, state, state & ~LISTED)) return true;
+		}
+	}
+
+	private void releaseInvalidListed(int slot) {
+		invalidListedSlotsCount.decrementAndGet();
+		release(slot);
+	}
+
+	private static int lifecycle(int state) {
+		return (state & LIFECYCLE_MASK) >>> LIFECYCLE_SHIFT;
+	}
+
+	private static int withLifecycle(int state, int lifecycle) {
+		return (state & ~LIFECYCLE_MASK) | (lifecycle << LIFECYCLE_SHIFT);
+	}
+
+	int getIdleSlotsCount() {
+		return idleSlotsCount.get();
+	}
+
+	/*
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getUsedSlotsCount() {
+		int count = 0;
+		for (int slot = 0; slot < capacity; slot++) {
+			if (entries.get(slot) != null) count++;
+		}
+		return count;
+	}
+
+	/*
+	 * A lock-free stack of slot indexes (Treiber stack).
+	 * The links hold index + 1 of the next slot, and 0 for the bottom.
+	 * The head holds a stamp in the upper 32 bits, which is incremented at each change to avoid ABA.
+	 * */
+	private static class IndexStack {
+		private final AtomicIntegerArray links;
+		private final AtomicLong head = new AtomicLong(0);
+
+		private IndexStack(AtomicIntegerArray links) {
+			this.links = links;
+		}
+
+		private void push(int slot) {
+			while (true) {
+				long current = head.get();
+				links.set(slot, (int) current);
+				long updated = (((current >>> 32) + 1) << 32) | (slot + 1);
+				if (head.compareAndSet(current, updated)) return;
+			}
+		}
+
+		private int pop() {
+			while (true) {
+				long current = head.get();
+				int top = (int) current;
+				if (top == 0) return -1;
+
+				int next = links.get(top - 1);
+				long updated = (((current >>> 32) + 1) << 32) | (next & 0xffffffffL);
+				if (head.compareAndSet(current, updated)) return top - 1;
+			}
+		}
+	}
+}
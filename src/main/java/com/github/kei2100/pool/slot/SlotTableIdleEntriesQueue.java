@@ -0,0 +1,113 @@
+package com.github.kei2100.pool.slot;
+
+import java.util.Collection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/**
+ * {@link IdleEntriesQueue} of the entries created by {@link SlotTablePoolEntryFactory}.
+ * <p>
+ * The idle entries are linked by the indexes of their slots in {@link SlotTable},
+ * so that offer and poll do not allocate a node.
+ * The queue is always LIFO, {@link PoolConfig#getIdleEntriesOrder()} is ignored.
+ * An entry invalidated while it is idle stays in the queue, and its slot is released when it is polled,
+ * or when a creation finds no unused slot.
+ * </p>
+ *
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class SlotTableIdleEntriesQueue<T> implements IdleEntriesQueue<T> {
+	private static final Logger logger = LoggerFactory.getLogger(SlotTableIdleEntriesQueue.class);
+
+	private final PoolConfig config;
+	private final SlotTable<T> table;
+
+	public SlotTableIdleEntriesQueue(PoolConfig config, SlotTable<T> table) {
+		this.config = config;
+		this.table = table;
+	}
+
+	@Override
+	public PoolEntry<T> poll() {
+		return table.popIdle();
+	}
+
+	@Override
+	public boolean offer(PoolEntry<T> entry) throws NullPointerException {
+		if (entry == null) throw new NullPointerException("entry is null.");
+		if (!(entry instanceof SlotPoolEntry)) {
+			throw new IllegalArgumentException("entry is not created by SlotTablePoolEntryFactory.");
+		}
+		if (!entry.getState().isValid()) return false;
+
+		// bounded by maxIdleEntries, which may be reconfigured
+		if (!table.reserveIdle(config.getMaxIdleEntries())) {
+			invalidateEntry(entry);
+			return false;
+		}
+
+		if (!((SlotPoolEntry<T>) entry).offerTo(table)) {
+			// invalidated or already offered
+			table.cancelIdle();
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int drainTo(Collection<? super PoolEntry<T>> collection, int maxEntries)
+			throws NullPointerException {
+
+		if (collection == null) throw new NullPointerException("collection is null.");
+
+		int drained = 0;
+		while (drained < maxEntries) {
+			PoolEntry<T> entry = poll();
+			if (entry == null) break;
+
+			collection.add(entry);
+			drained++;
+		}
+		return drained;
+	}
+
+	/*
+	 * The offer of this queue counts nothing, the entry is offered as it is.
+	 * */
+	@Override
+	public boolean restore(PoolEntry<T> entry) throws NullPointerException {
+		return offer(entry);
+	}
+
+	/*
+	 * The stack is swept, so that the least recently returned entries at the bottom are reached.
+	 * */
+	@Override
+	public int evictTo(Collection<? super PoolEntry<T>> collection, long returnedBefore, int maxEntries)
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		return table.sweepIdle(collection, returnedBefore, maxEntries);
+	}
+
+	private void invalidateEntry(PoolEntry<T> entry) {
+		try {
+			entry.invalidate();
+		} catch (Exception e) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(),
+					"Invalidate PoolEntry throws Exception.", e);
+		}
+	}
+
+	@Override
+	public int getIdleEntriesCount() {
+		return table.getIdleSlotsCount();
+	}
+}
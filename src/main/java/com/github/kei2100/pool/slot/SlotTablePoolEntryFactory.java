@@ -0,0 +1,52 @@
+package com.github.kei2100.pool.slot;
+
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryFactory;
+import com.github.kei2100.pool.PoolException;
+import com.github.kei2100.pool.PooledObjectFactory;
+import com.github.kei2100.pool.PooledObjectValidator;
+import com.github.kei2100.pool.util.PoolClock;
+
+
+/**
+ * {@link PoolEntryFactory} which creates {@link SlotPoolEntry} in a slot of {@link SlotTable}.
+ *
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class SlotTablePoolEntryFactory<T> implements PoolEntryFactory<T> {
+
+	private final SlotTable<T> table;
+	private final PooledObjectFactory<T> objectFactory;
+	private final PooledObjectValidator<T> validator;
+	private final PoolClock clock;
+
+	public SlotTablePoolEntryFactory(SlotTable<T> table,
+			PooledObjectFactory<T> objectFactory, PooledObjectValidator<T> validator, PoolClock clock) {
+
+		this.table = table;
+		this.objectFactory = objectFactory;
+		this.validator = validator;
+		this.clock = clock;
+	}
+
+	/**
+	 * @throws PoolException if all slots of {@link SlotTable} are used
+	 * */
+	@Override
+	public PoolEntry<T> createPoolEntry() throws Exception {
+		long createdAt = clock.currentTimeMillis();
+		int slot = table.allocate(createdAt);
+		if (slot < 0) throw new PoolException("all slots are used. capacity=" + table.getCapacity());
+
+		SlotPoolEntry<T> entry;
+		try {
+			T object = objectFactory.createInstance();
+			entry = new SlotPoolEntry<T>(table, slot, createdAt, object, validator, clock);
+		} catch (Exception e) {
+			table.release(slot);
+			throw e;
+		}
+		table.bind(slot, entry);
+		return entry;
+	}
+}
@@ -0,0 +1,370 @@
+package com.github.kei2100.pool.striped;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.ResizableIdleEntriesQueue;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+
+
+/**
+ * {@link IdleEntriesQueue} that splits idle entries into shards.
+ * <p>
+ * A thread is bound to a home shard by its probe hash.
+ * {@link #offer(PoolEntry)} goes to the home shard,
+ * and {@link #poll()} tries the home shard first and then steals from the neighbours.
+ * Each shard is FIFO or LIFO according to {@link PoolConfig#getIdleEntriesOrder()}.
+ * When the home shard is found locked, the thread moves to another shard,
+ * and the number of shards doubles once enough contention is observed,
+ * up to the number of available processors.
+ * </p>
+ * <p>
+ * Each shard owns a part of {@link PoolConfig#getMaxIdleEntries()} as its quota,
+ * and the quotas always add up to that value, also when it is changed by {@link #resize(int)}.
+ * So the global bound holds without a shared counter.
+ * </p>
+ *
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class StripedIdleEntriesQueue<T> implements ResizableIdleEntriesQueue<T> {
+	private static final Logger logger = LoggerFactory.getLogger(StripedIdleEntriesQueue.class);
+
+	private static final int CONTENTIONS_PER_SHARD_TO_EXPAND = 64;
+
+	private final boolean lifo;
+	private final Shard<T>[] shards;
+	private volatile int activeShards;
+
+	private final AtomicInteger contentions = new AtomicInteger(0);
+	private final AtomicBoolean isExpanding = new AtomicBoolean(false);
+
+	private final ThreadLocal<int[]> probes = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			int probe = mix((int) Thread.currentThread().getId());
+			return new int[] { (probe == 0) ? 1 : probe };
+		}
+	};
+
+	public StripedIdleEntriesQueue(PoolConfig config) {
+		this(config, Runtime.getRuntime().availableProcessors());
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	StripedIdleEntriesQueue(PoolConfig config, int parallelism) {
+		lifo = config.isLifo();
+		
+		int maxIdleEntries = config.getMaxIdleEntries();
+		int maxShards = Math.min(ceilPowerOfTwo(parallelism), Integer.highestOneBit(maxIdleEntries));
+
+		shards = new Shard[maxShards];
+		for (int i = 0; i < maxShards; i++) {
+			shards[i] = new Shard<T>();
+		}
+		shards[0].quota = maxIdleEntries;
+		activeShards = 1;
+	}
+
+	@Override
+	public PoolEntry<T> poll() {
+		int n = activeShards;
+		int home = probe() & (n - 1);
+
+		for (int i = 0; i < n; i++) {
+			Shard<T> shard = shards[(home + i) & (n - 1)];
+			if (shard.size == 0) continue;
+
+			lock(shard, (i == 0));
+			try {
+				PoolEntry<T> entry = lifo ? shard.entries.pollLast() : shard.entries.pollFirst();
+				if (entry != null) {
+					shard.size--;
+					return entry;
+				}
+			} finally {
+				shard.lock.unlock();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean offer(PoolEntry<T> entry) throws NullPointerException {
+		if (entry == null) throw new NullPointerException("entry is null.");
+		if (!entry.getState().isValid()) return false;
+
+		int n = activeShards;
+		int home = probe() & (n - 1);
+
+		for (int i = 0; i < n; i++) {
+			Shard<T> shard = shards[(home + i) & (n - 1)];
+			if (shard.size >= shard.quota) continue;
+
+			lock(shard, (i == 0));
+			try {
+				if (shard.size < shard.quota) {
+					shard.entries.addLast(entry);
+					shard.size++;
+					return true;
+				}
+			} finally {
+				shard.lock.unlock();
+			}
+		}
+
+		// all shards are full
+		invalidateEntry(entry);
+		return false;
+	}
+
+	/*
+	 * Drain the home shard first, and then the neighbours, taking each lock once.
+	 * */
+	@Override
+	public int drainTo(Collection<? super PoolEntry<T>> collection, int maxEntries) 
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		
+		int n = activeShards;
+		int home = probe() & (n - 1);
+		int drained = 0;
+
+		for (int i = 0; i < n && drained < maxEntries; i++) {
+			Shard<T> shard = shards[(home + i) & (n - 1)];
+			if (shard.size == 0) continue;
+
+			lock(shard, (i == 0));
+			try {
+				while (drained < maxEntries) {
+					PoolEntry<T> entry = lifo ? shard.entries.pollLast() : shard.entries.pollFirst();
+					if (entry == null) break;
+					
+					shard.size--;
+					collection.add(entry);
+					drained++;
+				}
+			} finally {
+				shard.lock.unlock();
+			}
+		}
+		return drained;
+	}
+
+	/*
+	 * The offer of this queue counts nothing, the entry is offered as it is.
+	 * */
+	@Override
+	public boolean restore(PoolEntry<T> entry) throws NullPointerException {
+		return offer(entry);
+	}
+
+	/*
+	 * Evict from the shards in order, the least recently returned first in each shard.
+	 * */
+	@Override
+	public int evictTo(Collection<? super PoolEntry<T>> collection, long returnedBefore, int maxEntries)
+			throws NullPointerException {
+		
+		if (collection == null) throw new NullPointerException("collection is null.");
+		
+		int n = activeShards;
+		int evicted = 0;
+		for (int i = 0; i < n && evicted < maxEntries; i++) {
+			Shard<T> shard = shards[i];
+			if (shard.size == 0) continue;
+			
+			shard.lock.lock();
+			try {
+				// the entries are added at the last
+				Iterator<PoolEntry<T>> it = shard.entries.iterator();
+				while (evicted < maxEntries && it.hasNext()) {
+					PoolEntry<T> entry = it.next();
+					if (entry.getState().getLastReturnedAt() > returnedBefore) continue;
+					
+					it.remove();
+					shard.size--;
+					collection.add(entry);
+					evicted++;
+				}
+			} finally {
+				shard.lock.unlock();
+			}
+		}
+		return evicted;
+	}
+
+	private void lock(Shard<T> shard, boolean isHome) {
+		if (!isHome) {
+			shard.lock.lock();
+			return;
+		}
+		if (shard.lock.tryLock()) return;
+
+		contended();
+		shard.lock.lock();
+	}
+
+	private void contended() {
+		// move this thread to another home shard
+		int[] probe = probes.get();
+		probe[0] = advanceProbe(probe[0]);
+
+		int n = activeShards;
+		if (n == shards.length) return;
+
+		if (contentions.incrementAndGet() >= CONTENTIONS_PER_SHARD_TO_EXPAND * n) {
+			expand();
+		}
+	}
+
+	/*
+	 * Double the active shards.
+	 * Each shard gives a half of its quota and entries to its new sibling.
+	 * */
+	void expand() {
+		if (!isExpanding.compareAndSet(false, true)) return;
+
+		try {
+			int n = activeShards;
+			if (n == shards.length) return;
+
+			for (int i = 0; i < n; i++) {
+				Shard<T> shard = shards[i];
+				Shard<T> sibling = shards[i + n];
+
+				shard.lock.lock();
+				sibling.lock.lock();
+				try {
+					int givenQuota = shard.quota / 2;
+					int movedEntries = Math.min(givenQuota,
+							Math.max(shard.size - (shard.quota - givenQuota), shard.size / 2));
+
+					for (int j = 0; j < movedEntries; j++) {
+						sibling.entries.addLast(shard.entries.pollFirst());
+					}
+					shard.size -= movedEntries;
+					sibling.size += movedEntries;
+
+					shard.quota -= givenQuota;
+					sibling.quota += givenQuota;
+				} finally {
+					sibling.lock.unlock();
+					shard.lock.unlock();
+				}
+			}
+
+			contentions.set(0);
+			activeShards = n * 2;
+		} finally {
+			isExpanding.set(false);
+		}
+	}
+
+	/*
+	 * Added capacity goes to the first shard, and removed capacity is taken from the shards in order.
+	 * A shard whose quota falls below its entries rejects the offers until they are borrowed,
+	 * but the other shards accept the offers meanwhile.
+	 * So the idle entries may exceed the new capacity until the excess entries are borrowed.
+	 * */
+	@Override
+	public void resize(int maxIdleEntries) {
+		if (maxIdleEntries < 1) throw new IllegalArgumentException("maxIdleEntries must be positive.");
+		
+		// exclude expand()
+		while (!isExpanding.compareAndSet(false, true)) {
+			Thread.yield();
+		}
+		try {
+			int n = activeShards;
+			int delta = maxIdleEntries;
+			for (int i = 0; i < n; i++) {
+				delta -= shards[i].quota;
+			}
+			
+			for (int i = 0; i < n && delta != 0; i++) {
+				Shard<T> shard = shards[i];
+				shard.lock.lock();
+				try {
+					int changed = Math.max(delta, -shard.quota);
+					shard.quota += changed;
+					delta -= changed;
+				} finally {
+					shard.lock.unlock();
+				}
+			}
+		} finally {
+			isExpanding.set(false);
+		}
+	}
+
+	private int probe() {
+		return probes.get()[0];
+	}
+
+	private void invalidateEntry(PoolEntry<T> entry) {
+		try {
+			entry.invalidate();
+		} catch (Exception e) {
+			logger.warn(PoolLoggerMarkerFactory.getMarker(),
+					"Invalidate PoolEntry throws Exception.", e);
+		}
+	}
+
+	private static int mix(int h) {
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		h *= 0xc2b2ae35;
+		h ^= (h >>> 16);
+		return h;
+	}
+
+	private static int advanceProbe(int probe) {
+		// xorshift
+		probe ^= probe << 13;
+		probe ^= probe >>> 17;
+		probe ^= probe << 5;
+		return probe;
+	}
+
+	private static int ceilPowerOfTwo(int value) {
+		int highest = Integer.highestOneBit(Math.max(1, value));
+		return (highest == value) ? highest : highest << 1;
+	}
+
+	@Override
+	public int getIdleEntriesCount() {
+		int count = 0;
+		for (Shard<T> shard : shards) {
+			count += shard.size;
+		}
+		return count;
+	}
+
+	/*
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getActiveShards() {
+		return activeShards;
+	}
+
+	private static class Shard<T> {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final ArrayDeque<PoolEntry<T>> entries = new ArrayDeque<PoolEntry<T>>();
+
+		// written under the lock, read without the lock to skip empty or full shards.
+		private volatile int size;
+		private volatile int quota;
+	}
+}
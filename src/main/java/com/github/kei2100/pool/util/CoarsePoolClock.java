@@ -0,0 +1,72 @@
+package com.github.kei2100.pool.util;
+
+/**
+ * {@link PoolClock} which caches the current time, and updates it at the fixed resolution 
+ * on the shared {@link MaintenanceScheduler}.
+ * <p>
+ * {@link #currentTimeMillis()} is a volatile read, and lags behind the system time by up to the resolution,
+ * or longer while all workers of the scheduler are busy.
+ * It suits the ages and the intervals, which are far longer than the resolution.
+ * {@link #nanoTime()} reads the system time, because the deadlines of the waits need the precision.
+ * </p>
+ * */
+public class CoarsePoolClock implements PoolClock {
+	
+	private static final long DEFAULT_RESOLUTION_MILLIS = 10;
+	
+	private final MaintenanceScheduler.Registration registration;
+	
+	private volatile long currentTimeMillis = System.currentTimeMillis();
+	
+	/**
+	 * Get the clock shared by all pools in the JVM, whose resolution is {@value #DEFAULT_RESOLUTION_MILLIS} ms.
+	 * The ticks are started at the first call.
+	 * 
+	 * @return {@link CoarsePoolClock}
+	 * */
+	public static CoarsePoolClock getShared() {
+		return SharedHolder.SHARED;
+	}
+	
+	private static class SharedHolder {
+		private static final CoarsePoolClock SHARED = new CoarsePoolClock(DEFAULT_RESOLUTION_MILLIS);
+	}
+	
+	public CoarsePoolClock(long resolutionMillis) {
+		if (resolutionMillis < 1) throw new IllegalArgumentException("resolutionMillis must be positive.");
+		
+		final long delayMillis = resolutionMillis;
+		registration = 
+				MaintenanceScheduler.getShared().register(CoarsePoolClock.class.getSimpleName(), 1);
+		
+		new FixedDelayTask(registration) {
+			@Override
+			protected void runTask() {
+				currentTimeMillis = System.currentTimeMillis();
+			}
+			
+			@Override
+			protected long getDelayMillis() {
+				return delayMillis;
+			}
+		}.schedule(resolutionMillis);
+	}
+	
+	@Override
+	public long currentTimeMillis() {
+		return currentTimeMillis;
+	}
+	
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+	
+	/**
+	 * Stop updating the time. 
+	 * The shared clock must not be stopped.
+	 * */
+	public void stop() {
+		registration.cancel();
+	}
+}
@@ -0,0 +1,60 @@
+package com.github.kei2100.pool.util;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.github.kei2100.pool.util.MaintenanceScheduler.Registration;
+
+/**
+ * A task run repeatedly with a delay between the runs, 
+ * like {@link ScheduledExecutorService#scheduleWithFixedDelay(Runnable, long, long, TimeUnit)}.
+ * <p>
+ * The delay is read by {@link #getDelayMillis()} at each run, 
+ * so that it can be changed while the task is scheduled.
+ * The task keeps the schedule even if {@link #runTask()} throws an exception.
+ * </p>
+ * */
+public abstract class FixedDelayTask implements Runnable {
+	
+	private final Registration registration;
+	
+	public FixedDelayTask(Registration registration) {
+		if (registration == null) throw new NullPointerException("registration is null");
+		this.registration = registration;
+	}
+	
+	/**
+	 * Schedule the first run.
+	 * 
+	 * @param initialDelayMillis the delay of the first run
+	 * */
+	public void schedule(long initialDelayMillis) {
+		registration.schedule(this, initialDelayMillis);
+	}
+	
+	@Override
+	public final void run() {
+		try {
+			runTask();
+		} finally {
+			try {
+				registration.schedule(this, getDelayMillis());
+			} catch (RejectedExecutionException e) {
+				// the registration is cancelled
+			}
+		}
+	}
+	
+	/**
+	 * Run the task once.
+	 * */
+	protected abstract void runTask();
+	
+	/**
+	 * Get the delay between the end of a run and the start of the next.
+	 * 
+	 * @return the delay in milliseconds
+	 * */
+	protected abstract long getDelayMillis();
+}
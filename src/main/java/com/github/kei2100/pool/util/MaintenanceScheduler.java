@@ -0,0 +1,273 @@
+package com.github.kei2100.pool.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A scheduler which runs the background tasks of all pools in the JVM.
+ * <p>
+ * Each background component of a pool registers itself and gets a {@link Registration}.
+ * The due tasks of a registration are queued in the registration,
+ * and the workers take one task from each registration in turn,
+ * so that a pool with many tasks does not delay the tasks of the other pools.
+ * A registration runs at most its own maxConcurrency tasks at the same time.
+ * </p>
+ * <p>
+ * The workers are bounded by maxWorkers, and terminate after being idle for keepAliveMillis.
+ * A single timer thread waits for the delayed tasks, and terminates when no task is scheduled.
+ * </p>
+ * */
+public class MaintenanceScheduler {
+	private static final Logger logger = LoggerFactory.getLogger(MaintenanceScheduler.class);
+
+	private static final long DEFAULT_KEEP_ALIVE_MILLIS = 60 * 1000;
+
+	private static final MaintenanceScheduler SHARED =
+			new MaintenanceScheduler(
+					Math.max(2, Runtime.getRuntime().availableProcessors()), DEFAULT_KEEP_ALIVE_MILLIS);
+
+	private final int maxWorkers;
+	private final ScheduledThreadPoolExecutor timer;
+	private final ThreadPoolExecutor workers;
+
+	// the registrations which have runnable tasks, in the order of their turns
+	private final ConcurrentLinkedQueue<Registration> readyRegistrations =
+			new ConcurrentLinkedQueue<Registration>();
+	private final AtomicInteger activeWorkers = new AtomicInteger(0);
+
+	/**
+	 * Get the scheduler shared by all pools in the JVM.
+	 *
+	 * @return {@link MaintenanceScheduler}
+	 * */
+	public static MaintenanceScheduler getShared() {
+		return SHARED;
+	}
+
+	public MaintenanceScheduler(int maxWorkers, long keepAliveMillis) {
+		if (maxWorkers < 1) throw new IllegalArgumentException("maxWorkers must be positive.");
+		if (keepAliveMillis < 1) throw new IllegalArgumentException("keepAliveMillis must be positive.");
+
+		this.maxWorkers = maxWorkers;
+
+		timer = new ScheduledThreadPoolExecutor(
+				1, new NameableDaemonThreadFactory(MaintenanceScheduler.class.getSimpleName() + "Timer"));
+		timer.setKeepAliveTime(keepAliveMillis, TimeUnit.MILLISECONDS);
+		timer.allowCoreThreadTimeOut(true);
+
+		workers = new ThreadPoolExecutor(
+				maxWorkers, maxWorkers, keepAliveMillis, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new NameableDaemonThreadFactory(MaintenanceScheduler.class.getSimpleName()));
+		workers.allowCoreThreadTimeOut(true);
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				timer.shutdownNow();
+				workers.shutdownNow();
+			}
+		}));
+	}
+
+	/**
+	 * Register a background component.
+	 *
+	 * @param name the name used in the log
+	 * @param maxConcurrency the maximum number of the tasks of the registration run at the same time
+	 * @return {@link Registration}
+	 * */
+	public Registration register(String name, int maxConcurrency) {
+		if (name == null) throw new NullPointerException("name is null");
+		if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be positive.");
+
+		return new Registration(name, maxConcurrency);
+	}
+
+	private void startWorkerIfNeed() {
+		while (true) {
+			int active = activeWorkers.get();
+			if (active >= maxWorkers || readyRegistrations.isEmpty()) return;
+
+			if (activeWorkers.compareAndSet(active, active + 1)) {
+				try {
+					workers.execute(new Worker());
+				} catch (RejectedExecutionException e) {
+					// shut down
+					activeWorkers.decrementAndGet();
+				}
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Run the tasks of the ready registrations in turn, until no registration is ready.
+	 * */
+	private class Worker implements Runnable {
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Registration registration = readyRegistrations.poll();
+					if (registration == null) return;
+
+					Runnable task = registration.takeTurn();
+					if (task == null) continue;
+
+					// another worker takes the next one
+					startWorkerIfNeed();
+					try {
+						task.run();
+					} catch (RuntimeException e) {
+						logger.warn(PoolLoggerMarkerFactory.getMarker(),
+								"Maintenance task of " + registration.name + " throws Exception.", e);
+					} finally {
+						registration.taskFinished();
+					}
+				}
+			} finally {
+				activeWorkers.decrementAndGet();
+				// a registration may become ready after the last poll
+				startWorkerIfNeed();
+			}
+		}
+	}
+
+	/**
+	 * The tasks of a background component.
+	 * */
+	public class Registration {
+		private final String name;
+		private final int maxConcurrency;
+
+		private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+		private final AtomicInteger runningTasks = new AtomicInteger(0);
+		private final AtomicBoolean isReady = new AtomicBoolean(false);
+		private volatile boolean isCancelled = false;
+
+		private Registration(String name, int maxConcurrency) {
+			this.name = name;
+			this.maxConcurrency = maxConcurrency;
+		}
+
+		/**
+		 * Run the task as soon as a worker takes the turn of this registration.
+		 *
+		 * @param task the task to run
+		 * @throws RejectedExecutionException if this registration is cancelled.
+		 * */
+		public void execute(Runnable task) throws RejectedExecutionException {
+			if (task == null) throw new NullPointerException("task is null");
+			if (isCancelled) throw new RejectedExecutionException(name + " is cancelled.");
+
+			tasks.add(task);
+			makeReadyIfRunnable();
+		}
+
+		/**
+		 * Run the task after the delay.
+		 *
+		 * @param task the task to run
+		 * @param delayMillis the delay
+		 * @return the future to cancel the task before it is due
+		 * @throws RejectedExecutionException if this registration is cancelled.
+		 * */
+		public ScheduledFuture<?> schedule(final Runnable task, long delayMillis) throws RejectedExecutionException {
+			if (task == null) throw new NullPointerException("task is null");
+			if (isCancelled) throw new RejectedExecutionException(name + " is cancelled.");
+
+			return timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (isCancelled) return;
+					execute(task);
+				}
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Reject the new tasks, and remove the queued tasks which have not started.
+		 * The running tasks are not interrupted, and the delayed tasks not yet due are dropped.
+		 * <p>
+		 * The removed tasks are returned, so that the owner can run them or 
+		 * release the resources held by them, such as the entries to invalidate.
+		 * </p>
+		 *
+		 * @return the queued tasks that never started
+		 * */
+		public List<Runnable> cancel() {
+			isCancelled = true;
+			
+			List<Runnable> removed = new ArrayList<Runnable>();
+			Runnable task;
+			while ((task = tasks.poll()) != null) {
+				removed.add(task);
+			}
+			return removed;
+		}
+
+		public boolean isCancelled() {
+			return isCancelled;
+		}
+
+		/*
+		 * Called by the worker which polled this registration from the ready registrations.
+		 * Return the task to run, or null if this registration has nothing to run now.
+		 * */
+		private Runnable takeTurn() {
+			Runnable task = null;
+			if (runningTasks.get() < maxConcurrency) {
+				task = tasks.poll();
+			}
+			if (task != null) {
+				runningTasks.incrementAndGet();
+			}
+
+			// keep the place at the tail, or leave the ready registrations
+			if (task != null && isRunnable()) {
+				readyRegistrations.add(this);
+			} else {
+				isReady.set(false);
+				// a task may be added or finished after the check
+				makeReadyIfRunnable();
+			}
+			return task;
+		}
+
+		private void taskFinished() {
+			runningTasks.decrementAndGet();
+			makeReadyIfRunnable();
+		}
+
+		private boolean isRunnable() {
+			return !tasks.isEmpty() && runningTasks.get() < maxConcurrency;
+		}
+
+		private void makeReadyIfRunnable() {
+			if (isRunnable() && isReady.compareAndSet(false, true)) {
+				readyRegistrations.add(this);
+				startWorkerIfNeed();
+			}
+		}
+	}
+
+	/*
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getWorkersCount() {
+		return workers.getPoolSize();
+	}
+}
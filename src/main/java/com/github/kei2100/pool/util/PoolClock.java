@@ -0,0 +1,31 @@
+package com.github.kei2100.pool.util;
+
+/**
+ * The source of the time read by the pool.
+ * <p>
+ * {@link #currentTimeMillis()} is used for the timestamps of the entries, 
+ * which are compared with the ages and the intervals.
+ * {@link #nanoTime()} is used for the deadlines of the waits, and has to be monotonic.
+ * </p>
+ * 
+ * @see SystemPoolClock
+ * @see CoarsePoolClock
+ * */
+public interface PoolClock {
+	
+	/**
+	 * Get the current time.
+	 * 
+	 * @return the difference in milliseconds between the current time and midnight, January 1, 1970 UTC
+	 * @see System#currentTimeMillis()
+	 * */
+	long currentTimeMillis();
+	
+	/**
+	 * Get the value of a monotonic time source.
+	 * 
+	 * @return the current value in nanoseconds, only meaningful as the difference from another value
+	 * @see System#nanoTime()
+	 * */
+	long nanoTime();
+}
@@ -0,0 +1,19 @@
+package com.github.kei2100.pool.util;
+
+/**
+ * {@link PoolClock} which reads the system time at each call.
+ * */
+public enum SystemPoolClock implements PoolClock {
+	
+	INSTANCE;
+	
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+	
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+}
@@ -0,0 +1,28 @@
+package com.github.kei2100.pool.validatable;
+
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryFactory;
+
+
+/**
+ * {@link PoolEntryFactory} which schedules the expiry of the created entries on {@link AgeExpiryWheel}.
+ * 
+ * @param <T> the type of included object in {@link PoolEntry}
+ * */
+public class AgeExpiryPoolEntryFactory<T> implements PoolEntryFactory<T> {
+	
+	private final PoolEntryFactory<T> delegate;
+	private final AgeExpiryWheel<T> wheel;
+	
+	public AgeExpiryPoolEntryFactory(PoolEntryFactory<T> delegate, AgeExpiryWheel<T> wheel) {
+		this.delegate = delegate;
+		this.wheel = wheel;
+	}
+	
+	@Override
+	public PoolEntry<T> createPoolEntry() throws Exception {
+		PoolEntry<T> entry = delegate.createPoolEntry();
+		wheel.schedule(entry);
+		return entry;
+	}
+}
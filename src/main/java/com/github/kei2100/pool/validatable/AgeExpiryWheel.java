@@ -0,0 +1,201 @@
+package com.github.kei2100.pool.validatable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.ValidationConfig;
+import com.github.kei2100.pool.util.FixedDelayTask;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
+import com.github.kei2100.pool.util.PoolClock;
+import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+import com.github.kei2100.pool.util.SystemPoolClock;
+
+
+/**
+ * A hashed timer wheel which retires {@link PoolEntry} whose age exceeded {@link ValidationConfig#getMaxAgeMillis()}.
+ * <p>
+ * Each entry is put in the bucket of its expiry tick when it is created, 
+ * and the wheel visits one bucket per tick, so that the cost of a tick is the entries expiring in it.
+ * An expired idle entry is invalidated in the background, 
+ * and an expired borrowed entry is invalidated when it is returned.
+ * See {@link com.github.kei2100.pool.PoolEntryState#retire()}.
+ * </p>
+ * <p>
+ * The tick is 1/{@value #WHEEL_SIZE} of maxAgeMillis, and at least {@value #MIN_TICK_MILLIS} ms,
+ * and the entries are retired at most one tick late.
+ * </p>
+ * 
+ * @param <T> the type of included object in {@link PoolEntry}
+ * @see AgeExpiryPoolEntryFactory
+ * */
+public class AgeExpiryWheel<T> {
+	private static final Logger logger = LoggerFactory.getLogger(AgeExpiryWheel.class);
+	
+	static final int WHEEL_SIZE = 256;
+	static final long MIN_TICK_MILLIS = 10;
+	
+	private final ValidationConfig config;
+	private final PoolClock clock;
+	private final long tickMillis;
+	private final long origin;
+	private final List<ConcurrentLinkedQueue<PoolEntry<T>>> buckets;
+	
+	// updated only by the wheel task
+	private volatile long lastProcessedTick = 0;
+	
+	private AtomicBoolean isScheduled = new AtomicBoolean(false);
+	private MaintenanceScheduler.Registration registration;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param config {@link ValidationConfig}
+	 * @throws IllegalArgumentException if maxAgeMillis is unlimited.
+	 * */
+	public AgeExpiryWheel(ValidationConfig config) {
+		this(config, SystemPoolClock.INSTANCE);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param config {@link ValidationConfig}
+	 * @param clock the clock which stamps the entries
+	 * @throws IllegalArgumentException if maxAgeMillis is unlimited.
+	 * */
+	public AgeExpiryWheel(ValidationConfig config, PoolClock clock) {
+		if (config.isMaxAgeUnlimit()) throw new IllegalArgumentException("maxAgeMillis is unlimited.");
+		
+		this.config = config;
+		this.clock = clock;
+		this.tickMillis = Math.max(MIN_TICK_MILLIS, config.getMaxAgeMillis() / WHEEL_SIZE);
+		this.origin = clock.currentTimeMillis();
+		
+		buckets = new ArrayList<ConcurrentLinkedQueue<PoolEntry<T>>>(WHEEL_SIZE);
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			buckets.add(new ConcurrentLinkedQueue<PoolEntry<T>>());
+		}
+	}
+	
+	/**
+	 * Put the entry in the bucket of its expiry.
+	 * If the expiry has passed, it is retired at the next tick.
+	 * 
+	 * @param entry the created entry
+	 * */
+	public void schedule(PoolEntry<T> entry) {
+		if (entry == null) throw new NullPointerException("entry is null");
+		
+		long tick = Math.max(tickOf(expiresAt(entry)), lastProcessedTick + 1);
+		bucketOf(tick).add(entry);
+	}
+	
+	void startWheel() {
+		if (!isScheduled.compareAndSet(false, true)) {
+			throw new IllegalStateException("already scheduled");
+		}
+		
+		registration =
+				MaintenanceScheduler.getShared().register(
+						AgeExpiryWheel.class.getSimpleName(), Math.max(1, config.getTestThreads()));
+		
+		new FixedDelayTask(registration) {
+			@Override
+			protected void runTask() {
+				advance(clock.currentTimeMillis());
+			}
+			
+			@Override
+			protected long getDelayMillis() {
+				return tickMillis;
+			}
+		}.schedule(tickMillis);
+	}
+	
+	void stopWheel() {
+		if (registration != null) {
+			registration.cancel();
+		}
+	}
+	
+	/*
+	 * Visit the buckets of the ticks passed since the last run.
+	 * Called by a single thread.
+	 * */
+	void advance(long now) {
+		long nowTick = tickOf(now);
+		// a bucket is visited once even if the wheel is late for a revolution
+		long lastTick = Math.min(nowTick, lastProcessedTick + WHEEL_SIZE);
+		
+		List<PoolEntry<T>> notExpired = new ArrayList<PoolEntry<T>>();
+		for (long tick = lastProcessedTick + 1; tick <= lastTick; tick++) {
+			ConcurrentLinkedQueue<PoolEntry<T>> bucket = bucketOf(tick);
+			while (true) {
+				PoolEntry<T> entry = bucket.poll();
+				if (entry == null) break;
+				
+				if (!entry.getState().isValid()) {
+					// already invalidated
+					continue;
+				}
+				if (expiresAt(entry) > now) {
+					// expires at a later revolution
+					notExpired.add(entry);
+					continue;
+				}
+				retire(entry);
+			}
+		}
+		lastProcessedTick = nowTick;
+		
+		for (PoolEntry<T> entry : notExpired) {
+			schedule(entry);
+		}
+	}
+	
+	private void retire(final PoolEntry<T> entry) {
+		if (!entry.getState().retire()) {
+			// borrowed, and is invalidated when it is returned
+			return;
+		}
+		registration.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					entry.invalidate();
+				} catch (Exception e) {
+					logger.warn(PoolLoggerMarkerFactory.getMarker(), "Failed to invalidate pool entry.", e);
+				}
+			}
+		});
+	}
+	
+	private long expiresAt(PoolEntry<T> entry) {
+		return entry.getState().getCreatedAt() + config.getMaxAgeMillis();
+	}
+	
+	private long tickOf(long millis) {
+		return Math.max(0, millis - origin) / tickMillis;
+	}
+	
+	private ConcurrentLinkedQueue<PoolEntry<T>> bucketOf(long tick) {
+		return buckets.get((int) (tick % WHEEL_SIZE));
+	}
+	
+	/*
+	 * This method is typically used for debugging and testing purposes.
+	 * */
+	public int getScheduledEntriesCount() {
+		int count = 0;
+		for (ConcurrentLinkedQueue<PoolEntry<T>> bucket : buckets) {
+			count += bucket.size();
+		}
+		return count;
+	}
+}
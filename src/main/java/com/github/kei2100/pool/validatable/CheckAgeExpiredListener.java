@@ -7,16 +7,19 @@ import com.github.kei2100.pool.Pool;
 import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.PoolException;
 import com.github.kei2100.pool.ValidationConfig;
+import com.github.kei2100.pool.util.PoolClock;
 
 
 class CheckAgeExpiredListener<T> implements ValidatablePoolListener<T> {
 		
 	private final Pool<T> pool;
 	private final ValidationConfig config;
+	private final PoolClock clock;
 	
 	CheckAgeExpiredListener(Pool<T> pool, ValidationConfig config) {
 		this.pool = pool;
 		this.config = config;
+		this.clock = pool.getPoolConfig().getClock();
 	}
 	
 	@Override
@@ -25,8 +28,8 @@ class CheckAgeExpiredListener<T> implements ValidatablePoolListener<T> {
 		
 		if (!config.isTestOnBorrow()) return entry;
 		
-		final long methodStartedAt = System.currentTimeMillis();
-		ValidationHelper.invalidateIfAgeExpired(config, entry);
+		final long methodStartedAt = clock.nanoTime();
+		ValidationHelper.invalidateIfAgeExpired(config, entry, clock);
 		if (entry.getState().isValid()) return entry;
 		
 		do {
@@ -35,7 +38,7 @@ class CheckAgeExpiredListener<T> implements ValidatablePoolListener<T> {
 			if (entry == null) {
 				break;
 			}
-			ValidationHelper.invalidateIfAgeExpired(config, entry);
+			ValidationHelper.invalidateIfAgeExpired(config, entry, clock);
 		} while (!entry.getState().isValid());
 		
 		return entry;
@@ -48,7 +51,7 @@ class CheckAgeExpiredListener<T> implements ValidatablePoolListener<T> {
 			return pool.borrowEntry(createNew);
 		} 
 		
-		long elapsedMillisThisBlock = System.currentTimeMillis() - methodStartedAt;
+		long elapsedMillisThisBlock = TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - methodStartedAt);
 		long remainingMillis = pool.getPoolConfig().getMaxWaitMillisOnBorrow() - 
 				(elapsedMillis + elapsedMillisThisBlock);
 
@@ -62,7 +65,7 @@ class CheckAgeExpiredListener<T> implements ValidatablePoolListener<T> {
 	public PoolEntry<T> afterTryBorrowEntry(PoolEntry<T> entry, boolean createNew) throws PoolException {
 		if (!config.isTestOnBorrow()) return entry;
 		
-		ValidationHelper.invalidateIfAgeExpired(config, entry);
+		ValidationHelper.invalidateIfAgeExpired(config, entry, clock);
 		if (entry.getState().isValid()) return entry;
 		
 		do {
@@ -71,7 +74,7 @@ class CheckAgeExpiredListener<T> implements ValidatablePoolListener<T> {
 			if (entry == null) {
 				break;
 			}
-			ValidationHelper.invalidateIfAgeExpired(config, entry);
+			ValidationHelper.invalidateIfAgeExpired(config, entry, clock);
 		} while (!entry.getState().isValid());
 		
 		return entry;
@@ -81,7 +84,7 @@ class CheckAgeExpiredListener<T> implements ValidatablePoolListener<T> {
 	public PoolEntry<T> beforeReturnEntry(PoolEntry<T> entry) {
 		if (!config.isTestOnReturn()) return entry;
 		
-		ValidationHelper.invalidateIfAgeExpired(config, entry);
+		ValidationHelper.invalidateIfAgeExpired(config, entry, clock);
 		return entry;
 	}
 }
@@ -1,45 +1,87 @@
 package com.github.kei2100.pool.validatable;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import com.github.kei2100.pool.BorrowPriority;
 import com.github.kei2100.pool.Pool;
 import com.github.kei2100.pool.PoolConfig;
 import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryCallback;
+import com.github.kei2100.pool.PoolEntryFuture;
 import com.github.kei2100.pool.PoolException;
+import com.github.kei2100.pool.PoolPressure;
 import com.github.kei2100.pool.ValidationConfig;
+import com.github.kei2100.pool.WarmUpStats;
 import com.github.kei2100.pool.basic.BasicPool;
+import com.github.kei2100.pool.basic.BasicPoolEntryFuture;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
+import com.github.kei2100.pool.util.PoolClock;
+import com.github.kei2100.pool.util.PropertyValidationException;
 
 
 public class ValidatablePool<T> implements Pool<T> {
 
 	private final Pool<T> delegate;
+	private final ValidationConfig config;
 	private final List<ValidatablePoolListener<T>> listeners; 
 	private ValidatablePoolThread<T> validationThread;
+	// validates the entries borrowed asynchronously. not cancelled on close, to complete the pending borrows.
+	private final MaintenanceScheduler.Registration asyncValidation;
+	private AgeExpiryWheel<T> ageExpiryWheel;
 	
 	public ValidatablePool(Pool<T> delegate, ValidationConfig config) {
+		this(delegate, null, config);
+	}
+	
+	/**
+	 * Constructor
+	 * <p>
+	 * If ageExpiryWheel is not null, the age of the entries is not checked on borrow, 
+	 * and the wheel retires the expired entries instead. 
+	 * The entries of the delegate have to be created by {@link AgeExpiryPoolEntryFactory} with the wheel.
+	 * </p>
+	 * 
+	 * @param delegate the pool to validate
+	 * @param ageExpiryWheel {@link AgeExpiryWheel}, or null if the age is checked on borrow
+	 * @param config {@link ValidationConfig}
+	 * */
+	public ValidatablePool(Pool<T> delegate, AgeExpiryWheel<T> ageExpiryWheel, ValidationConfig config) {
 		this.delegate = delegate;
+		this.config = config;
 		
 		this.listeners = new ArrayList<ValidatablePoolListener<T>>();
-		this.listeners.add(new CheckAgeExpiredListener<T>(delegate, config));
+		if (ageExpiryWheel == null) {
+			this.listeners.add(new CheckAgeExpiredListener<T>(delegate, config));
+		}
 		this.listeners.add(new ValidatePoolEntryListener<T>(delegate, config));
+		this.asyncValidation = registerAsyncValidation(delegate);
 		
 		if (config.isTestInBackground()) {
 			validationThread = new ValidatablePoolThread<T>(delegate, config);
 			validationThread.scheduleBackgroundValidate();
 		}		
+		if (ageExpiryWheel != null) {
+			this.ageExpiryWheel = ageExpiryWheel;
+			ageExpiryWheel.startWheel();
+		}
 	}
 	
 	ValidatablePool(Pool<T> delegate, ValidationConfig config, List<ValidatablePoolListener<T>> listeners) {
 		this.delegate = delegate;
+		this.config = config;
 		
 		if (listeners == null) {
 			this.listeners = new ArrayList<ValidatablePoolListener<T>>();
 		} else {
 			this.listeners = listeners;
 		}
+		this.asyncValidation = registerAsyncValidation(delegate);
 
 		if (config.isTestInBackground()) {
 			validationThread = new ValidatablePoolThread<T>(delegate, config);
@@ -48,6 +90,12 @@ public class ValidatablePool<T> implements Pool<T> {
 	}
 	
 	
+	private static MaintenanceScheduler.Registration registerAsyncValidation(Pool<?> delegate) {
+		return MaintenanceScheduler.getShared().register(
+				ValidatablePool.class.getSimpleName() + "-asyncValidation", 
+				delegate.getPoolConfig().getAsyncCreateThreads());
+	}
+	
 	@Override
 	public PoolConfig getPoolConfig() {
 		return delegate.getPoolConfig();
@@ -78,16 +126,180 @@ public class ValidatablePool<T> implements Pool<T> {
 	public PoolEntry<T> borrowEntry(boolean createNew, long timeout, TimeUnit unit) 
 			throws InterruptedException, TimeoutException, PoolException {
 		
-		long methodStartedAt = System.currentTimeMillis();
+		return borrowEntry(BorrowPriority.NORMAL, createNew, timeout, unit);
+	}
+	
+	@Override
+	public PoolEntry<T> borrowEntry(BorrowPriority priority)
+			throws InterruptedException, TimeoutException, PoolException {
+		
+		long timeout = getPoolConfig().getMaxWaitMillisOnBorrow();
+		return borrowEntry(priority, true, timeout, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public PoolEntry<T> borrowEntry(BorrowPriority priority, boolean createNew, long timeout, TimeUnit unit) 
+			throws InterruptedException, TimeoutException, PoolException {
+		
+		PoolClock clock = getPoolConfig().getClock();
+		long methodStartedAt = clock.nanoTime();
 
-		PoolEntry<T> entry = delegate.borrowEntry(createNew, timeout, unit);
+		PoolEntry<T> entry = delegate.borrowEntry(priority, createNew, timeout, unit);
 		if (entry == null) {
 			return null;
 		}
-		long elapsedMillis = System.currentTimeMillis() - methodStartedAt;
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - methodStartedAt);
 		return afterBorrowEntry(entry, createNew, elapsedMillis);
 	}
 	
+	/*
+	 * Validate the borrowed entries in one pass, 
+	 * and borrow again as many entries as were invalid within the remaining time.
+	 * */
+	@Override
+	public List<PoolEntry<T>> borrowEntries(int entries, long timeout, TimeUnit unit)
+			throws InterruptedException, TimeoutException, PoolException {
+		
+		long deadline = getPoolConfig().getClock().nanoTime() + unit.toNanos(timeout);
+		
+		List<PoolEntry<T>> validEntries = new ArrayList<PoolEntry<T>>(entries);
+		List<PoolEntry<T>> borrowedEntries = delegate.borrowEntries(entries, timeout, unit);
+		boolean borrowSuccessful = false;
+		try {
+			while (true) {
+				List<PoolEntry<T>> invalidEntries = new ArrayList<PoolEntry<T>>();
+				for (PoolEntry<T> entry : borrowedEntries) {
+					if (validateOnBorrow(entry)) {
+						validEntries.add(entry);
+					} else {
+						invalidEntries.add(entry);
+					}
+				}
+				if (invalidEntries.isEmpty()) {
+					borrowSuccessful = true;
+					return validEntries;
+				}
+				
+				delegate.returnEntries(invalidEntries);
+				borrowedEntries = borrowEntriesAgain(invalidEntries.size(), deadline);
+			}
+		} finally {
+			if (!borrowSuccessful) {
+				// all or nothing
+				delegate.returnEntries(validEntries);
+			}
+		}
+	}
+	
+	private List<PoolEntry<T>> borrowEntriesAgain(int entries, long deadline) 
+			throws InterruptedException, TimeoutException, PoolException {
+		
+		long remaining = deadline - getPoolConfig().getClock().nanoTime();
+		if (remaining <= 0 && !getPoolConfig().isWaitUnlimitOnBorrow()) {
+			throw new TimeoutException("borrowEntries timed out.");
+		}
+		return delegate.borrowEntries(entries, remaining, TimeUnit.NANOSECONDS);
+	}
+	
+	@Override
+	public PoolEntryFuture<T> borrowEntryAsync() {
+		long timeout = getPoolConfig().getMaxWaitMillisOnBorrow();
+		return borrowEntryAsync(true, timeout, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public PoolEntryFuture<T> borrowEntryAsync(long timeout, TimeUnit unit) {
+		return borrowEntryAsync(true, timeout, unit);
+	}
+	
+	/*
+	 * The borrowed entry is validated on the maintenance workers of this pool,
+	 * not by the thread that completes the future of the delegate, which may be a borrower returning an entry.
+	 * If the entry is invalid, borrow again within the remaining time.
+	 * */
+	@Override
+	public PoolEntryFuture<T> borrowEntryAsync(boolean createNew, long timeout, TimeUnit unit) {
+		BasicPoolEntryFuture<T> result = new BasicPoolEntryFuture<T>();
+		long deadline = getPoolConfig().getClock().nanoTime() + unit.toNanos(timeout);
+		
+		borrowEntryAsync(result, createNew, deadline);
+		return result;
+	}
+	
+	private void borrowEntryAsync(
+			final BasicPoolEntryFuture<T> result, final boolean createNew, final long deadline) {
+		
+		long remaining = deadline - getPoolConfig().getClock().nanoTime();
+		if (remaining <= 0 && !getPoolConfig().isWaitUnlimitOnBorrow()) {
+			result.fail(new TimeoutException("borrowEntryAsync timed out."));
+			return;
+		}
+		
+		final PoolEntryFuture<T> future = delegate.borrowEntryAsync(createNew, remaining, TimeUnit.NANOSECONDS);
+		future.addListener(new PoolEntryFuture.Listener<T>() {
+			@Override
+			public void onComplete(PoolEntryFuture<T> completed) {
+				final PoolEntry<T> entry;
+				try {
+					entry = completed.get();
+				} catch (CancellationException e) {
+					return;
+				} catch (ExecutionException e) {
+					result.fail(e.getCause());
+					return;
+				} catch (InterruptedException e) {
+					// never happens, the future is already completed
+					Thread.currentThread().interrupt();
+					result.fail(e);
+					return;
+				}
+				
+				if (entry == null || !config.isTestOnBorrow()) {
+					completeBorrowed(result, entry, createNew, deadline);
+					return;
+				}
+				asyncValidation.execute(new Runnable() {
+					@Override
+					public void run() {
+						completeBorrowed(result, entry, createNew, deadline);
+					}
+				});
+			}
+		});
+		result.addListener(new PoolEntryFuture.Listener<T>() {
+			@Override
+			public void onComplete(PoolEntryFuture<T> completed) {
+				if (completed.isCancelled()) {
+					future.cancel(false);
+				}
+			}
+		});
+	}
+	
+	private void completeBorrowed(
+			BasicPoolEntryFuture<T> result, PoolEntry<T> entry, boolean createNew, long deadline) {
+		
+		if (entry != null && !validateOnBorrow(entry)) {
+			delegate.returnEntry(entry);
+			borrowEntryAsync(result, createNew, deadline);
+			return;
+		}
+		if (!result.complete(entry) && entry != null) {
+			// cancelled
+			delegate.returnEntry(entry);
+		}
+	}
+	
+	private boolean validateOnBorrow(PoolEntry<T> entry) {
+		if (!config.isTestOnBorrow()) return true;
+		
+		PoolClock clock = getPoolConfig().getClock();
+		ValidationHelper.invalidateIfAgeExpired(config, entry, clock);
+		if (!entry.getState().isValid()) return false;
+		
+		return ValidationHelper.validate(config, entry, clock);
+	}
+	
 	@Override
 	public PoolEntry<T> tryBorrowEntry() throws PoolException {
 		return tryBorrowEntry(true);
@@ -106,14 +318,17 @@ public class ValidatablePool<T> implements Pool<T> {
 	private PoolEntry<T> afterBorrowEntry(PoolEntry<T> entry, boolean createNew, long elapsedMillis) 
 			throws PoolException, InterruptedException, TimeoutException {
 		
-		for (ValidatablePoolListener<T> listener : listeners) {
+		// indexed, not to allocate an iterator on the borrow and return path
+		for (int i = 0; i < listeners.size(); i++) {
+			ValidatablePoolListener<T> listener = listeners.get(i);
 			entry = listener.afterBorrowEntry(entry, createNew, elapsedMillis);
 		}
 		return entry;
 	}
 
 	private PoolEntry<T> afterTryBorrowEntry(PoolEntry<T> entry, boolean createNew) throws PoolException {
-		for (ValidatablePoolListener<T> listener : listeners) {
+		for (int i = 0; i < listeners.size(); i++) {
+			ValidatablePoolListener<T> listener = listeners.get(i);
 			entry = listener.afterTryBorrowEntry(entry, createNew);
 		}
 		return entry;
@@ -130,13 +345,103 @@ public class ValidatablePool<T> implements Pool<T> {
 		}
 	}
 
+	@Override
+	public void returnEntries(Collection<PoolEntry<T>> entries) throws NullPointerException {
+		if (entries == null) throw new NullPointerException("entries is null");
+		for (PoolEntry<T> entry : entries) {
+			if (entry == null) throw new NullPointerException("entry is null");
+		}
+		
+		List<PoolEntry<T>> returning = new ArrayList<PoolEntry<T>>(entries);
+		try {
+			for (int i = 0; i < returning.size(); i++) {
+				returning.set(i, beforeReturnEntry(returning.get(i)));
+			}
+		} finally {
+			delegate.returnEntries(returning);
+		}
+	}
+
+	@Override
+	public <R> R withEntry(PoolEntryCallback<T, R> callback)
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException {
+		
+		long timeout = getPoolConfig().getMaxWaitMillisOnBorrow();
+		return withEntry(timeout, TimeUnit.MILLISECONDS, callback);
+	}
+	
+	/*
+	 * If the callback finishes normally and testOnReturn is off, 
+	 * the listeners have nothing to do before return, so the entry is returned to the delegate directly.
+	 * */
+	@Override
+	public <R> R withEntry(long timeout, TimeUnit unit, PoolEntryCallback<T, R> callback)
+			throws NullPointerException, InterruptedException, TimeoutException, PoolException {
+		
+		if (callback == null) throw new NullPointerException("callback is null");
+		
+		PoolEntry<T> entry = borrowEntry(true, timeout, unit);
+		R result;
+		try {
+			result = callback.doWithEntry(entry);
+		} catch (RuntimeException e) {
+			returnEntry(entry);
+			throw e;
+		} catch (Error e) {
+			returnEntry(entry);
+			throw e;
+		} catch (Exception e) {
+			returnEntry(entry);
+			throw new PoolException(e);
+		}
+		
+		if (config.isTestOnReturn()) {
+			returnEntry(entry);
+		} else {
+			delegate.returnEntry(entry);
+		}
+		return result;
+	}
+	
 	private PoolEntry<T> beforeReturnEntry(PoolEntry<T> entry) {
-		for (ValidatablePoolListener<T> listener : listeners) {
+		for (int i = 0; i < listeners.size(); i++) {
+			ValidatablePoolListener<T> listener = listeners.get(i);
 			entry = listener.beforeReturnEntry(entry);
 		}
 		return entry;
 	}
 	
+	@Override
+	public PoolPressure getPressure() {
+		return delegate.getPressure();
+	}
+	
+	@Override
+	public WarmUpStats getWarmUpStats() {
+		return delegate.getWarmUpStats();
+	}
+	
+	@Override
+	public void reconfigure(PoolConfig newConfig) throws NullPointerException, PropertyValidationException {
+		delegate.reconfigure(newConfig);
+	}
+	
+	@Override
+	public boolean close(long timeout, TimeUnit unit) throws NullPointerException, InterruptedException {
+		if (validationThread != null) {
+			validationThread.stopBackgroundValidate();
+		}
+		if (ageExpiryWheel != null) {
+			ageExpiryWheel.stopWheel();
+		}
+		return delegate.close(timeout, unit);
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return delegate.isClosed();
+	}
+	
 	/*
 	 * This method is typically used for debugging and testing purposes.
 	 * */
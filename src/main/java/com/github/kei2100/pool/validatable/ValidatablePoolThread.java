@@ -1,10 +1,9 @@
 package com.github.kei2100.pool.validatable;
 
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
@@ -14,7 +13,10 @@ import com.github.kei2100.pool.Pool;
 import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.PoolException;
 import com.github.kei2100.pool.ValidationConfig;
-import com.github.kei2100.pool.util.NameableDaemonThreadFactory;
+import com.github.kei2100.pool.basic.BasicPool;
+import com.github.kei2100.pool.util.FixedDelayTask;
+import com.github.kei2100.pool.util.MaintenanceScheduler;
+import com.github.kei2100.pool.util.PoolClock;
 import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
 
 
@@ -22,13 +24,16 @@ class ValidatablePoolThread<T> {
 	private static final Logger logger = LoggerFactory.getLogger(ValidatablePoolThread.class);
 	
 	private final Pool<T> pool;
+	// the idle entries of BasicPool are taken without being counted as borrowed. null if other pool.
+	private final BasicPool<T> basicPool;
 	private final ValidationConfig config;
 	
 	private AtomicBoolean isScheduled = new AtomicBoolean(false); 
-	private ScheduledExecutorService taskExecutor;	
+	private MaintenanceScheduler.Registration registration;	
 	
 	ValidatablePoolThread(Pool<T> pool, ValidationConfig config) {
 		this.pool = pool;
+		this.basicPool = (pool instanceof BasicPool) ? (BasicPool<T>) pool : null;
 		this.config = config;
 	}
 	
@@ -40,35 +45,54 @@ class ValidatablePoolThread<T> {
 			throw new IllegalStateException("already scheduled");
 		}
 		
-		taskExecutor = 
-				Executors.newScheduledThreadPool(
-						config.getTestThreads(), 
-						new NameableDaemonThreadFactory(ValidatablePoolThread.class.getSimpleName()));
+		registration =
+				MaintenanceScheduler.getShared().register(
+						ValidatablePoolThread.class.getSimpleName(), config.getTestThreads());
 		
-		ValidateTaskBootstrap bootstrap = new ValidateTaskBootstrap();
-		taskExecutor.scheduleWithFixedDelay(
-				bootstrap, 
-				config.getTestThreadInitialDelayMillis(),
-				config.getTestThreadIntervalMillis(), 
-				TimeUnit.MILLISECONDS);
+		ValidateTaskBootstrap bootstrap = new ValidateTaskBootstrap(registration);
+		bootstrap.schedule(config.getTestThreadInitialDelayMillis());
+	}
+	
+	/*
+	 * The entries whose validation is still queued are put back without being validated,
+	 * so that their permits are released before the pool is closed.
+	 * */
+	void stopBackgroundValidate() {
+		if (registration == null) return;
 		
-		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
-			@Override
-			public void run() {
-				taskExecutor.shutdownNow();
+		for (Runnable task : registration.cancel()) {
+			if (task instanceof ValidatablePoolThread.ValidateTask) {
+				((ValidatablePoolThread<?>.ValidateTask) task).putBack();
 			}
-		}));
-	}	
+		}
+	}
 	
-	private class ValidateTaskBootstrap implements Runnable {
+	private class ValidateTaskBootstrap extends FixedDelayTask {
 		private static final boolean DO_NOT_CREATE_NEW = false;
 		
 		private final Object dummy = new Object();		
 		private ConcurrentMap<Integer, Object> alreadyValidatedCheckMap;
 		
+		private ValidateTaskBootstrap(MaintenanceScheduler.Registration registration) {
+			super(registration);
+		}
+		
 		@Override
-		public void run() {
+		protected long getDelayMillis() {
+			return config.getTestThreadIntervalMillis();
+		}
+		
+		@Override
+		protected void runTask() {
 			int maxIdleEntries = pool.getPoolConfig().getMaxIdleEntries();
+			if (basicPool != null) {
+				List<PoolEntry<T>> idleEntries = basicPool.takeIdleEntries(maxIdleEntries);
+				for (PoolEntry<T> idleEntry : idleEntries) {
+					execute(new ValidateTask(idleEntry));
+				}
+				return;
+			}
+			
 			alreadyValidatedCheckMap = new ConcurrentHashMap<Integer, Object>(maxIdleEntries);
 			
 			try {
@@ -83,7 +107,7 @@ class ValidatablePoolThread<T> {
 						break;
 					}
 					
-					taskExecutor.submit(new ValidateTask(idleEntry));
+					execute(new ValidateTask(idleEntry));
 				}
 			} catch (PoolException e) {
 				logger.warn(PoolLoggerMarkerFactory.getMarker(), 
@@ -91,6 +115,15 @@ class ValidatablePoolThread<T> {
 			}			
 		}
 
+		private void execute(ValidateTask task) {
+			try {
+				registration.execute(task);
+			} catch (RejectedExecutionException e) {
+				// stopped meanwhile
+				task.putBack();
+			}
+		}
+
 		private boolean isAlreadyValidated(PoolEntry<T> idleEntry) {
 			int hashCode = idleEntry.hashCode();
 			Object result = alreadyValidatedCheckMap.putIfAbsent(hashCode, dummy);
@@ -107,12 +140,21 @@ class ValidatablePoolThread<T> {
 		
 		@Override
 		public void run() {
-			ValidationHelper.invalidateIfAgeExpired(config, idleEntry);
+			PoolClock clock = pool.getPoolConfig().getClock();
+			ValidationHelper.invalidateIfAgeExpired(config, idleEntry, clock);
 			// has not yet exceeded maxAge. 
 			if (idleEntry.getState().isValid()) {
-				ValidationHelper.validate(config, idleEntry);
+				ValidationHelper.validate(config, idleEntry, clock);
+			}
+			putBack();
+		}
+		
+		private void putBack() {
+			if (basicPool != null) {
+				basicPool.restoreIdleEntry(idleEntry);
+			} else {
+				pool.returnEntry(idleEntry);
 			}
-			pool.returnEntry(idleEntry);
 		}
 	}
 		
@@ -6,16 +6,19 @@ import com.github.kei2100.pool.Pool;
 import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.PoolException;
 import com.github.kei2100.pool.ValidationConfig;
+import com.github.kei2100.pool.util.PoolClock;
 
 
 class ValidatePoolEntryListener<T> implements ValidatablePoolListener<T> {
 
 	private final Pool<T> pool;
 	private final ValidationConfig config;
+	private final PoolClock clock;
 	
 	ValidatePoolEntryListener(Pool<T> pool, ValidationConfig config) {
 		this.pool = pool;
 		this.config = config;
+		this.clock = pool.getPoolConfig().getClock();
 	}
 	
 	@Override
@@ -36,7 +39,7 @@ class ValidatePoolEntryListener<T> implements ValidatablePoolListener<T> {
 		if (!config.isTestOnBorrow()) return entry;
 		if (entry == null) return entry;
 		
-		boolean validateSuccessful = ValidationHelper.validate(config, entry);
+		boolean validateSuccessful = ValidationHelper.validate(config, entry, clock);
 		if (validateSuccessful) {
 			return entry;
 		} else {
@@ -48,7 +51,7 @@ class ValidatePoolEntryListener<T> implements ValidatablePoolListener<T> {
 	@Override
 	public PoolEntry<T> beforeReturnEntry(PoolEntry<T> entry) {
 		if (config.isTestOnReturn()) {
-			ValidationHelper.validate(config, entry);
+			ValidationHelper.validate(config, entry, clock);
 		}
 		return entry;
 	}
@@ -5,17 +5,26 @@ import org.slf4j.LoggerFactory;
 
 import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.ValidationConfig;
+import com.github.kei2100.pool.util.PoolClock;
 import com.github.kei2100.pool.util.PoolLoggerMarkerFactory;
+import com.github.kei2100.pool.util.SystemPoolClock;
 
 
-class ValidationHelper {
+public class ValidationHelper {
 	private static final Logger logger = LoggerFactory.getLogger(ValidationHelper.class);
 	
-	static <T> boolean validate(ValidationConfig config, PoolEntry<T> entry) {
+	public static <T> boolean validate(ValidationConfig config, PoolEntry<T> entry) {
+		return validate(config, entry, SystemPoolClock.INSTANCE);
+	}
+	
+	/*
+	 * The clock has to be the one which stamped the entry.
+	 * */
+	public static <T> boolean validate(ValidationConfig config, PoolEntry<T> entry, PoolClock clock) {
 		long lastValidatedAt = entry.getState().getLastValidatedAt();
 		
 		if (config.isTestWithInterval()) {
-			if (!isIntervalElapses(config, lastValidatedAt)) {
+			if (!isIntervalElapses(config, lastValidatedAt, clock)) {
 				return true;
 			}
 		}
@@ -29,7 +38,11 @@ class ValidationHelper {
 		}
 	}
 	
-	static <T> void invalidateIfAgeExpired(ValidationConfig config, PoolEntry<T> entry) {
+	public static <T> void invalidateIfAgeExpired(ValidationConfig config, PoolEntry<T> entry) {
+		invalidateIfAgeExpired(config, entry, SystemPoolClock.INSTANCE);
+	}
+	
+	public static <T> void invalidateIfAgeExpired(ValidationConfig config, PoolEntry<T> entry, PoolClock clock) {
 		if (config.isMaxAgeUnlimit()) {
 			return;
 		}
@@ -37,7 +50,7 @@ class ValidationHelper {
 		long createdAt = entry.getState().getCreatedAt();
 		long maxAgeMillis = config.getMaxAgeMillis();
 				
-		boolean hasAgeExpired = (System.currentTimeMillis() - createdAt) > maxAgeMillis;
+		boolean hasAgeExpired = (clock.currentTimeMillis() - createdAt) > maxAgeMillis;
 		if (hasAgeExpired) {
 			innerInvalidate(entry);
 		}
@@ -65,9 +78,9 @@ class ValidationHelper {
 		}
 	}
 	
-	private static boolean isIntervalElapses(ValidationConfig config, long lastValidatedAt) {				
+	private static boolean isIntervalElapses(ValidationConfig config, long lastValidatedAt, PoolClock clock) {				
 		long testIntervalMillis = config.getTestIntervalMillis();
-		long now = System.currentTimeMillis();
+		long now = clock.currentTimeMillis();
 		
 		return testIntervalMillis < (now - lastValidatedAt);
 	}
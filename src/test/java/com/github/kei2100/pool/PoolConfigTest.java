@@ -0,0 +1,49 @@
+package com.github.kei2100.pool;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.util.PropertyValidationException;
+
+
+public class PoolConfigTest {
+	
+	@Test
+	public void validateConfig_default_queueでensureThreadsを指定する場合() {
+		PoolConfig config = new PoolConfig();
+		config.setEnsureThreads(1);
+		config.setMinIdleEntries(1);
+		config.validateConfig();
+	}
+	
+	@Test(expected = PropertyValidationException.class)
+	public void validateConfig_concurrent_bagでensureThreadsを指定する場合() {
+		PoolConfig config = new PoolConfig();
+		config.setIdleEntriesQueueType(IdleEntriesQueueType.CONCURRENT_BAG);
+		config.setEnsureThreads(1);
+		config.validateConfig();
+	}
+	
+	@Test(expected = PropertyValidationException.class)
+	public void validateConfig_stripedでensureThreadsを指定する場合() {
+		PoolConfig config = new PoolConfig();
+		config.setIdleEntriesQueueType(IdleEntriesQueueType.STRIPED);
+		config.setEnsureThreads(1);
+		config.validateConfig();
+	}
+	
+	@Test(expected = PropertyValidationException.class)
+	public void validateConfig_slot_tableでensureThreadsを指定する場合() {
+		PoolConfig config = new PoolConfig();
+		config.setIdleEntriesQueueType(IdleEntriesQueueType.SLOT_TABLE);
+		config.setEnsureThreads(1);
+		config.validateConfig();
+	}
+	
+	@Test(expected = PropertyValidationException.class)
+	public void validateConfig_concurrent_bagでmagazineSizeを指定する場合() {
+		PoolConfig config = new PoolConfig();
+		config.setIdleEntriesQueueType(IdleEntriesQueueType.CONCURRENT_BAG);
+		config.setMagazineSize(2);
+		config.validateConfig();
+	}
+}
@@ -0,0 +1,62 @@
+package com.github.kei2100.pool.asyncadjust;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.basic.PoolTestUtil;
+import com.github.kei2100.pool.util.SpyObject;
+
+
+public class AsyncAdjustIdleEntriesQueueTest {
+
+	@Test
+	public void evictTo_返却時刻が古いentryを取り除く() {
+		AsyncAdjustIdleEntriesQueue<SpyObject> queue = createQueue(new PoolConfig());
+
+		PoolEntry<SpyObject> expired = createIdleEntry(2000);
+		PoolEntry<SpyObject> notExpired = createIdleEntry(0);
+		queue.offer(expired);
+		queue.offer(notExpired);
+
+		List<PoolEntry<SpyObject>> actual = new ArrayList<PoolEntry<SpyObject>>();
+		int evicted = queue.evictTo(actual, System.currentTimeMillis() - 1000, Integer.MAX_VALUE);
+
+		assertEquals(1, evicted);
+		assertSame(expired, actual.get(0));
+		assertEquals(1, queue.getIdleEntriesCount());
+		assertSame(notExpired, queue.poll());
+	}
+
+	@Test
+	public void restore_取り除いたentryを戻す() {
+		AsyncAdjustIdleEntriesQueue<SpyObject> queue = createQueue(new PoolConfig());
+
+		PoolEntry<SpyObject> entry = createIdleEntry(0);
+		queue.offer(entry);
+		List<PoolEntry<SpyObject>> evicted = new ArrayList<PoolEntry<SpyObject>>();
+		queue.evictTo(evicted, Long.MAX_VALUE, 1);
+
+		assertTrue(queue.restore(entry));
+		assertEquals(1, queue.getIdleEntriesCount());
+		assertSame(entry, queue.poll());
+	}
+
+	private AsyncAdjustIdleEntriesQueue<SpyObject> createQueue(PoolConfig config) {
+		return new AsyncAdjustIdleEntriesQueue<SpyObject>(
+				config, PoolTestUtil.createPoolEntryFactory(SpyObject.class));
+	}
+
+	private PoolEntry<SpyObject> createIdleEntry(long idleMillis) {
+		PoolEntry<SpyObject> entry = PoolTestUtil.createPoolEntry(SpyObject.class);
+		entry.getState().setLastReturnedAt(System.currentTimeMillis() - idleMillis);
+		return entry;
+	}
+}
@@ -0,0 +1,102 @@
+package com.github.kei2100.pool.asyncadjust;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.basic.PoolTestUtil;
+import com.github.kei2100.pool.util.SpyObject;
+
+
+public class DemandPredictorTest {
+
+	@Test
+	public void tick_需要が増加している場合はminIdleEntriesを超えて予測する() {
+		DemandPredictor predictor = createPredictor(2, 50);
+		long now = 1000;
+		predictor.tick(now);
+		recordHold(predictor, 100);
+
+		for (int borrows = 5; borrows <= 40; borrows *= 2) {
+			borrow(predictor, borrows);
+			now += 100;
+			predictor.tick(now);
+		}
+
+		assertTrue(predictor.getTargetIdleEntries() > 2);
+	}
+
+	@Test
+	public void tick_maxIdleEntriesを超えて予測しない() {
+		DemandPredictor predictor = createPredictor(2, 10);
+		long now = 1000;
+		predictor.tick(now);
+		recordHold(predictor, 1000);
+
+		borrow(predictor, 1000);
+		predictor.tick(now + 100);
+
+		assertEquals(10, predictor.getTargetIdleEntries());
+	}
+
+	@Test
+	public void tick_需要が一定になるとminIdleEntriesに戻る() {
+		DemandPredictor predictor = createPredictor(2, 50);
+		long now = 1000;
+		predictor.tick(now);
+		recordHold(predictor, 100);
+
+		borrow(predictor, 40);
+		now += 100;
+		predictor.tick(now);
+		assertTrue(predictor.getTargetIdleEntries() > 2);
+
+		for (int i = 0; i < 200; i++) {
+			borrow(predictor, 40);
+			now += 100;
+			predictor.tick(now);
+		}
+		assertEquals(2, predictor.getTargetIdleEntries());
+	}
+
+	@Test
+	public void tick_需要が減少するとminIdleEntriesに戻る() {
+		DemandPredictor predictor = createPredictor(2, 50);
+		long now = 1000;
+		predictor.tick(now);
+		recordHold(predictor, 100);
+
+		borrow(predictor, 40);
+		now += 100;
+		predictor.tick(now);
+
+		for (int i = 0; i < 10; i++) {
+			now += 100;
+			predictor.tick(now);
+		}
+		assertEquals(2, predictor.getTargetIdleEntries());
+	}
+
+	private DemandPredictor createPredictor(int minIdleEntries, int maxIdleEntries) {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(maxIdleEntries);
+		config.setMaxIdleEntries(maxIdleEntries);
+		config.setMinIdleEntries(minIdleEntries);
+		return new DemandPredictor(config);
+	}
+
+	private void borrow(DemandPredictor predictor, int borrows) {
+		for (int i = 0; i < borrows; i++) {
+			predictor.recordBorrow();
+		}
+	}
+
+	private void recordHold(DemandPredictor predictor, long holdMillis) {
+		PoolEntry<SpyObject> entry = PoolTestUtil.createPoolEntry(SpyObject.class);
+		entry.getState().setLastBorrowedAt(1);
+		predictor.recordReturn(entry, 1 + holdMillis);
+	}
+}
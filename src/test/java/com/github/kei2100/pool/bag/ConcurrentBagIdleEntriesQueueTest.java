@@ -0,0 +1,149 @@
+package com.github.kei2100.pool.bag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.basic.BasicPool;
+import com.github.kei2100.pool.basic.PoolTestUtil;
+import com.github.kei2100.pool.util.SpyObject;
+
+
+public class ConcurrentBagIdleEntriesQueueTest {
+
+	@Test(expected = NullPointerException.class)
+	public void offer_追加エントリがnullの場合() {
+		ConcurrentBagIdleEntriesQueue<SpyObject> queue = new ConcurrentBagIdleEntriesQueue<SpyObject>(new PoolConfig());
+		queue.offer(null);
+	}
+
+	@Test
+	public void offer_maxIdleEntries数を超える場合() {
+		PoolConfig config = new PoolConfig();
+		config.setMaxIdleEntries(1);
+		ConcurrentBagIdleEntriesQueue<SpyObject> queue = new ConcurrentBagIdleEntriesQueue<SpyObject>(config);
+		PoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		PoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+
+		assertTrue(queue.offer(entry1));
+		assertFalse(queue.offer(entry2));
+		assertTrue(entry1.getState().isValid());
+		assertFalse(entry2.getState().isValid());
+		assertEquals(1, queue.getIdleEntriesCount());
+	}
+
+	@Test
+	public void poll_最後に返却したentryから取得する() {
+		ConcurrentBagIdleEntriesQueue<SpyObject> queue = new ConcurrentBagIdleEntriesQueue<SpyObject>(new PoolConfig());
+		PoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		PoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+
+		queue.offer(entry1);
+		queue.offer(entry2);
+
+		assertSame(entry2, queue.poll());
+		assertSame(entry1, queue.poll());
+		assertNull(queue.poll());
+		assertEquals(0, queue.getIdleEntriesCount());
+	}
+
+	@Test
+	public void poll_borrow中に無効化されたentryを取り除く() throws Exception {
+		ConcurrentBagIdleEntriesQueue<SpyObject> queue = new ConcurrentBagIdleEntriesQueue<SpyObject>(new PoolConfig());
+		PoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		PoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+
+		queue.offer(entry1);
+		queue.offer(entry2);
+		queue.poll().invalidate();
+		queue.poll().invalidate();
+		assertEquals(2, queue.getItemsCount());
+
+		assertNull(queue.poll());
+		assertEquals(0, queue.getItemsCount());
+	}
+
+	@Test
+	public void poll_idle中に無効化されたentryを取り除く() throws Exception {
+		ConcurrentBagIdleEntriesQueue<SpyObject> queue = new ConcurrentBagIdleEntriesQueue<SpyObject>(new PoolConfig());
+		PoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		PoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+
+		queue.offer(entry1);
+		queue.offer(entry2);
+		entry2.invalidate();
+
+		assertSame(entry1, queue.poll());
+		assertEquals(1, queue.getItemsCount());
+		assertEquals(0, queue.getIdleEntriesCount());
+	}
+
+	@Test
+	public void transfer_waiterがいない場合() {
+		ConcurrentBagIdleEntriesQueue<SpyObject> queue = new ConcurrentBagIdleEntriesQueue<SpyObject>(new PoolConfig());
+
+		assertFalse(queue.transfer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+	}
+
+	@Test
+	public void returnEntry_待機中のborrowEntryへ直接渡す() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		config.setInitialEntries(1);
+		ConcurrentBagIdleEntriesQueue<SpyObject> queue = new ConcurrentBagIdleEntriesQueue<SpyObject>(config);
+		final BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+
+		PoolEntry<SpyObject> entry = pool.borrowEntry();
+
+		ExecutorService es = Executors.newSingleThreadExecutor();
+		try {
+			Future<PoolEntry<SpyObject>> future = es.submit(new Callable<PoolEntry<SpyObject>>() {
+				@Override
+				public PoolEntry<SpyObject> call() throws Exception {
+					return pool.borrowEntry(10, TimeUnit.SECONDS);
+				}
+			});
+			while (queue.getWaitersCount() == 0) {
+				TimeUnit.MILLISECONDS.sleep(1);
+			}
+
+			pool.returnEntry(entry);
+
+			assertSame(entry, future.get(10, TimeUnit.SECONDS));
+			assertEquals(0, pool.availablePermits());
+			assertEquals(0, queue.getIdleEntriesCount());
+		} finally {
+			es.shutdown();
+		}
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void borrowEntry_maxActiveEntriesを超える場合() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		ConcurrentBagIdleEntriesQueue<SpyObject> queue = new ConcurrentBagIdleEntriesQueue<SpyObject>(config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+
+		pool.borrowEntry(1, TimeUnit.MILLISECONDS);
+		try {
+			pool.borrowEntry(1, TimeUnit.MILLISECONDS);
+		} finally {
+			assertEquals(0, queue.getWaitersCount());
+		}
+	}
+}
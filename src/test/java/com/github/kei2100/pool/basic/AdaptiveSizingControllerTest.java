@@ -0,0 +1,75 @@
+package com.github.kei2100.pool.basic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.PoolConfig;
+
+
+public class AdaptiveSizingControllerTest {
+
+	@Test
+	public void adjust_待ち時間がtargetWaitMillisOnBorrowを超える場合は上限を1つ増やす() {
+		AdaptiveSizingController controller = createController(2, 8);
+		// 8 -> 7 -> 6
+		controller.adjust();
+		controller.adjust();
+		assertEquals(6, controller.getActiveLimit());
+
+		controller.recordBorrow(6);
+		controller.recordWait(TimeUnit.MILLISECONDS.toNanos(20));
+		controller.adjust();
+
+		assertEquals(7, controller.getActiveLimit());
+		assertFalse(controller.hasSpareEntries());
+	}
+
+	@Test
+	public void adjust_生成の失敗がmaxCreateFailurePercentを超える場合は上限を乗法的に減らす() {
+		AdaptiveSizingController controller = createController(2, 8);
+
+		controller.recordBorrow(8);
+		controller.recordCreate(TimeUnit.MILLISECONDS.toNanos(1), true);
+		controller.recordCreate(TimeUnit.MILLISECONDS.toNanos(1), false);
+		controller.adjust();
+		assertEquals(6, controller.getActiveLimit());
+
+		for (int i = 0; i < 10; i++) {
+			controller.recordCreate(TimeUnit.MILLISECONDS.toNanos(1), false);
+			controller.adjust();
+		}
+		assertEquals(2, controller.getActiveLimit());
+	}
+
+	@Test
+	public void adjust_生成に時間がかかる場合はidleTargetを上限まで保つ() {
+		AdaptiveSizingController controller = createController(2, 8);
+
+		controller.recordBorrow(3);
+		controller.recordCreate(TimeUnit.MILLISECONDS.toNanos(1), true);
+		controller.adjust();
+		assertEquals(3, controller.getIdleTarget());
+		assertTrue(controller.hasSpareEntries());
+
+		controller.recordBorrow(3);
+		controller.recordCreate(TimeUnit.MILLISECONDS.toNanos(100), true);
+		controller.adjust();
+		assertEquals(controller.getActiveLimit(), controller.getIdleTarget());
+	}
+
+	private AdaptiveSizingController createController(int minActiveEntries, int maxActiveEntries) {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(maxActiveEntries);
+		config.setMaxIdleEntries(maxActiveEntries);
+		config.setMinActiveEntries(minActiveEntries);
+		config.setAdaptiveSizing(true);
+		config.setTargetWaitMillisOnBorrow(10);
+		config.setMaxCreateFailurePercent(10);
+		return new AdaptiveSizingController(config);
+	}
+}
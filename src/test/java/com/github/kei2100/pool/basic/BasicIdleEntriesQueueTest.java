@@ -12,6 +12,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import com.github.kei2100.pool.IdleEntriesOrder;
 import com.github.kei2100.pool.PoolConfig;
 import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.PooledObjectValidator;
@@ -108,6 +109,70 @@ public class BasicIdleEntriesQueueTest {
 		assertNotNull(actualObject);
 	}
 	
+	@Test
+	public void poll_FIFOの場合() {
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class);
+		BasicPoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		BasicPoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		
+		queue.offer(entry1);
+		queue.offer(entry2);
+		
+		assertSame(entry1, queue.poll());
+		assertSame(entry2, queue.poll());
+	}
+	
+	@Test
+	public void poll_LIFOの場合() {
+		PoolConfig config = new PoolConfig();
+		config.setIdleEntriesOrder(IdleEntriesOrder.LIFO);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		BasicPoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		
+		queue.offer(entry1);
+		queue.offer(entry2);
+		
+		assertSame(entry2, queue.poll());
+		assertSame(entry1, queue.poll());
+	}
+	
+	@Test
+	public void offer_LIFO_maxIdleEntries数を超える場合() {
+		PoolConfig config = new PoolConfig();
+		config.setMaxIdleEntries(1);
+		config.setIdleEntriesOrder(IdleEntriesOrder.LIFO);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		BasicPoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		
+		assertTrue(queue.offer(entry1));
+		assertFalse(queue.offer(entry2));
+		assertFalse(entry2.getState().isValid());
+		assertSame(entry1, queue.poll());
+	}
+	
+	@Test
+	public void drainTo_LIFOの場合() {
+		PoolConfig config = new PoolConfig();
+		config.setIdleEntriesOrder(IdleEntriesOrder.LIFO);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		BasicPoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		BasicPoolEntry<SpyObject> entry3 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		queue.offer(entry1);
+		queue.offer(entry2);
+		queue.offer(entry3);
+		
+		List<PoolEntry<SpyObject>> drained = new ArrayList<PoolEntry<SpyObject>>();
+		int count = queue.drainTo(drained, 2);
+		
+		assertEquals(2, count);
+		assertSame(entry3, drained.get(0));
+		assertSame(entry2, drained.get(1));
+		assertEquals(1, queue.getIdleEntriesCount());
+	}
+	
 	@Test
 	public void offer_pool_マルチスレッドで繰り返す() throws Exception {
 		PoolConfig config = new PoolConfig();
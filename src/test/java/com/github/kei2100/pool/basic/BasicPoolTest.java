@@ -1,14 +1,18 @@
 package com.github.kei2100.pool.basic;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -17,14 +21,30 @@ import java.util.concurrent.TimeoutException;
 
 import org.junit.Test;
 
+import com.github.kei2100.pool.BorrowPriority;
 import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.IdleEntriesQueueType;
 import com.github.kei2100.pool.PoolConfig;
 import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryCallback;
 import com.github.kei2100.pool.PoolEntryFactory;
+import com.github.kei2100.pool.PoolEntryFuture;
 import com.github.kei2100.pool.PoolException;
+import com.github.kei2100.pool.PoolOverloadedException;
+import com.github.kei2100.pool.PoolPressure;
+import com.github.kei2100.pool.PooledObjectFactory;
+import com.github.kei2100.pool.WarmUpStats;
 import com.github.kei2100.pool.basic.BasicIdleEntriesQueue;
 import com.github.kei2100.pool.basic.BasicPool;
+import com.github.kei2100.pool.slot.SlotTable;
+import com.github.kei2100.pool.slot.SlotTableIdleEntriesQueue;
+import com.github.kei2100.pool.slot.SlotTablePoolEntryFactory;
+import com.github.kei2100.pool.striped.StripedIdleEntriesQueue;
+import com.github.kei2100.pool.util.ManualPoolClock;
+import com.github.kei2100.pool.util.PropertyValidationException;
 import com.github.kei2100.pool.util.SpyObject;
+import com.github.kei2100.pool.util.SpyObjectFactory;
+import com.github.kei2100.pool.util.SpyObjectValidator;
 import com.github.kei2100.pool.util.ThrowExceptionObjectFactory;
 
 
@@ -332,4 +352,700 @@ public class BasicPoolTest {
 		assertEquals(5, pool.availablePermits());
 		assertEquals(5, queue.getIdleEntriesCount());
 	}
-}
+	
+	@Test
+	public void borrowEntryAsync_idleエントリがある場合() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setInitialEntries(1);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		PoolEntryFuture<SpyObject> future = pool.borrowEntryAsync();
+		
+		assertTrue(future.isDone());
+		assertNotNull(future.get());
+		assertEquals(0, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void borrowEntryAsync_idleエントリがない場合はバックグラウンドで生成する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config);
+		
+		PoolEntryFuture<SpyObject> future = pool.borrowEntryAsync();
+		
+		assertNotNull(future.get(10, TimeUnit.SECONDS));
+		assertEquals(config.getMaxActiveEntries() - 1, pool.availablePermits());
+	}
+	
+	@Test
+	public void borrowEntryAsync_maxActiveEntriesに達している場合はreturnEntryで完了する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		config.setInitialEntries(1);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config);
+		
+		PoolEntry<SpyObject> entry = pool.borrowEntry();
+		PoolEntryFuture<SpyObject> future = pool.borrowEntryAsync(10, TimeUnit.SECONDS);
+		assertFalse(future.isDone());
+		assertEquals(1, pool.getAsyncWaitersCount());
+		
+		pool.returnEntry(entry);
+		
+		assertTrue(future.isDone());
+		assertSame(entry, future.get());
+		assertEquals(0, pool.availablePermits());
+		assertEquals(0, pool.getAsyncWaitersCount());
+	}
+	
+	@Test
+	public void borrowEntryAsync_タイムアウトの場合() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config);
+		
+		pool.borrowEntry();
+		PoolEntryFuture<SpyObject> future = pool.borrowEntryAsync(1, TimeUnit.MILLISECONDS);
+		
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		assertEquals(0, pool.getAsyncWaitersCount());
+	}
+	
+	@Test
+	public void borrowEntryAsync_cancelした場合() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		config.setInitialEntries(1);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		PoolEntry<SpyObject> entry = pool.borrowEntry();
+		PoolEntryFuture<SpyObject> future = pool.borrowEntryAsync(10, TimeUnit.SECONDS);
+		
+		assertTrue(future.cancel(false));
+		assertEquals(0, pool.getAsyncWaitersCount());
+		
+		pool.returnEntry(entry);
+		
+		assertEquals(1, pool.availablePermits());
+		assertEquals(1, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void borrowEntries_idleエントリが足りない場合は生成する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setInitialEntries(2);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		List<PoolEntry<SpyObject>> entries = pool.borrowEntries(3, 1, TimeUnit.MILLISECONDS);
+		
+		assertEquals(3, entries.size());
+		assertEquals(1, pool.availablePermits());
+		assertEquals(0, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void borrowEntries_タイムアウトの場合は一つも取得しない() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setInitialEntries(4);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		PoolEntry<SpyObject> entry = pool.borrowEntry();
+		try {
+			pool.borrowEntries(4, 1, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (TimeoutException expected) {
+		}
+		
+		pool.returnEntry(entry);
+		assertEquals(4, pool.availablePermits());
+		assertEquals(4, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void borrowEntries_生成で例外の場合は一つも取得しない() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setInitialEntries(1);
+		
+		PoolEntryFactory<SpyObject> entryFactory = 
+				PoolTestUtil.createPoolEntryFactory(
+						SpyObject.class, new ThrowExceptionObjectFactory<SpyObject>(SpyObject.class, 2));
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(config, queue, entryFactory);
+		
+		try {
+			pool.borrowEntries(3, 1, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (PoolException expected) {
+		}
+		
+		assertEquals(4, pool.availablePermits());
+		assertEquals(1, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void returnEntries_まとめて返却する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		PoolEntry<SpyObject> entry1 = pool.borrowEntry();
+		PoolEntry<SpyObject> entry2 = pool.borrowEntry();
+		
+		List<PoolEntry<SpyObject>> entries = new ArrayList<PoolEntry<SpyObject>>();
+		entries.add(entry1);
+		entries.add(entry2);
+		pool.returnEntries(entries);
+		
+		assertEquals(4, pool.availablePermits());
+		assertEquals(2, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void borrowEntry_優先度の高いwaiterに先に返却する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		config.setPriorityAgingMillis(60000);
+		final BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config);
+		
+		PoolEntry<SpyObject> entry = pool.borrowEntry();
+		ExecutorService es = Executors.newFixedThreadPool(2);
+		try {
+			Future<PoolEntry<SpyObject>> low = es.submit(borrowTask(pool, BorrowPriority.LOW));
+			waitPriorityWaiters(pool, 1);
+			Future<PoolEntry<SpyObject>> high = es.submit(borrowTask(pool, BorrowPriority.HIGH));
+			waitPriorityWaiters(pool, 2);
+			
+			pool.returnEntry(entry);
+			
+			assertSame(entry, high.get(1, TimeUnit.SECONDS));
+			assertFalse(low.isDone());
+			
+			pool.returnEntry(entry);
+			assertSame(entry, low.get(1, TimeUnit.SECONDS));
+			assertEquals(0, pool.getPriorityWaitersCount());
+		} finally {
+			es.shutdown();
+		}
+	}
+	
+	@Test
+	public void borrowEntry_待ち時間に応じて優先度を上げる() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		config.setPriorityAgingMillis(10);
+		final BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config);
+		
+		PoolEntry<SpyObject> entry = pool.borrowEntry();
+		ExecutorService es = Executors.newFixedThreadPool(2);
+		try {
+			Future<PoolEntry<SpyObject>> low = es.submit(borrowTask(pool, BorrowPriority.LOW));
+			waitPriorityWaiters(pool, 1);
+			TimeUnit.MILLISECONDS.sleep(100);
+			Future<PoolEntry<SpyObject>> high = es.submit(borrowTask(pool, BorrowPriority.HIGH));
+			waitPriorityWaiters(pool, 2);
+			
+			pool.returnEntry(entry);
+			
+			assertSame(entry, low.get(1, TimeUnit.SECONDS));
+			assertFalse(high.isDone());
+			
+			pool.returnEntry(entry);
+			assertSame(entry, high.get(1, TimeUnit.SECONDS));
+		} finally {
+			es.shutdown();
+		}
+	}
+	
+	@Test
+	public void borrowEntry_優先度を指定してタイムアウトした場合() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config);
+		
+		PoolEntry<SpyObject> entry = pool.borrowEntry();
+		try {
+			pool.borrowEntry(BorrowPriority.HIGH, true, 10, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (TimeoutException expected) {
+		}
+		assertEquals(0, pool.getPriorityWaitersCount());
+		
+		pool.returnEntry(entry);
+		assertEquals(1, pool.availablePermits());
+	}
+	
+	@Test
+	public void borrowEntry_推定待ち時間がタイムアウトを超える場合は待たずに拒否する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		config.setAdmissionControl(true);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config);
+		
+		PoolEntry<SpyObject> entry = pool.borrowEntry();
+		TimeUnit.MILLISECONDS.sleep(100);
+		pool.returnEntry(entry);
+		pool.borrowEntry();
+		
+		PoolPressure pressure = pool.getPressure();
+		assertEquals(1.0, pressure.getUtilization(), 0);
+		assertTrue(pressure.getEstimatedWaitMillis() >= 100);
+		assertFalse(pressure.isOverloaded());
+		
+		try {
+			pool.borrowEntry(true, 50, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (PoolOverloadedException expected) {
+		}
+		assertEquals(0, pool.getPriorityWaitersCount());
+	}
+	
+	@Test
+	public void withEntry_callbackの終了後に返却する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		final BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		Integer permits = pool.withEntry(new PoolEntryCallback<SpyObject, Integer>() {
+			@Override
+			public Integer doWithEntry(PoolEntry<SpyObject> entry) throws Exception {
+				return pool.availablePermits();
+			}
+		});
+		
+		assertEquals(Integer.valueOf(0), permits);
+		assertEquals(1, pool.availablePermits());
+		assertEquals(1, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void reclaimExpiredLeases_leaseTimeMillisを超えて返却されないentryを回収する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(2);
+		config.setMaxIdleEntries(2);
+		config.setLeaseTimeMillis(10);
+		config.setLeaseStackTraceSampling(1);
+		config.setInvalidateIntervalMillis(60000);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config);
+		
+		PoolEntry<SpyObject> leaked = pool.borrowEntry();
+		PoolEntry<SpyObject> returned = pool.borrowEntry();
+		pool.returnEntry(returned);
+		assertEquals(1, pool.getLeasedEntriesCount());
+		
+		TimeUnit.MILLISECONDS.sleep(20);
+		pool.reclaimExpiredLeases();
+		
+		assertFalse(leaked.getState().isValid());
+		assertEquals(0, pool.getLeasedEntriesCount());
+		assertEquals(2, pool.availablePermits());
+		
+		// the late return is ignored
+		pool.returnEntry(leaked);
+		assertEquals(2, pool.availablePermits());
+	}
+	
+	@Test
+	public void evictIdleTimeExpired_maxIdleTimeMillisを超えたentryを取り除く() throws Exception {
+		ManualPoolClock clock = new ManualPoolClock();
+		PoolConfig config = new PoolConfig();
+		config.setClock(clock);
+		config.setMaxIdleTimeMillis(1000);
+		StripedIdleEntriesQueue<SpyObject> queue = new StripedIdleEntriesQueue<SpyObject>(config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		PoolEntry<SpyObject> expired = pool.borrowEntry();
+		PoolEntry<SpyObject> notExpired = pool.borrowEntry();
+		pool.returnEntry(expired);
+		clock.advance(1000);
+		pool.returnEntry(notExpired);
+		clock.advance(1);
+		
+		List<PoolEntry<SpyObject>> evicted = pool.evictIdleTimeExpired();
+		assertEquals(1, evicted.size());
+		assertSame(expired, evicted.get(0));
+		assertEquals(1, queue.getIdleEntriesCount());
+		assertSame(notExpired, pool.borrowEntry());
+	}
+	
+	@Test
+	public void evictIdleTimeExpired_minIdleEntriesを下回らない() throws Exception {
+		ManualPoolClock clock = new ManualPoolClock();
+		PoolConfig config = new PoolConfig();
+		config.setClock(clock);
+		config.setMaxIdleTimeMillis(1000);
+		config.setMinIdleEntries(2);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		List<PoolEntry<SpyObject>> entries = pool.borrowEntries(3, 1, TimeUnit.SECONDS);
+		pool.returnEntries(entries);
+		clock.advance(2000);
+		
+		assertEquals(1, pool.evictIdleTimeExpired().size());
+		assertEquals(2, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void takeIdleEntries_貸し出しとして計上せずにidle_entryを取り出す() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(3);
+		config.setMaxIdleEntries(3);
+		config.setLeaseTimeMillis(60000);
+		config.setInvalidateIntervalMillis(60000);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		PoolEntry<SpyObject> entry1 = pool.borrowEntry();
+		PoolEntry<SpyObject> entry2 = pool.borrowEntry();
+		pool.returnEntry(entry1);
+		pool.returnEntry(entry2);
+		long returnedAt = entry1.getState().getLastReturnedAt();
+		
+		List<PoolEntry<SpyObject>> taken = pool.takeIdleEntries(3);
+		assertEquals(2, taken.size());
+		assertSame(entry1, taken.get(0));
+		assertSame(entry2, taken.get(1));
+		assertEquals(0, pool.getLeasedEntriesCount());
+		assertEquals(1, pool.availablePermits());
+		assertEquals(0, queue.getIdleEntriesCount());
+		
+		pool.restoreIdleEntry(entry1);
+		pool.restoreIdleEntry(entry2);
+		assertEquals(returnedAt, entry1.getState().getLastReturnedAt());
+		assertEquals(3, pool.availablePermits());
+		assertEquals(2, queue.getIdleEntriesCount());
+		assertSame(entry1, pool.borrowEntry());
+	}
+	
+	@Test
+	public void warmUp_initialEntriesを並列に生成する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(8);
+		config.setMaxIdleEntries(8);
+		config.setInitialEntries(8);
+		config.setWarmUpThreads(4);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		
+		long startedAt = System.currentTimeMillis();
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(config, queue, sleepEntryFactory(50, null));
+		long elapsedMillis = System.currentTimeMillis() - startedAt;
+		
+		assertTrue(elapsedMillis < 8 * 50);
+		assertEquals(8, queue.getIdleEntriesCount());
+		WarmUpStats stats = pool.getWarmUpStats();
+		assertTrue(stats.isCompleted());
+		assertEquals(8, stats.getCreatedEntries());
+	}
+	
+	@Test
+	public void warmUp_バックグラウンドで生成する間も貸し出す() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setInitialEntries(2);
+		config.setWarmUpThreads(2);
+		config.setWarmUpInBackground(true);
+		CountDownLatch createLatch = new CountDownLatch(1);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(config, queue, sleepEntryFactory(0, createLatch));
+		
+		assertFalse(pool.getWarmUpStats().isCompleted());
+		assertNull(pool.tryBorrowEntry(false));
+		assertEquals(4, pool.availablePermits());
+		
+		createLatch.countDown();
+		while (!pool.getWarmUpStats().isCompleted()) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		assertEquals(2, pool.getWarmUpStats().getCreatedEntries());
+		assertEquals(2, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void warmUp_warmUpTimeoutMillisを超えた分は生成しない() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(8);
+		config.setMaxIdleEntries(8);
+		config.setInitialEntries(8);
+		config.setWarmUpThreads(1);
+		config.setWarmUpTimeoutMillis(50);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(config, queue, sleepEntryFactory(30, null));
+		
+		while (!pool.getWarmUpStats().isCompleted()) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		WarmUpStats stats = pool.getWarmUpStats();
+		assertTrue(stats.isTimedOut());
+		assertEquals(8, stats.getCreatedEntries() + stats.getSkippedEntries());
+		assertTrue(stats.getCreatedEntries() < 8);
+	}
+	
+	@Test
+	public void adjustSize_貸し出し中のentryを残したまま上限を変更する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setAdaptiveSizing(true);
+		config.setAdaptiveIntervalMillis(60000);
+		config.setTargetWaitMillisOnBorrow(0);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, config);
+		
+		List<PoolEntry<SpyObject>> borrowed = pool.borrowEntries(3, 1, TimeUnit.SECONDS);
+		for (int i = 0; i < 4; i++) {
+			pool.adjustSize();
+		}
+		// 4 -> 4 (3 borrowed) -> 3 -> 2 -> 1
+		assertEquals(1, pool.getActiveLimit());
+		assertEquals(-2, pool.availablePermits());
+		assertNull(pool.tryBorrowEntry());
+		
+		for (PoolEntry<SpyObject> entry : borrowed) {
+			assertTrue(entry.getState().isValid());
+			pool.returnEntry(entry);
+		}
+		assertEquals(1, pool.availablePermits());
+		
+		PoolEntry<SpyObject> entry = pool.borrowEntry();
+		try {
+			pool.borrowEntry(10, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (TimeoutException expected) {
+		}
+		// the borrower waited longer than targetWaitMillisOnBorrow
+		pool.adjustSize();
+		assertEquals(2, pool.getActiveLimit());
+		assertNotNull(pool.tryBorrowEntry());
+		pool.returnEntry(entry);
+	}
+	
+	@Test
+	public void reconfigure_entryを残したまま上限を変更する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setInitialEntries(4);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(config, queue, PoolTestUtil.createPoolEntryFactory(SpyObject.class));
+		
+		PoolConfig grown = new PoolConfig();
+		grown.setMaxActiveEntries(6);
+		grown.setMaxIdleEntries(6);
+		pool.reconfigure(grown);
+		
+		assertEquals(6, pool.getPoolConfig().getMaxActiveEntries());
+		assertEquals(6, pool.availablePermits());
+		assertEquals(4, queue.getIdleEntriesCount());
+		List<PoolEntry<SpyObject>> borrowed = pool.borrowEntries(6, 1, TimeUnit.SECONDS);
+		
+		PoolConfig shrunk = new PoolConfig();
+		shrunk.setMaxActiveEntries(2);
+		shrunk.setMaxIdleEntries(2);
+		pool.reconfigure(shrunk);
+		
+		assertEquals(-4, pool.availablePermits());
+		assertNull(pool.tryBorrowEntry());
+		
+		// the excess entries are retired as they are returned
+		pool.returnEntries(borrowed);
+		assertEquals(2, pool.availablePermits());
+		assertEquals(2, queue.getIdleEntriesCount());
+		int invalidated = 0;
+		for (PoolEntry<SpyObject> entry : borrowed) {
+			if (!entry.getState().isValid()) invalidated++;
+		}
+		assertEquals(4, invalidated);
+	}
+	
+	@Test
+	public void reconfigure_maxIdleEntriesを超えるidle_entryを古いものから破棄する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(config, queue, PoolTestUtil.createPoolEntryFactory(SpyObject.class));
+		
+		List<PoolEntry<SpyObject>> entries = pool.borrowEntries(4, 1, TimeUnit.SECONDS);
+		for (PoolEntry<SpyObject> entry : entries) {
+			pool.returnEntry(entry);
+		}
+		
+		PoolConfig shrunk = new PoolConfig();
+		shrunk.setMaxActiveEntries(4);
+		shrunk.setMaxIdleEntries(2);
+		pool.reconfigure(shrunk);
+		
+		assertEquals(2, queue.getIdleEntriesCount());
+		assertFalse(entries.get(0).getState().isValid());
+		assertFalse(entries.get(1).getState().isValid());
+		// the rest are kept in the order
+		assertSame(entries.get(2), pool.borrowEntry());
+		assertSame(entries.get(3), pool.borrowEntry());
+	}
+	
+	@Test(expected = PropertyValidationException.class)
+	public void reconfigure_不正な値の場合() throws Exception {
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(SpyObject.class, new PoolConfig());
+		
+		PoolConfig invalid = new PoolConfig();
+		invalid.setMaxActiveEntries(2);
+		invalid.setMaxIdleEntries(4);
+		pool.reconfigure(invalid);
+	}
+	
+	@Test
+	public void reconfigure_slot_tableの容量を超える場合() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setIdleEntriesQueueType(IdleEntriesQueueType.SLOT_TABLE);
+		SlotTable<SpyObject> table = new SlotTable<SpyObject>(8);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(config, 
+				new SlotTableIdleEntriesQueue<SpyObject>(config, table),
+				new SlotTablePoolEntryFactory<SpyObject>(
+						table, new SpyObjectFactory(), new SpyObjectValidator(), config.getClock()));
+		
+		PoolConfig grown = new PoolConfig();
+		grown.setMaxActiveEntries(6);
+		grown.setMaxIdleEntries(4);
+		try {
+			pool.reconfigure(grown);
+			fail();
+		} catch (PropertyValidationException expected) {
+		}
+		assertEquals(4, pool.getPoolConfig().getMaxActiveEntries());
+		
+		// the sum within the capacity is accepted
+		PoolConfig moved = new PoolConfig();
+		moved.setMaxActiveEntries(6);
+		moved.setMaxIdleEntries(2);
+		pool.reconfigure(moved);
+		assertEquals(6, pool.availablePermits());
+	}
+	
+	@Test
+	public void close_返却を待ってからidle_entryを破棄する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setInitialEntries(4);
+		config.setCloseThreads(2);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		final BasicPool<SpyObject> pool = PoolTestUtil.createPool(config, queue, PoolTestUtil.createPoolEntryFactory(SpyObject.class));
+		
+		final PoolEntry<SpyObject> borrowed = pool.borrowEntry();
+		PoolEntryFuture<SpyObject> waiting = pool.borrowEntryAsync();
+		assertNotNull(waiting.get(1, TimeUnit.SECONDS));
+		pool.borrowEntries(2, 1, TimeUnit.SECONDS);
+		PoolEntryFuture<SpyObject> failed = pool.borrowEntryAsync();
+		
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<Boolean> closing = executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return pool.close(500, TimeUnit.MILLISECONDS);
+			}
+		});
+		try {
+			failed.get(1, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof IllegalStateException);
+		}
+		assertTrue(pool.isClosed());
+		
+		// the entries returned after close are invalidated
+		pool.returnEntry(borrowed);
+		assertFalse(borrowed.getState().isValid());
+		assertEquals(0, queue.getIdleEntriesCount());
+		executor.shutdown();
+		
+		// the other borrowed entries are never returned
+		assertFalse(closing.get(10, TimeUnit.SECONDS));
+		assertFalse(pool.close(0, TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	public void close_全て返却されるとtrueを返す() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(2);
+		config.setMaxIdleEntries(2);
+		config.setInitialEntries(2);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> pool = PoolTestUtil.createPool(config, queue, PoolTestUtil.createPoolEntryFactory(SpyObject.class));
+		
+		List<PoolEntry<SpyObject>> idle = new ArrayList<PoolEntry<SpyObject>>();
+		queue.drainTo(idle, 2);
+		for (PoolEntry<SpyObject> entry : idle) {
+			queue.offer(entry);
+		}
+		
+		assertTrue(pool.close(1, TimeUnit.SECONDS));
+		assertEquals(0, queue.getIdleEntriesCount());
+		for (PoolEntry<SpyObject> entry : idle) {
+			assertFalse(entry.getState().isValid());
+		}
+		
+		try {
+			pool.borrowEntry();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			pool.tryBorrowEntry();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+	
+	private PoolEntryFactory<SpyObject> sleepEntryFactory(final long sleepMillis, final CountDownLatch latch) {
+		return PoolTestUtil.createPoolEntryFactory(SpyObject.class, new PooledObjectFactory<SpyObject>() {
+			@Override
+			public SpyObject createInstance() throws Exception {
+				if (latch != null) latch.await();
+				TimeUnit.MILLISECONDS.sleep(sleepMillis);
+				return new SpyObject();
+			}
+		});
+	}
+	
+	private Callable<PoolEntry<SpyObject>> borrowTask(final BasicPool<SpyObject> pool, final BorrowPriority priority) {
+		return new Callable<PoolEntry<SpyObject>>() {
+			@Override
+			public PoolEntry<SpyObject> call() throws Exception {
+				return pool.borrowEntry(priority, true, 5, TimeUnit.SECONDS);
+			}
+		};
+	}
+	
+	private void waitPriorityWaiters(BasicPool<SpyObject> pool, int waiters) throws InterruptedException {
+		while (pool.getPriorityWaitersCount() < waiters) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.github.kei2100.pool.basic;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.util.SpyObject;
+
+
+public class CreationGovernorTest {
+
+	@Test
+	public void awaitCreate_maxConcurrentCreatesに達した場合は生成の終了を待つ() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxConcurrentCreates(1);
+		final CreationGovernor governor = new CreationGovernor(config);
+
+		assertNull(governor.awaitCreate(null));
+
+		ExecutorService es = Executors.newSingleThreadExecutor();
+		try {
+			Future<PoolEntry<SpyObject>> waiting = es.submit(awaitCreateTask(governor, null));
+			TimeUnit.MILLISECONDS.sleep(50);
+			assertFalse(waiting.isDone());
+
+			governor.createFinished();
+			assertNull(waiting.get(1, TimeUnit.SECONDS));
+		} finally {
+			es.shutdown();
+		}
+	}
+
+	@Test
+	public void awaitCreate_待っている間に返却されたentryを取得する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxConcurrentCreates(1);
+		final CreationGovernor governor = new CreationGovernor(config);
+		final IdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+
+		assertNull(governor.awaitCreate(queue));
+
+		ExecutorService es = Executors.newSingleThreadExecutor();
+		try {
+			Future<PoolEntry<SpyObject>> waiting = es.submit(awaitCreateTask(governor, queue));
+			TimeUnit.MILLISECONDS.sleep(50);
+
+			PoolEntry<SpyObject> returned = PoolTestUtil.createPoolEntry(SpyObject.class);
+			queue.offer(returned);
+			governor.entryReturned();
+
+			assertSame(returned, waiting.get(1, TimeUnit.SECONDS));
+		} finally {
+			es.shutdown();
+		}
+	}
+
+	@Test
+	public void awaitCreate_createsPerSecondを超えて生成しない() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setCreatesPerSecond(20);
+		config.setCreateBurst(2);
+		CreationGovernor governor = new CreationGovernor(config);
+
+		long startedAt = System.nanoTime();
+		for (int i = 0; i < 4; i++) {
+			assertNull(governor.awaitCreate(null));
+			governor.createFinished();
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+		// 2 in a burst, then 50ms each
+		assertTrue(elapsedMillis >= 90);
+	}
+
+	private Callable<PoolEntry<SpyObject>> awaitCreateTask(
+			final CreationGovernor governor, final IdleEntriesQueue<SpyObject> queue) {
+
+		return new Callable<PoolEntry<SpyObject>>() {
+			@Override
+			public PoolEntry<SpyObject> call() throws Exception {
+				return governor.awaitCreate(queue);
+			}
+		};
+	}
+}
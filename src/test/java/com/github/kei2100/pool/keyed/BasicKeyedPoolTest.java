@@ -0,0 +1,155 @@
+package com.github.kei2100.pool.keyed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.KeyedPooledObjectFactory;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.ValidationConfig;
+import com.github.kei2100.pool.util.SpyObject;
+import com.github.kei2100.pool.util.SpyObjectValidator;
+
+
+public class BasicKeyedPoolTest {
+
+	@Test
+	public void borrowEntry_同じkeyのentryを再利用する() throws Exception {
+		BasicKeyedPool<String, SpyObject> pool = createPool(createConfig(2));
+
+		PoolEntry<SpyObject> entry = pool.borrowEntry("a");
+		pool.returnEntry("a", entry);
+
+		assertSame(entry, pool.borrowEntry("a"));
+		assertNotSame(entry, pool.borrowEntry("b"));
+		assertEquals(2, pool.getTotalEntriesCount());
+	}
+
+	@Test
+	public void borrowEntry_maxActiveEntriesに達した場合は最も使われていないkeyのidle_entryを無効にする() throws Exception {
+		BasicKeyedPool<String, SpyObject> pool = createPool(createConfig(2));
+
+		PoolEntry<SpyObject> a = pool.borrowEntry("a");
+		PoolEntry<SpyObject> b = pool.borrowEntry("b");
+		pool.returnEntry("a", a);
+		TimeUnit.MILLISECONDS.sleep(2);
+		pool.returnEntry("b", b);
+
+		pool.borrowEntry("c");
+
+		assertFalse(a.getState().isValid());
+		assertEquals(1, a.getObject().getInvalidateCallCount());
+		assertEquals(0, pool.getIdleEntriesCount("a"));
+		assertEquals(1, pool.getIdleEntriesCount("b"));
+		assertEquals(2, pool.getTotalEntriesCount());
+	}
+
+	@Test
+	public void borrowEntry_全てのentryが貸し出し中の場合はタイムアウトする() throws Exception {
+		BasicKeyedPool<String, SpyObject> pool = createPool(createConfig(1));
+
+		pool.borrowEntry("a");
+		try {
+			pool.borrowEntry("b", 10, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (TimeoutException expected) {
+		}
+		assertNull(pool.tryBorrowEntry("b"));
+	}
+
+	@Test
+	public void borrowEntry_他のkeyのentryが返却されるまで待つ() throws Exception {
+		final BasicKeyedPool<String, SpyObject> pool = createPool(createConfig(1));
+		PoolEntry<SpyObject> a = pool.borrowEntry("a");
+
+		ExecutorService es = Executors.newSingleThreadExecutor();
+		try {
+			Future<PoolEntry<SpyObject>> future = es.submit(new Callable<PoolEntry<SpyObject>>() {
+				@Override
+				public PoolEntry<SpyObject> call() throws Exception {
+					return pool.borrowEntry("b", 1, TimeUnit.SECONDS);
+				}
+			});
+			TimeUnit.MILLISECONDS.sleep(50);
+			pool.returnEntry("a", a);
+
+			PoolEntry<SpyObject> b = future.get(1, TimeUnit.SECONDS);
+			assertNotSame(a, b);
+			assertFalse(a.getState().isValid());
+			assertEquals(1, pool.getTotalEntriesCount());
+		} finally {
+			es.shutdown();
+		}
+	}
+
+	@Test
+	public void returnEntry_maxIdleEntriesを超える場合は無効にする() throws Exception {
+		PoolConfig config = createConfig(3);
+		config.setMaxIdleEntries(1);
+		BasicKeyedPool<String, SpyObject> pool = createPool(config);
+
+		PoolEntry<SpyObject> entry1 = pool.borrowEntry("a");
+		PoolEntry<SpyObject> entry2 = pool.borrowEntry("a");
+		pool.returnEntry("a", entry1);
+		pool.returnEntry("a", entry2);
+
+		assertFalse(entry2.getState().isValid());
+		assertEquals(1, pool.getIdleEntriesCount("a"));
+		assertEquals(1, pool.getTotalEntriesCount());
+	}
+
+	@Test
+	public void maintain_maxIdleTimeMillisを超えたentryと使われていないkeyを取り除く() throws Exception {
+		PoolConfig config = createConfig(2);
+		config.setMaxIdleTimeMillis(1000);
+		BasicKeyedPool<String, SpyObject> pool = createPool(config);
+
+		PoolEntry<SpyObject> entry = pool.borrowEntry("a");
+		pool.returnEntry("a", entry);
+		entry.getState().setLastReturnedAt(System.currentTimeMillis() - 2000);
+
+		pool.maintain();
+
+		assertFalse(entry.getState().isValid());
+		assertEquals(0, pool.getTotalEntriesCount());
+		assertEquals(1, pool.getKeysCount());
+
+		TimeUnit.MILLISECONDS.sleep(config.getInvalidateIntervalMillis() + 1);
+		pool.maintain();
+
+		assertEquals(0, pool.getKeysCount());
+	}
+
+	private PoolConfig createConfig(int maxActiveEntries) {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(maxActiveEntries);
+		config.setMaxIdleEntries(maxActiveEntries);
+		config.setInitialEntries(0);
+		config.setInvalidateIntervalMillis(10);
+		return config;
+	}
+
+	private BasicKeyedPool<String, SpyObject> createPool(PoolConfig config) {
+		KeyedPooledObjectFactory<String, SpyObject> factory = new KeyedPooledObjectFactory<String, SpyObject>() {
+			@Override
+			public SpyObject createInstance(String key) throws Exception {
+				return new SpyObject();
+			}
+		};
+		return new BasicKeyedPool<String, SpyObject>(
+				config, new ValidationConfig(), factory, new SpyObjectValidator());
+	}
+}
@@ -0,0 +1,169 @@
+package com.github.kei2100.pool.magazine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.basic.BasicIdleEntriesQueue;
+import com.github.kei2100.pool.basic.PoolTestUtil;
+import com.github.kei2100.pool.util.SpyObject;
+
+
+public class MagazineIdleEntriesQueueTest {
+
+	@Test(expected = NullPointerException.class)
+	public void offer_追加エントリがnullの場合() {
+		PoolConfig config = createConfig(4, 2);
+		MagazineIdleEntriesQueue<SpyObject> queue =
+				new MagazineIdleEntriesQueue<SpyObject>(config, PoolTestUtil.createQueue(SpyObject.class, config));
+		queue.offer(null);
+	}
+
+	@Test
+	public void offer_poll_同じスレッドの場合はdepotを経由しない() {
+		PoolConfig config = createConfig(4, 2);
+		BasicIdleEntriesQueue<SpyObject> depot = PoolTestUtil.createQueue(SpyObject.class, config);
+		MagazineIdleEntriesQueue<SpyObject> queue = new MagazineIdleEntriesQueue<SpyObject>(config, depot);
+		PoolEntry<SpyObject> entry = PoolTestUtil.createPoolEntry(SpyObject.class);
+
+		assertTrue(queue.offer(entry));
+		assertEquals(1, queue.getCachedEntriesCount());
+		assertEquals(0, depot.getIdleEntriesCount());
+
+		assertSame(entry, queue.poll());
+		assertEquals(0, queue.getCachedEntriesCount());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void offer_magazineSizeを超える場合はdepotへ移動する() {
+		PoolConfig config = createConfig(4, 2);
+		BasicIdleEntriesQueue<SpyObject> depot = PoolTestUtil.createQueue(SpyObject.class, config);
+		MagazineIdleEntriesQueue<SpyObject> queue = new MagazineIdleEntriesQueue<SpyObject>(config, depot);
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+		}
+
+		assertEquals(2, queue.getCachedEntriesCount());
+		assertEquals(1, depot.getIdleEntriesCount());
+	}
+
+	@Test
+	public void offer_maxIdleEntries数を超える場合() {
+		PoolConfig config = createConfig(2, 2);
+		BasicIdleEntriesQueue<SpyObject> depot = PoolTestUtil.createQueue(SpyObject.class, config);
+		MagazineIdleEntriesQueue<SpyObject> queue = new MagazineIdleEntriesQueue<SpyObject>(config, depot);
+		PoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		PoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		PoolEntry<SpyObject> entry3 = PoolTestUtil.createPoolEntry(SpyObject.class);
+
+		assertTrue(queue.offer(entry1));
+		assertTrue(queue.offer(entry2));
+		assertFalse(queue.offer(entry3));
+
+		assertTrue(entry1.getState().isValid());
+		assertTrue(entry2.getState().isValid());
+		assertFalse(entry3.getState().isValid());
+		assertEquals(2, queue.getCachedEntriesCount() + depot.getIdleEntriesCount());
+	}
+
+	@Test
+	public void poll_終了したスレッドのmagazineはdepotへ戻される() throws Exception {
+		PoolConfig config = createConfig(4, 2);
+		BasicIdleEntriesQueue<SpyObject> depot = PoolTestUtil.createQueue(SpyObject.class, config);
+		final MagazineIdleEntriesQueue<SpyObject> queue = new MagazineIdleEntriesQueue<SpyObject>(config, depot);
+
+		Thread th = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class));
+				queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class));
+			}
+		});
+		th.start();
+		th.join(TimeUnit.SECONDS.toMillis(10));
+
+		assertEquals(2, queue.getCachedEntriesCount());
+
+		assertNotNull(queue.poll());
+		assertNotNull(queue.poll());
+		assertNull(queue.poll());
+		assertEquals(0, depot.getIdleEntriesCount());
+	}
+
+	@Test
+	public void flushMagazines_動作中のスレッドのmagazineもdepotへ戻される() throws Exception {
+		PoolConfig config = createConfig(4, 2);
+		BasicIdleEntriesQueue<SpyObject> depot = PoolTestUtil.createQueue(SpyObject.class, config);
+		final MagazineIdleEntriesQueue<SpyObject> queue = new MagazineIdleEntriesQueue<SpyObject>(config, depot);
+		final CountDownLatch offered = new CountDownLatch(1);
+		final CountDownLatch flushed = new CountDownLatch(1);
+
+		Thread th = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class));
+				queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class));
+				offered.countDown();
+				try {
+					flushed.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		th.start();
+		try {
+			assertTrue(offered.await(10, TimeUnit.SECONDS));
+			assertEquals(2, queue.getCachedEntriesCount());
+
+			assertEquals(2, queue.flushMagazines());
+			assertEquals(0, queue.getCachedEntriesCount());
+			assertEquals(2, depot.getIdleEntriesCount());
+		} finally {
+			flushed.countDown();
+			th.join(TimeUnit.SECONDS.toMillis(10));
+		}
+		
+		// the credits are moved with the entries
+		assertTrue(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+		assertTrue(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+		assertFalse(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+	}
+
+	@Test
+	public void close_magazineのentryをdepotへ戻す() throws Exception {
+		PoolConfig config = createConfig(4, 2);
+		BasicIdleEntriesQueue<SpyObject> depot = PoolTestUtil.createQueue(SpyObject.class, config);
+		MagazineIdleEntriesQueue<SpyObject> queue = new MagazineIdleEntriesQueue<SpyObject>(config, depot);
+		queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class));
+		assertEquals(1, queue.getCachedEntriesCount());
+
+		queue.close();
+
+		assertEquals(0, queue.getCachedEntriesCount());
+		assertEquals(1, depot.getIdleEntriesCount());
+		
+		PoolEntry<SpyObject> returned = PoolTestUtil.createPoolEntry(SpyObject.class);
+		assertFalse(queue.offer(returned));
+		assertFalse(returned.getState().isValid());
+	}
+
+	private PoolConfig createConfig(int maxIdleEntries, int magazineSize) {
+		PoolConfig config = new PoolConfig();
+		config.setMaxIdleEntries(maxIdleEntries);
+		config.setMagazineSize(magazineSize);
+		return config;
+	}
+}
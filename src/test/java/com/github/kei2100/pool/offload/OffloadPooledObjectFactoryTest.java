@@ -0,0 +1,126 @@
+package com.github.kei2100.pool.offload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PooledObjectFactory;
+import com.github.kei2100.pool.util.SpyObject;
+import com.github.kei2100.pool.util.SpyObjectValidator;
+
+
+public class OffloadPooledObjectFactoryTest {
+
+	@Test
+	public void createInstance_offloadスレッドで生成する() throws Exception {
+		final AtomicReference<Thread> createdBy = new AtomicReference<Thread>();
+		PooledObjectFactory<SpyObject> delegate = new PooledObjectFactory<SpyObject>() {
+			@Override
+			public SpyObject createInstance() throws Exception {
+				createdBy.set(Thread.currentThread());
+				return new SpyObject();
+			}
+		};
+		OffloadPooledObjectFactory<SpyObject> factory = new OffloadPooledObjectFactory<SpyObject>(
+				delegate, new SpyObjectValidator(), createOffloadThread());
+
+		factory.createInstance();
+
+		assertNotSame(Thread.currentThread(), createdBy.get());
+		assertTrue(createdBy.get().getName().startsWith(OffloadThread.class.getSimpleName()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void createInstance_生成で例外の場合() throws Exception {
+		PooledObjectFactory<SpyObject> delegate = new PooledObjectFactory<SpyObject>() {
+			@Override
+			public SpyObject createInstance() throws Exception {
+				throw new IllegalStateException();
+			}
+		};
+		OffloadPooledObjectFactory<SpyObject> factory = new OffloadPooledObjectFactory<SpyObject>(
+				delegate, new SpyObjectValidator(), createOffloadThread());
+
+		factory.createInstance();
+	}
+
+	@Test
+	public void createInstance_待機中に割り込まれた場合は生成後にinvalidateする() throws Exception {
+		final CountDownLatch creating = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch invalidated = new CountDownLatch(1);
+
+		PooledObjectFactory<SpyObject> delegate = new PooledObjectFactory<SpyObject>() {
+			@Override
+			public SpyObject createInstance() throws Exception {
+				creating.countDown();
+				release.await();
+				return new SpyObject();
+			}
+		};
+		SpyObjectValidator validator = new SpyObjectValidator() {
+			@Override
+			public void invalidate(SpyObject spyObject) throws Exception {
+				super.invalidate(spyObject);
+				invalidated.countDown();
+			}
+		};
+		final OffloadPooledObjectFactory<SpyObject> factory =
+				new OffloadPooledObjectFactory<SpyObject>(delegate, validator, createOffloadThread());
+
+		final AtomicReference<Exception> thrown = new AtomicReference<Exception>();
+		Thread borrower = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					factory.createInstance();
+				} catch (Exception e) {
+					thrown.set(e);
+				}
+			}
+		});
+		borrower.start();
+		creating.await(10, TimeUnit.SECONDS);
+		borrower.interrupt();
+		borrower.join(TimeUnit.SECONDS.toMillis(10));
+		release.countDown();
+
+		assertTrue(thrown.get() instanceof InterruptedException);
+		assertTrue(invalidated.await(10, TimeUnit.SECONDS));
+		assertEquals(1, validator.getInvalidateCallCount());
+	}
+
+	@Test
+	public void createInstance_shutdown後は呼び出したスレッドで生成する() throws Exception {
+		final AtomicReference<Thread> createdBy = new AtomicReference<Thread>();
+		PooledObjectFactory<SpyObject> delegate = new PooledObjectFactory<SpyObject>() {
+			@Override
+			public SpyObject createInstance() throws Exception {
+				createdBy.set(Thread.currentThread());
+				return new SpyObject();
+			}
+		};
+		OffloadThread offloadThread = createOffloadThread();
+		OffloadPooledObjectFactory<SpyObject> factory = new OffloadPooledObjectFactory<SpyObject>(
+				delegate, new SpyObjectValidator(), offloadThread);
+		offloadThread.shutdown();
+
+		factory.createInstance();
+
+		assertSame(Thread.currentThread(), createdBy.get());
+	}
+
+	private OffloadThread createOffloadThread() {
+		PoolConfig config = new PoolConfig();
+		config.setOffloadThreads(1);
+		return new OffloadThread(config);
+	}
+}
@@ -0,0 +1,209 @@
+package com.github.kei2100.pool.slot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolException;
+import com.github.kei2100.pool.util.SpyObject;
+import com.github.kei2100.pool.util.SpyObjectFactory;
+import com.github.kei2100.pool.util.SpyObjectValidator;
+import com.github.kei2100.pool.util.SystemPoolClock;
+
+
+public class SlotTableIdleEntriesQueueTest {
+
+	private static SlotTablePoolEntryFactory<SpyObject> createFactory(SlotTable<SpyObject> table) {
+		return new SlotTablePoolEntryFactory<SpyObject>(
+				table, new SpyObjectFactory(), new SpyObjectValidator(), SystemPoolClock.INSTANCE);
+	}
+
+	@Test
+	public void poll_LIFOで取得する() throws Exception {
+		SlotTable<SpyObject> table = new SlotTable<SpyObject>(4);
+		SlotTablePoolEntryFactory<SpyObject> factory = createFactory(table);
+		SlotTableIdleEntriesQueue<SpyObject> queue = new SlotTableIdleEntriesQueue<SpyObject>(new PoolConfig(), table);
+
+		PoolEntry<SpyObject> first = factory.createPoolEntry();
+		PoolEntry<SpyObject> second = factory.createPoolEntry();
+		assertTrue(queue.offer(first));
+		assertTrue(queue.offer(second));
+		// already offered
+		assertFalse(queue.offer(second));
+		assertEquals(2, queue.getIdleEntriesCount());
+
+		assertSame(second, queue.poll());
+		assertSame(first, queue.poll());
+		assertNull(queue.poll());
+		assertEquals(0, queue.getIdleEntriesCount());
+	}
+
+	@Test
+	public void offer_maxIdleEntries数を超える場合() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxIdleEntries(2);
+		SlotTable<SpyObject> table = new SlotTable<SpyObject>(4);
+		SlotTablePoolEntryFactory<SpyObject> factory = createFactory(table);
+		SlotTableIdleEntriesQueue<SpyObject> queue = new SlotTableIdleEntriesQueue<SpyObject>(config, table);
+
+		assertTrue(queue.offer(factory.createPoolEntry()));
+		assertTrue(queue.offer(factory.createPoolEntry()));
+		PoolEntry<SpyObject> rejected = factory.createPoolEntry();
+
+		assertFalse(queue.offer(rejected));
+		assertFalse(rejected.getState().isValid());
+		assertEquals(1, rejected.getObject().getInvalidateCallCount());
+		// the slot of the rejected entry is released
+		assertEquals(2, table.getUsedSlotsCount());
+	}
+
+	@Test
+	public void invalidate_スロットが解放され再利用される() throws Exception {
+		SlotTable<SpyObject> table = new SlotTable<SpyObject>(2);
+		SlotTablePoolEntryFactory<SpyObject> factory = createFactory(table);
+		SlotTableIdleEntriesQueue<SpyObject> queue = new SlotTableIdleEntriesQueue<SpyObject>(new PoolConfig(), table);
+
+		PoolEntry<SpyObject> idle = factory.createPoolEntry();
+		PoolEntry<SpyObject> borrowed = factory.createPoolEntry();
+		assertTrue(queue.offer(idle));
+		try {
+			factory.createPoolEntry();
+			throw new AssertionError("no slot is free.");
+		} catch (PoolException expected) {
+		}
+
+		// released at once
+		borrowed.invalidate();
+		assertEquals(1, table.getUsedSlotsCount());
+		PoolEntry<SpyObject> reused = factory.createPoolEntry();
+		assertEquals(((SlotPoolEntry<SpyObject>) borrowed).getSlot(), ((SlotPoolEntry<SpyObject>) reused).getSlot());
+
+		// the stale entry does not see nor change the reused slot
+		assertFalse(borrowed.getState().isValid());
+		assertTrue(borrowed.getState().isRetired());
+		assertFalse(borrowed.getState().markBorrowed());
+		borrowed.invalidate();
+		assertTrue(reused.getState().isValid());
+		assertTrue(reused.getState().markBorrowed());
+
+		// released when it is polled
+		idle.invalidate();
+		assertEquals(2, table.getUsedSlotsCount());
+		assertNull(queue.poll());
+		assertEquals(1, table.getUsedSlotsCount());
+		assertEquals(0, queue.getIdleEntriesCount());
+	}
+
+	@Test
+	public void invalidate_idleスタックの途中のスロットが作成時に回収される() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxIdleEntries(2);
+		SlotTable<SpyObject> table = new SlotTable<SpyObject>(3);
+		SlotTablePoolEntryFactory<SpyObject> factory = createFactory(table);
+		SlotTableIdleEntriesQueue<SpyObject> queue = new SlotTableIdleEntriesQueue<SpyObject>(config, table);
+
+		PoolEntry<SpyObject> bottom = factory.createPoolEntry();
+		PoolEntry<SpyObject> middle = factory.createPoolEntry();
+		PoolEntry<SpyObject> top = factory.createPoolEntry();
+		assertTrue(queue.offer(bottom));
+		assertTrue(queue.offer(middle));
+
+		// not counted as idle, so that another entry can be returned
+		middle.invalidate();
+		assertEquals(1, queue.getIdleEntriesCount());
+		assertTrue(queue.offer(top));
+		assertEquals(3, table.getUsedSlotsCount());
+
+		// swept when no slot is free
+		PoolEntry<SpyObject> created = factory.createPoolEntry();
+		assertEquals(((SlotPoolEntry<SpyObject>) middle).getSlot(), ((SlotPoolEntry<SpyObject>) created).getSlot());
+		assertEquals(2, queue.getIdleEntriesCount());
+
+		// the order is kept
+		assertSame(top, queue.poll());
+		assertSame(bottom, queue.poll());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void evictTo_返却時刻が古いentryを下から取り出す() throws Exception {
+		SlotTable<SpyObject> table = new SlotTable<SpyObject>(4);
+		SlotTablePoolEntryFactory<SpyObject> factory = createFactory(table);
+		SlotTableIdleEntriesQueue<SpyObject> queue = new SlotTableIdleEntriesQueue<SpyObject>(new PoolConfig(), table);
+
+		PoolEntry<SpyObject> bottom = factory.createPoolEntry();
+		PoolEntry<SpyObject> middle = factory.createPoolEntry();
+		PoolEntry<SpyObject> top = factory.createPoolEntry();
+		bottom.getState().setLastReturnedAt(100);
+		middle.getState().setLastReturnedAt(300);
+		top.getState().setLastReturnedAt(200);
+		queue.offer(bottom);
+		queue.offer(middle);
+		queue.offer(top);
+
+		List<PoolEntry<SpyObject>> evicted = new ArrayList<PoolEntry<SpyObject>>();
+		assertEquals(2, queue.evictTo(evicted, 250, 4));
+		assertSame(bottom, evicted.get(0));
+		assertSame(top, evicted.get(1));
+		assertEquals(1, queue.getIdleEntriesCount());
+
+		// the evicted entries can be offered again
+		assertTrue(queue.offer(bottom));
+		assertSame(bottom, queue.poll());
+		assertSame(middle, queue.poll());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void offer_poll_複数スレッドから実行した場合() throws Exception {
+		final int threads = 8;
+		final int loops = 10000;
+		SlotTable<SpyObject> table = new SlotTable<SpyObject>(threads);
+		SlotTablePoolEntryFactory<SpyObject> factory = createFactory(table);
+		final SlotTableIdleEntriesQueue<SpyObject> queue = new SlotTableIdleEntriesQueue<SpyObject>(new PoolConfig(), table);
+		for (int i = 0; i < threads; i++) {
+			assertTrue(queue.offer(factory.createPoolEntry()));
+		}
+
+		ExecutorService es = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(es.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						for (int j = 0; j < loops; j++) {
+							PoolEntry<SpyObject> entry = queue.poll();
+							if (entry == null) continue;
+							assertTrue(entry.getState().markBorrowed());
+							assertTrue(entry.getState().markReturned());
+							assertTrue(queue.offer(entry));
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			es.shutdown();
+		}
+
+		assertEquals(threads, queue.getIdleEntriesCount());
+		assertEquals(threads, table.getUsedSlotsCount());
+	}
+}
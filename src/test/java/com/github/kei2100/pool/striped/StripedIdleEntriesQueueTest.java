@@ -0,0 +1,150 @@
+package com.github.kei2100.pool.striped;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.IdleEntriesOrder;
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.basic.PoolTestUtil;
+import com.github.kei2100.pool.util.SpyObject;
+
+
+public class StripedIdleEntriesQueueTest {
+
+	@Test(expected = NullPointerException.class)
+	public void offer_追加エントリがnullの場合() {
+		StripedIdleEntriesQueue<SpyObject> queue = new StripedIdleEntriesQueue<SpyObject>(new PoolConfig(), 4);
+		queue.offer(null);
+	}
+
+	@Test
+	public void offer_maxIdleEntries数を超える場合() {
+		PoolConfig config = new PoolConfig();
+		config.setMaxIdleEntries(4);
+		StripedIdleEntriesQueue<SpyObject> queue = new StripedIdleEntriesQueue<SpyObject>(config, 4);
+		queue.expand();
+		queue.expand();
+		assertEquals(4, queue.getActiveShards());
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+		}
+		PoolEntry<SpyObject> rejected = PoolTestUtil.createPoolEntry(SpyObject.class);
+
+		assertFalse(queue.offer(rejected));
+		assertFalse(rejected.getState().isValid());
+		assertEquals(4, queue.getIdleEntriesCount());
+	}
+
+	@Test
+	public void resize_縮小した場合は超過分が取得されるまでofferを拒否する() {
+		PoolConfig config = new PoolConfig();
+		config.setMaxIdleEntries(4);
+		StripedIdleEntriesQueue<SpyObject> queue = new StripedIdleEntriesQueue<SpyObject>(config, 4);
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+		}
+		queue.resize(2);
+
+		assertFalse(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+		assertEquals(4, queue.getIdleEntriesCount());
+
+		for (int i = 0; i < 3; i++) {
+			assertNotNull(queue.poll());
+		}
+		assertTrue(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+		assertFalse(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+
+		queue.resize(3);
+		assertTrue(queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class)));
+		assertEquals(3, queue.getIdleEntriesCount());
+	}
+
+	@Test
+	public void poll_他のshardから取得する() {
+		PoolConfig config = new PoolConfig();
+		config.setMaxIdleEntries(4);
+		StripedIdleEntriesQueue<SpyObject> queue = new StripedIdleEntriesQueue<SpyObject>(config, 4);
+
+		for (int i = 0; i < 4; i++) {
+			queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class));
+		}
+		// the entries are spread over the shards
+		queue.expand();
+		queue.expand();
+
+		for (int i = 0; i < 4; i++) {
+			assertNotNull(queue.poll());
+		}
+		assertNull(queue.poll());
+		assertEquals(0, queue.getIdleEntriesCount());
+	}
+
+	@Test
+	public void poll_LIFOの場合() {
+		PoolConfig config = new PoolConfig();
+		config.setIdleEntriesOrder(IdleEntriesOrder.LIFO);
+		StripedIdleEntriesQueue<SpyObject> queue = new StripedIdleEntriesQueue<SpyObject>(config, 4);
+		PoolEntry<SpyObject> entry1 = PoolTestUtil.createPoolEntry(SpyObject.class);
+		PoolEntry<SpyObject> entry2 = PoolTestUtil.createPoolEntry(SpyObject.class);
+
+		queue.offer(entry1);
+		queue.offer(entry2);
+
+		assertSame(entry2, queue.poll());
+		assertSame(entry1, queue.poll());
+	}
+
+	@Test
+	public void offer_pool_マルチスレッドで繰り返す() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxIdleEntries(8);
+		final StripedIdleEntriesQueue<SpyObject> queue = new StripedIdleEntriesQueue<SpyObject>(config, 8);
+
+		ExecutorService es = Executors.newFixedThreadPool(8);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+		for (int i = 0; i < 8; i++) {
+			futures.add(es.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int j = 0; j < 10000; j++) {
+						queue.offer(PoolTestUtil.createPoolEntry(SpyObject.class));
+						queue.poll();
+					}
+					return null;
+				}
+			}));
+		}
+
+		try {
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			es.shutdown();
+		}
+
+		int idleCount = queue.getIdleEntriesCount();
+		assertTrue(idleCount <= 8);
+
+		int polled = 0;
+		while (queue.poll() != null) polled++;
+		assertEquals(idleCount, polled);
+	}
+}
@@ -0,0 +1,38 @@
+package com.github.kei2100.pool.util;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+
+public class CoarsePoolClockTest {
+
+	@Test
+	public void currentTimeMillis_resolutionごとに更新される() throws Exception {
+		CoarsePoolClock clock = new CoarsePoolClock(10);
+		try {
+			long before = clock.currentTimeMillis();
+			assertTrue(before <= System.currentTimeMillis());
+			
+			TimeUnit.MILLISECONDS.sleep(100);
+			long after = clock.currentTimeMillis();
+			assertTrue(after > before);
+			// lags behind by up to the resolution, allowing for the scheduling delay
+			assertTrue(System.currentTimeMillis() - after < 100);
+		} finally {
+			clock.stop();
+		}
+	}
+	
+	@Test
+	public void stop_更新を止める() throws Exception {
+		CoarsePoolClock clock = new CoarsePoolClock(10);
+		clock.stop();
+		long stopped = clock.currentTimeMillis();
+		
+		TimeUnit.MILLISECONDS.sleep(50);
+		assertTrue(stopped == clock.currentTimeMillis());
+	}
+}
@@ -0,0 +1,164 @@
+package com.github.kei2100.pool.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+
+public class MaintenanceSchedulerTest {
+
+	@Test
+	public void execute_タスクの多い登録が他の登録を待たせない() throws Exception {
+		MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 1000);
+		MaintenanceScheduler.Registration busy = scheduler.register("busy", 1);
+		MaintenanceScheduler.Registration other = scheduler.register("other", 1);
+
+		final List<String> ran = new CopyOnWriteArrayList<String>();
+		CountDownLatch blocker = new CountDownLatch(1);
+		busy.execute(awaitTask(blocker));
+		for (int i = 0; i < 10; i++) {
+			busy.execute(recordTask(ran, "busy"));
+		}
+		other.execute(recordTask(ran, "other"));
+
+		CountDownLatch done = new CountDownLatch(1);
+		busy.execute(countDownTask(done));
+		blocker.countDown();
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+
+		assertTrue(ran.indexOf("other") <= 1);
+	}
+
+	@Test
+	public void execute_maxConcurrencyを超えて並行に実行しない() throws Exception {
+		MaintenanceScheduler scheduler = new MaintenanceScheduler(4, 1000);
+		MaintenanceScheduler.Registration registration = scheduler.register("test", 2);
+
+		final AtomicInteger running = new AtomicInteger(0);
+		final AtomicInteger maxRunning = new AtomicInteger(0);
+		final CountDownLatch done = new CountDownLatch(8);
+		for (int i = 0; i < 8; i++) {
+			registration.execute(new Runnable() {
+				@Override
+				public void run() {
+					int current = running.incrementAndGet();
+					while (true) {
+						int max = maxRunning.get();
+						if (current <= max || maxRunning.compareAndSet(max, current)) break;
+					}
+					try {
+						TimeUnit.MILLISECONDS.sleep(10);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+					done.countDown();
+				}
+			});
+		}
+
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+		assertEquals(2, maxRunning.get());
+	}
+
+	@Test
+	public void schedule_遅延後に実行し_アイドルのworkerは終了する() throws Exception {
+		MaintenanceScheduler scheduler = new MaintenanceScheduler(2, 50);
+		MaintenanceScheduler.Registration registration = scheduler.register("test", 1);
+
+		CountDownLatch done = new CountDownLatch(1);
+		long startedAt = System.nanoTime();
+		registration.schedule(countDownTask(done), 30);
+
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) >= 30);
+
+		long deadline = System.currentTimeMillis() + 1000;
+		while (scheduler.getWorkersCount() > 0 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals(0, scheduler.getWorkersCount());
+	}
+
+	@Test
+	public void cancel_待機中のタスクを返し新しいタスクを拒否する() throws Exception {
+		MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 1000);
+		MaintenanceScheduler.Registration registration = scheduler.register("test", 1);
+
+		List<String> ran = new CopyOnWriteArrayList<String>();
+		CountDownLatch blocker = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		registration.execute(startTask(started, blocker));
+		assertTrue(started.await(1, TimeUnit.SECONDS));
+		Runnable queued1 = recordTask(ran, "queued1");
+		Runnable queued2 = recordTask(ran, "queued2");
+		registration.execute(queued1);
+		registration.execute(queued2);
+
+		List<Runnable> removed = registration.cancel();
+		blocker.countDown();
+		try {
+			registration.execute(recordTask(ran, "rejected"));
+			fail();
+		} catch (RejectedExecutionException expected) {
+		}
+		TimeUnit.MILLISECONDS.sleep(50);
+		assertTrue(ran.isEmpty());
+		assertEquals(Arrays.asList(queued1, queued2), removed);
+	}
+
+	private Runnable startTask(final CountDownLatch started, final CountDownLatch latch) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+
+	private Runnable awaitTask(final CountDownLatch latch) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+
+	private Runnable recordTask(final List<String> ran, final String name) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				ran.add(name);
+			}
+		};
+	}
+
+	private Runnable countDownTask(final CountDownLatch latch) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		};
+	}
+}
@@ -0,0 +1,24 @@
+package com.github.kei2100.pool.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ManualPoolClock implements PoolClock {
+	private final AtomicLong currentTimeMillis = new AtomicLong(System.currentTimeMillis());
+	private final AtomicLong nanoTime = new AtomicLong(0);
+	
+	public void advance(long millis) {
+		currentTimeMillis.addAndGet(millis);
+		nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+	
+	@Override
+	public long currentTimeMillis() {
+		return currentTimeMillis.get();
+	}
+	
+	@Override
+	public long nanoTime() {
+		return nanoTime.get();
+	}
+}
@@ -0,0 +1,85 @@
+package com.github.kei2100.pool.validatable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.kei2100.pool.PoolConfig;
+import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.ValidationConfig;
+import com.github.kei2100.pool.basic.BasicIdleEntriesQueue;
+import com.github.kei2100.pool.basic.BasicPool;
+import com.github.kei2100.pool.basic.PoolTestUtil;
+import com.github.kei2100.pool.util.SpyObject;
+
+
+public class AgeExpiryWheelTest {
+
+	@Test
+	public void maxAgeを超えたidle_entryをbackgroundで破棄し_borrow中のentryは返却時に破棄する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(2);
+		config.setMaxIdleEntries(2);
+		ValidationConfig validationConfig = new ValidationConfig();
+		validationConfig.setMaxAgeMillis(100);
+		
+		AgeExpiryWheel<SpyObject> wheel = new AgeExpiryWheel<SpyObject>(validationConfig);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> delegate = PoolTestUtil.createPool(config, queue,
+				new AgeExpiryPoolEntryFactory<SpyObject>(PoolTestUtil.createPoolEntryFactory(SpyObject.class), wheel));
+		ValidatablePool<SpyObject> pool = new ValidatablePool<SpyObject>(delegate, wheel, validationConfig);
+		
+		PoolEntry<SpyObject> borrowed = pool.borrowEntry();
+		PoolEntry<SpyObject> idle = pool.borrowEntry();
+		pool.returnEntry(idle);
+		assertEquals(2, wheel.getScheduledEntriesCount());
+		
+		TimeUnit.MILLISECONDS.sleep(300);
+		
+		// retired without being borrowed
+		assertFalse(idle.getState().isValid());
+		assertEquals(0, wheel.getScheduledEntriesCount());
+		// in use until it is returned
+		assertTrue(borrowed.getState().isValid());
+		assertTrue(borrowed.getState().isRetired());
+		
+		pool.returnEntry(borrowed);
+		assertFalse(borrowed.getState().isValid());
+		assertEquals(2, pool.availablePermits());
+		
+		// the retired idle entry is skipped without returning it
+		PoolEntry<SpyObject> created = pool.borrowEntry();
+		assertNotSame(idle, created);
+		assertTrue(created.getState().isValid());
+		assertEquals(0, queue.getIdleEntriesCount());
+		
+		pool.close(1, TimeUnit.SECONDS);
+	}
+	
+	@Test
+	public void advance_期限前のentryは次の周回まで残す() throws Exception {
+		ValidationConfig validationConfig = new ValidationConfig();
+		validationConfig.setMaxAgeMillis(AgeExpiryWheel.WHEEL_SIZE * AgeExpiryWheel.MIN_TICK_MILLIS * 4);
+		AgeExpiryWheel<SpyObject> wheel = new AgeExpiryWheel<SpyObject>(validationConfig);
+		
+		PoolEntry<SpyObject> entry = PoolTestUtil.createPoolEntry(SpyObject.class);
+		wheel.schedule(entry);
+		
+		long now = System.currentTimeMillis();
+		wheel.advance(now + validationConfig.getMaxAgeMillis() / 2);
+		assertEquals(1, wheel.getScheduledEntriesCount());
+		assertFalse(entry.getState().isRetired());
+		
+		// the wheel is not started, and the borrowed entry is only marked
+		entry.getState().markBorrowed();
+		wheel.advance(now + validationConfig.getMaxAgeMillis() * 2);
+		assertEquals(0, wheel.getScheduledEntriesCount());
+		assertTrue(entry.getState().isRetired());
+		assertTrue(entry.getState().isValid());
+	}
+}
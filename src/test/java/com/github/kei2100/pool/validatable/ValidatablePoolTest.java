@@ -1,14 +1,20 @@
 package com.github.kei2100.pool.validatable;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -17,16 +23,23 @@ import java.util.concurrent.TimeoutException;
 
 import org.junit.Test;
 
+import com.github.kei2100.pool.IdleEntriesOrder;
 import com.github.kei2100.pool.IdleEntriesQueue;
+import com.github.kei2100.pool.Pool;
 import com.github.kei2100.pool.PoolConfig;
 import com.github.kei2100.pool.PoolEntry;
+import com.github.kei2100.pool.PoolEntryCallback;
 import com.github.kei2100.pool.PoolEntryFactory;
+import com.github.kei2100.pool.PoolEntryFuture;
 import com.github.kei2100.pool.PoolException;
+import com.github.kei2100.pool.PoolFactory;
 import com.github.kei2100.pool.ValidationConfig;
 import com.github.kei2100.pool.basic.BasicIdleEntriesQueue;
 import com.github.kei2100.pool.basic.BasicPool;
 import com.github.kei2100.pool.basic.PoolTestUtil;
 import com.github.kei2100.pool.util.SpyObject;
+import com.github.kei2100.pool.util.SpyObjectFactory;
+import com.github.kei2100.pool.util.SpyObjectValidator;
 import com.github.kei2100.pool.util.ThrowExceptionObjectFactory;
 import com.github.kei2100.pool.validatable.ValidatablePool;
 
@@ -363,4 +376,240 @@ public class ValidatablePoolTest {
 		assertEquals(5, pool.availablePermits());
 		assertEquals(5, queue.getIdleEntriesCount());
 	}
+	
+	@Test
+	public void borrowEntryAsync_maxAgeを超えたentryの場合は取得し直す() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		config.setInitialEntries(1);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> delegate = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		ValidationConfig validationConfig = new ValidationConfig();
+		validationConfig.setMaxAgeMillis(50);
+		ValidatablePool<SpyObject> pool = new ValidatablePool<SpyObject>(delegate, validationConfig);
+		
+		PoolEntry<SpyObject> expired = delegate.borrowEntry();
+		delegate.returnEntry(expired);
+		TimeUnit.MILLISECONDS.sleep(100);
+		
+		PoolEntryFuture<SpyObject> future = pool.borrowEntryAsync(10, TimeUnit.SECONDS);
+		PoolEntry<SpyObject> entry = future.get(10, TimeUnit.SECONDS);
+		
+		assertNotSame(expired, entry);
+		assertFalse(expired.getState().isValid());
+		assertTrue(entry.getState().isValid());
+		assertEquals(0, pool.availablePermits());
+	}
+	
+	@Test
+	public void borrowEntryAsync_返却したスレッドではvalidateしない() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(1);
+		config.setMaxIdleEntries(1);
+		final List<Thread> validatedBy = new ArrayList<Thread>();
+		PoolEntryFactory<SpyObject> factory = PoolTestUtil.createPoolEntryFactory(
+				new SpyObjectFactory(), new SpyObjectValidator() {
+					@Override
+					public boolean validate(SpyObject pooledObject) throws Exception {
+						synchronized (validatedBy) {
+							validatedBy.add(Thread.currentThread());
+						}
+						return super.validate(pooledObject);
+					}
+				});
+		BasicPool<SpyObject> delegate = 
+				PoolTestUtil.createPool(config, PoolTestUtil.createQueue(SpyObject.class, config), factory);
+		
+		ValidationConfig validationConfig = new ValidationConfig();
+		validationConfig.setTestOnBorrow(true);
+		ValidatablePool<SpyObject> pool = new ValidatablePool<SpyObject>(delegate, validationConfig);
+		
+		PoolEntry<SpyObject> borrowed = delegate.borrowEntry();
+		PoolEntryFuture<SpyObject> future = pool.borrowEntryAsync(10, TimeUnit.SECONDS);
+		// the future of the delegate is completed by this thread
+		delegate.returnEntry(borrowed);
+		
+		assertSame(borrowed, future.get(10, TimeUnit.SECONDS));
+		synchronized (validatedBy) {
+			assertEquals(1, validatedBy.size());
+			assertNotSame(Thread.currentThread(), validatedBy.get(0));
+		}
+	}
+	
+	@Test
+	public void close_バックグラウンドのvalidateが待機中でもentryを破棄する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setInitialEntries(4);
+		final CountDownLatch validating = new CountDownLatch(1);
+		SpyObjectValidator validator = new SpyObjectValidator() {
+			@Override
+			public boolean validate(SpyObject pooledObject) throws Exception {
+				validating.countDown();
+				TimeUnit.MILLISECONDS.sleep(300);
+				return super.validate(pooledObject);
+			}
+		};
+		PoolEntryFactory<SpyObject> factory = 
+				PoolTestUtil.createPoolEntryFactory(new SpyObjectFactory(), validator);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> delegate = PoolTestUtil.createPool(config, queue, factory);
+		
+		ValidationConfig validationConfig = new ValidationConfig();
+		validationConfig.setTestThreads(1);
+		validationConfig.setTestThreadInitialDelayMillis(0);
+		ValidatablePool<SpyObject> pool = new ValidatablePool<SpyObject>(delegate, validationConfig);
+		
+		// the other entries are queued while the first is validated
+		assertTrue(validating.await(10, TimeUnit.SECONDS));
+		
+		assertTrue(pool.close(10, TimeUnit.SECONDS));
+		assertEquals(4, pool.availablePermits());
+		assertEquals(0, queue.getIdleEntriesCount());
+		assertEquals(4, validator.getInvalidateCallCount());
+	}
+	
+	@Test
+	public void borrowEntries_maxAgeを超えたentryは取得し直す() throws Exception {
+		PoolConfig config = new PoolConfig();
+		config.setMaxActiveEntries(4);
+		config.setMaxIdleEntries(4);
+		config.setInitialEntries(2);
+		BasicIdleEntriesQueue<SpyObject> queue = PoolTestUtil.createQueue(SpyObject.class, config);
+		BasicPool<SpyObject> delegate = PoolTestUtil.createPool(SpyObject.class, config, queue);
+		
+		ValidationConfig validationConfig = new ValidationConfig();
+		validationConfig.setMaxAgeMillis(50);
+		ValidatablePool<SpyObject> pool = new ValidatablePool<SpyObject>(delegate, validationConfig);
+		TimeUnit.MILLISECONDS.sleep(100);
+		
+		List<PoolEntry<SpyObject>> entries = pool.borrowEntries(3, 1, TimeUnit.SECONDS);
+		
+		assertEquals(3, entries.size());
+		for (PoolEntry<SpyObject> entry : entries) {
+			assertTrue(entry.getState().isValid());
+		}
+		assertEquals(1, pool.availablePermits());
+		assertEquals(0, queue.getIdleEntriesCount());
+		
+		pool.returnEntries(entries);
+		assertEquals(4, pool.availablePermits());
+		assertEquals(3, queue.getIdleEntriesCount());
+	}
+	
+	@Test
+	public void withEntry_正常終了しtestOnReturnしない場合はbeforeReturnEntryを省略する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		BasicPool<SpyObject> delegate = PoolTestUtil.createPool(SpyObject.class, config);
+		CountReturnListener listener = new CountReturnListener();
+		List<ValidatablePoolListener<SpyObject>> listeners = new ArrayList<ValidatablePoolListener<SpyObject>>();
+		listeners.add(listener);
+		ValidatablePool<SpyObject> pool = new ValidatablePool<SpyObject>(delegate, new ValidationConfig(), listeners);
+		
+		String result = pool.withEntry(new PoolEntryCallback<SpyObject, String>() {
+			@Override
+			public String doWithEntry(PoolEntry<SpyObject> entry) throws Exception {
+				return "done";
+			}
+		});
+		
+		assertEquals("done", result);
+		assertEquals(0, listener.beforeReturnCount);
+		assertEquals(config.getMaxActiveEntries(), pool.availablePermits());
+	}
+	
+	@Test
+	public void withEntry_callbackが例外の場合も返却する() throws Exception {
+		PoolConfig config = new PoolConfig();
+		BasicPool<SpyObject> delegate = PoolTestUtil.createPool(SpyObject.class, config);
+		CountReturnListener listener = new CountReturnListener();
+		List<ValidatablePoolListener<SpyObject>> listeners = new ArrayList<ValidatablePoolListener<SpyObject>>();
+		listeners.add(listener);
+		ValidatablePool<SpyObject> pool = new ValidatablePool<SpyObject>(delegate, new ValidationConfig(), listeners);
+		
+		final Exception cause = new Exception();
+		try {
+			pool.withEntry(new PoolEntryCallback<SpyObject, String>() {
+				@Override
+				public String doWithEntry(PoolEntry<SpyObject> entry) throws Exception {
+					throw cause;
+				}
+			});
+			fail();
+		} catch (PoolException expected) {
+			assertSame(cause, expected.getCause());
+		}
+		
+		assertEquals(1, listener.beforeReturnCount);
+		assertEquals(config.getMaxActiveEntries(), pool.availablePermits());
+	}
+	
+	private static class CountReturnListener implements ValidatablePoolListener<SpyObject> {
+		private int beforeReturnCount = 0;
+		
+		@Override
+		public PoolEntry<SpyObject> afterBorrowEntry(PoolEntry<SpyObject> entry, boolean createNew, long elapsedMillis) {
+			return entry;
+		}
+		
+		@Override
+		public PoolEntry<SpyObject> afterTryBorrowEntry(PoolEntry<SpyObject> entry, boolean createNew) {
+			return entry;
+		}
+		
+		@Override
+		public PoolEntry<SpyObject> beforeReturnEntry(PoolEntry<SpyObject> entry) {
+			beforeReturnCount++;
+			return entry;
+		}
+	}
+	
+	@Test
+	public void borrowEntry_returnEntry_競合しない場合はメモリを割り当てない() throws Exception {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+		assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+		allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+		
+		ValidationConfig validationConfig = new ValidationConfig();
+		validationConfig.setTestOnBorrow(true);
+		validationConfig.setTestOnReturn(true);
+		
+		PoolConfig fifoConfig = new PoolConfig();
+		PoolConfig lifoConfig = new PoolConfig();
+		lifoConfig.setIdleEntriesOrder(IdleEntriesOrder.LIFO);
+		PoolConfig asyncAdjustConfig = new PoolConfig();
+		asyncAdjustConfig.setInvalidateThreads(1);
+		asyncAdjustConfig.setInvalidateIntervalMillis(60 * 1000);
+		
+		for (PoolConfig config : new PoolConfig[] { fifoConfig, lifoConfig, asyncAdjustConfig }) {
+			Pool<SpyObject> pool = new PoolFactory<SpyObject>(
+					config, validationConfig, new SpyObjectFactory(), new SpyObjectValidator()).createInstance();
+			try {
+				borrowAndReturn(pool, 10000);
+				
+				int operations = 10000;
+				long threadId = Thread.currentThread().getId();
+				long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+				borrowAndReturn(pool, operations);
+				long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - before;
+				
+				// less than a byte per operation, an allocated object is at least 16 bytes
+				assertTrue("allocated " + allocated + " bytes.", allocated < operations);
+			} finally {
+				pool.close(1, TimeUnit.SECONDS);
+			}
+		}
+	}
+	
+	private static void borrowAndReturn(Pool<SpyObject> pool, int operations) throws Exception {
+		for (int i = 0; i < operations; i++) {
+			PoolEntry<SpyObject> entry = pool.borrowEntry();
+			pool.returnEntry(entry);
+		}
+	}
 }
@@ -11,8 +11,11 @@ import org.junit.Test;
 import com.github.kei2100.pool.PoolEntry;
 import com.github.kei2100.pool.PooledObjectValidator;
 import com.github.kei2100.pool.ValidationConfig;
+import com.github.kei2100.pool.basic.BasicPoolEntryFactory;
 import com.github.kei2100.pool.basic.PoolTestUtil;
+import com.github.kei2100.pool.util.ManualPoolClock;
 import com.github.kei2100.pool.util.SpyObject;
+import com.github.kei2100.pool.util.SpyObjectFactory;
 import com.github.kei2100.pool.util.SpyObjectValidator;
 import com.github.kei2100.pool.util.ThrowExceptionValidator;
 import com.github.kei2100.pool.validatable.ValidationHelper;
@@ -159,4 +162,24 @@ public class ValidationHelperTest {
 		
 		assertFalse(isValid);
 	}
+	
+	@Test
+	public void invalidateIfAgeExpired_entryを作成したclockで経過時間を測る() throws Exception {
+		SpyObjectValidator validator = new SpyObjectValidator();
+		ManualPoolClock clock = new ManualPoolClock();
+		PoolEntry<SpyObject> entry = 
+				new BasicPoolEntryFactory<SpyObject>(new SpyObjectFactory(), validator, clock).createPoolEntry();
+		
+		ValidationConfig config = new ValidationConfig();
+		config.setMaxAgeMillis(300000);
+		
+		clock.advance(300000);
+		ValidationHelper.invalidateIfAgeExpired(config, entry, clock);
+		assertTrue(entry.getState().isValid());
+		
+		clock.advance(1);
+		ValidationHelper.invalidateIfAgeExpired(config, entry, clock);
+		assertFalse(entry.getState().isValid());
+		assertEquals(1, validator.getInvalidateCallCount());
+	}
 }